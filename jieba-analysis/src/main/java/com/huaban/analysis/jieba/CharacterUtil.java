@@ -1,9 +1,19 @@
 package com.huaban.analysis.jieba;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 
 public class CharacterUtil {
+    private static final Logger logger = Logger.getLogger(CharacterUtil.class.getName());
+    private static final String T2S = "/t2s.txt";
+    // 每个字符规范化后的结果
+    private static final char[] TABLE = buildTable();
     private static final char[] connectors = new char[]{'+', '#', '&', '.', '_', '-'};
     public static Pattern reSkip = Pattern.compile("(\\d+\\.\\d+|[a-zA-Z0-9]+)");
 
@@ -50,20 +60,94 @@ public class CharacterUtil {
 
 
     /**
-     * 全角 to 半角,大写 to 小写
+     * 全角 to 半角,大写 to 小写,繁体 to 简体
      *
      * @param input 输入字符
      * @return 转换后的字符
      */
     public static char regularize(char input) {
+        return TABLE[input];
+    }
+
+
+    /**
+     * 早期版本的规范化：全角转半角，半角的英文大写转小写；不转简体，全角的大写转成半角的大写。
+     * 供需要和已有索引中的词保持一致的分词器使用
+     */
+    public static char regularizeCompat(char input) {
         if (input == 12288) {
             return 32;
         } else if (input > 65280 && input < 65375) {
             return (char) (input - 65248);
         } else if (input >= 'A' && input <= 'Z') {
-            return (input += 32);
+            return (char) (input + 32);
+        }
+        return input;
+    }
+
+
+    /**
+     * 逐字规范化，没有变化时返回原字符串
+     */
+    public static String regularize(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (TABLE[input.charAt(i)] != input.charAt(i)) {
+                char[] chars = input.toCharArray();
+                for (int j = i; j < chars.length; j++)
+                    chars[j] = TABLE[chars[j]];
+                return new String(chars);
+            }
         }
         return input;
     }
 
+
+    /**
+     * 按字符查表：全角空格和全角ASCII转半角，英文大写（包括全角的大写）转小写，
+     * t2s.txt中的繁体字转简体。GB2312中已有的字（如著、乾、後）本身就是规范的简体字，不在表中
+     */
+    private static char[] buildTable() {
+        char[] table = new char[Character.MAX_VALUE + 1];
+        for (int i = 0; i < table.length; i++)
+            table[i] = (char) i;
+        table[12288] = 32;
+        for (int i = 65281; i < 65375; i++)
+            table[i] = (char) (i - 65248);
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] >= 'A' && table[i] <= 'Z')
+                table[i] += 32;
+        }
+
+        InputStream is = CharacterUtil.class.getResourceAsStream(T2S);
+        if (null == is) {
+            logger.warning(String.format("%s not found!", T2S));
+            return table;
+        }
+        try {
+            BufferedReader br = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
+            String line;
+            while ((line = br.readLine()) != null) {
+                // 每行两个字：繁体 简体
+                if (line.length() == 2)
+                    table[line.charAt(0)] = line.charAt(1);
+            }
+        } catch (IOException e) {
+            logger.warning(String.format("%s: load failure!", T2S));
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                logger.warning(String.format("%s: close failure!", T2S));
+            }
+        }
+        // 传递闭包：转换的结果如果还能再转换（如薴->苧->苎），直接指向最终的字，保证规范化一次和多次结果相同
+        for (int i = 0; i < table.length; i++) {
+            char ch = table[i];
+            for (int n = 0; table[ch] != ch && n < 8; n++)
+                ch = table[ch];
+            table[i] = ch;
+        }
+        return table;
+    }
+
 }
@@ -0,0 +1,170 @@
+package com.huaban.analysis.jieba;
+
+import java.util.Arrays;
+
+
+/**
+ * 远程增量词典：持久化（路径复制）的词典树，位于所有词典层之上。
+ * 每次增删改只复制从根到该词的一条路径，其余节点与旧版本共享，旧快照的读线程不受影响。
+ * 删除的词记为墓碑，屏蔽下层词典中的同名词。
+ */
+final class DictDelta {
+    static final byte NONE = 0;
+    static final byte WORD = 1;
+    static final byte REMOVED = 2;
+
+    static final DictDelta EMPTY = new DictDelta(Node.EMPTY, 0, 0);
+
+    final Node root;
+    // 已应用的增量版本
+    final long version;
+    // 词（含墓碑）的数量
+    final int size;
+
+
+    private DictDelta(Node root, long version, int size) {
+        this.root = root;
+        this.version = version;
+        this.size = size;
+    }
+
+
+    /**
+     * 不可变节点，子节点按字符排序
+     */
+    static final class Node {
+        static final Node EMPTY = new Node(new char[0], new Node[0], NONE, 0.0);
+
+        final char[] keys;
+        final Node[] children;
+        final byte state;
+        // 对数词频，仅state为WORD时有效
+        final double freq;
+
+
+        Node(char[] keys, Node[] children, byte state, double freq) {
+            this.keys = keys;
+            this.children = children;
+            this.state = state;
+            this.freq = freq;
+        }
+
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+
+        boolean hasChildren() {
+            return keys.length > 0;
+        }
+
+
+        Node withChild(char c, Node child) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                Node[] nextChildren = children.clone();
+                nextChildren[i] = child;
+                return new Node(keys, nextChildren, state, freq);
+            }
+            i = -i - 1;
+            char[] nextKeys = new char[keys.length + 1];
+            Node[] nextChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, nextKeys, 0, i);
+            System.arraycopy(children, 0, nextChildren, 0, i);
+            nextKeys[i] = c;
+            nextChildren[i] = child;
+            System.arraycopy(keys, i, nextKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, nextChildren, i + 1, children.length - i);
+            return new Node(nextKeys, nextChildren, state, freq);
+        }
+    }
+
+
+    /**
+     * 估算当前版本的节点占用的堆内存（与旧版本共享的节点也计算在内）
+     */
+    long ramBytesUsed() {
+        return ramBytesUsed(root);
+    }
+
+
+    private static long ramBytesUsed(Node node) {
+        long size = RamUsage.align(RamUsage.OBJECT_HEADER + 2 * RamUsage.REFERENCE + 1 + 8)
+                + RamUsage.sizeOfArray(node.keys.length, 2) + RamUsage.sizeOfArray(node.children.length, RamUsage.REFERENCE);
+        for (Node child : node.children)
+            size += ramBytesUsed(child);
+        return size;
+    }
+
+
+    boolean isEmpty() {
+        return !root.hasChildren();
+    }
+
+
+    /**
+     * 新增或修改词频
+     */
+    DictDelta put(String word, double freq) {
+        return set(word, WORD, freq);
+    }
+
+
+    /**
+     * 删除词，记为墓碑
+     */
+    DictDelta remove(String word) {
+        return set(word, REMOVED, 0.0);
+    }
+
+
+    DictDelta withVersion(long version) {
+        return new DictDelta(root, version, size);
+    }
+
+
+    private DictDelta set(String word, byte state, double freq) {
+        if (word.isEmpty())
+            return this;
+        Node[] path = new Node[word.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.child(word.charAt(i));
+            path[i + 1] = node;
+        }
+        Node old = path[word.length()];
+        int nextSize = size;
+        if (null == old || old.state == NONE)
+            nextSize++;
+        Node copy = null == old ? new Node(Node.EMPTY.keys, Node.EMPTY.children, state, freq)
+                : new Node(old.keys, old.children, state, freq);
+        // 自底向上复制路径
+        for (int i = word.length() - 1; i >= 0; i--) {
+            Node parent = null == path[i] ? Node.EMPTY : path[i];
+            copy = parent.withChild(word.charAt(i), copy);
+        }
+        return new DictDelta(copy, version, nextSize);
+    }
+
+
+    /**
+     * 查找词段对应的节点，不存在返回null
+     */
+    Node find(char[] charArray, int begin, int length) {
+        Node node = root;
+        for (int i = begin; i < begin + length && node != null; i++)
+            node = node.child(charArray[i]);
+        return node;
+    }
+
+
+    Node find(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length() && node != null; i++)
+            node = node.child(word.charAt(i));
+        return node;
+    }
+}
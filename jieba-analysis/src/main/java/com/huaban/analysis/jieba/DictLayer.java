@@ -0,0 +1,60 @@
+package com.huaban.analysis.jieba;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * 词典的一层：主词典之上，每个用户词典文件（以及远程词典）各自对应一层。
+ * 构建完成后只读，重新加载时整层替换，不修改已发布的层。
+ */
+class DictLayer {
+    // 来源，用户词典为文件绝对路径
+    final String source;
+    // 来源文件的修改时间，用于判断是否需要重建该层
+    final long lastModified;
+    final DictSegment trie = new DictSegment((char) 0, new HashMap<Character, Character>());
+    final Map<String, Double> freqs;
+    // 解析加构建的耗时
+    final long loadMillis;
+    // 估算的堆内存占用
+    final long ramBytes;
+
+
+    /**
+     * 由解析结果批量构建，词频按主词典的总词频取对数
+     */
+    DictLayer(String source, long lastModified, DictParser.Result parsed, double total) {
+        long s = System.nanoTime();
+        this.source = source;
+        this.lastModified = lastModified;
+        this.freqs = parsed.freqs;
+        for (Map.Entry<String, Double> entry : freqs.entrySet())
+            entry.setValue(Math.log(entry.getValue() / total));
+        trie.fillSortedSegments(parsed.words);
+        this.loadMillis = (parsed.elapsedNanos + System.nanoTime() - s) / 1000000L;
+        this.ramBytes = trie.ramBytesUsed() + trie.charMapRamBytesUsed() + RamUsage.sizeOfFreqs(freqs);
+    }
+
+
+    /**
+     * 构建之前按解析结果估算占用，用于在构建之前拒绝超出内存限制的加载
+     */
+    static long estimateRamBytes(DictParser.Result parsed) {
+        long chars = 0;
+        for (String word : parsed.words)
+            chars += word.length();
+        return RamUsage.sizeOfHashMap(parsed.words.length)
+                + parsed.words.length * (RamUsage.BOXED + RamUsage.sizeOfString(""))
+                + chars * ESTIMATED_BYTES_PER_CHAR;
+    }
+
+
+    // 每个字：词中的2字节，加上分摊的词典树节点（前缀共享后大约每字一个节点）
+    private static final long ESTIMATED_BYTES_PER_CHAR = 2 + 48;
+
+
+    int size() {
+        return freqs.size();
+    }
+}
@@ -0,0 +1,31 @@
+package com.huaban.analysis.jieba;
+
+
+/**
+ * 词典内存记账，例如对接Elasticsearch的断路器。
+ * 构建新的词典层之前先按估算值预留，超出限制时抛出异常拒绝这次加载；构建完成后按实际值修正，层被丢弃时释放。
+ */
+public interface DictMemoryAccounting {
+    DictMemoryAccounting NOOP = new DictMemoryAccounting() {
+        @Override
+        public void reserve(long bytes, String source) {
+        }
+
+
+        @Override
+        public void adjust(long bytes) {
+        }
+    };
+
+
+    /**
+     * 预留内存，超出限制时抛出RuntimeException
+     */
+    void reserve(long bytes, String source);
+
+
+    /**
+     * 不检查限制地增减已记账的内存
+     */
+    void adjust(long bytes);
+}
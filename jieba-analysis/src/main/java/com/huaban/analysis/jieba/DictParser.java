@@ -0,0 +1,332 @@
+package com.huaban.analysis.jieba;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+
+/**
+ * 词典文本解析器，直接扫描UTF-8字节，每行格式为：词 词频 [词性]，以空格或tab分隔。
+ * 大文件按行边界切成多块并行解析，合并后按字典序给出所有词，便于批量构建词典树。
+ */
+public class DictParser {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // 小于该大小的内容不值得并行
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+
+    /**
+     * 解析结果
+     */
+    public static class Result {
+        // 规范化后的词 -> 原始词频，重复的词以后出现的为准；写法不同、规范化后相同的词（如電話和电话）取较大的词频
+        public final Map<String, Double> freqs;
+        // 按字典序排好的词
+        public final String[] words;
+        // 所有行的词频之和（包括重复的词）
+        public final double total;
+        public final long elapsedNanos;
+
+
+        Result(Map<String, Double> freqs, String[] words, double total, long elapsedNanos) {
+            this.freqs = freqs;
+            this.words = words;
+            this.total = total;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+
+        public long elapsedMillis() {
+            return elapsedNanos / 1000000L;
+        }
+
+
+        public long wordsPerSecond() {
+            return elapsedNanos <= 0 ? 0 : (long) (words.length * 1e9 / elapsedNanos);
+        }
+    }
+
+
+    /**
+     * 一块内容的解析结果，保持原始行序
+     */
+    private static class Chunk {
+        String[] words = new String[1024];
+        double[] freqs = new double[1024];
+        // 词典中的写法经过了规范化
+        boolean[] folded = new boolean[1024];
+        int size = 0;
+        double total = 0.0;
+
+
+        void add(String word, double freq, boolean isFolded) {
+            if (size == words.length) {
+                words = Arrays.copyOf(words, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+                folded = Arrays.copyOf(folded, size * 2);
+            }
+            words[size] = word;
+            freqs[size] = freq;
+            folded[size] = isFolded;
+            size++;
+            total += freq;
+        }
+    }
+
+
+    public static Result parse(byte[] data) {
+        return parse(data, 0, data.length);
+    }
+
+
+    public static Result parse(byte[] data, int offset, int length) {
+        long s = System.nanoTime();
+        int end = offset + length;
+        offset = skipBom(data, offset, end);
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors(), (end - offset) / CHUNK_SIZE);
+        Chunk[] parsed;
+        if (chunks <= 1) {
+            Chunk chunk = new Chunk();
+            parseLines(data, offset, end, chunk, new byte[64]);
+            parsed = new Chunk[]{chunk};
+        } else {
+            // 按行边界切块
+            final int[] bounds = new int[chunks + 1];
+            bounds[0] = offset;
+            bounds[chunks] = end;
+            int step = (end - offset) / chunks;
+            for (int i = 1; i < chunks; i++) {
+                int p = Math.max(bounds[i - 1], offset + step * i);
+                while (p < end && data[p] != '\n')
+                    p++;
+                bounds[i] = p < end ? p + 1 : end;
+            }
+            final byte[] bytes = data;
+            parsed = IntStream.range(0, chunks).parallel().mapToObj(i -> {
+                Chunk chunk = new Chunk();
+                parseLines(bytes, bounds[i], bounds[i + 1], chunk, new byte[64]);
+                return chunk;
+            }).toArray(Chunk[]::new);
+        }
+        return merge(parsed, s);
+    }
+
+
+    /**
+     * 流式解析，每次只持有一个缓冲区大小的原始内容
+     */
+    public static Result parse(InputStream is) throws IOException {
+        long s = System.nanoTime();
+        Chunk chunk = new Chunk();
+        byte[] scratch = new byte[64];
+        byte[] buf = new byte[BUFFER_SIZE];
+        int len = 0;
+        int start = 0;
+        boolean bomChecked = false;
+        int n;
+        while ((n = is.read(buf, len, buf.length - len)) != -1) {
+            len += n;
+            if (!bomChecked) {
+                if (len < 3)
+                    continue;
+                start = skipBom(buf, 0, len);
+                bomChecked = true;
+            }
+            int lastNewLine = len - 1;
+            while (lastNewLine >= start && buf[lastNewLine] != '\n')
+                lastNewLine--;
+            if (lastNewLine < start) {
+                // 一行比缓冲区还长，扩容
+                if (len == buf.length)
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                continue;
+            }
+            parseLines(buf, start, lastNewLine + 1, chunk, scratch);
+            len = len - lastNewLine - 1;
+            System.arraycopy(buf, lastNewLine + 1, buf, 0, len);
+            start = 0;
+        }
+        if (!bomChecked)
+            start = skipBom(buf, 0, len);
+        parseLines(buf, start, len, chunk, scratch);
+        return merge(new Chunk[]{chunk}, s);
+    }
+
+
+    /**
+     * 非UTF-8编码的内容先转成UTF-8
+     */
+    public static Result parse(InputStream is, Charset charset) throws IOException {
+        if (UTF8.equals(charset))
+            return parse(is);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = is.read(buf)) != -1)
+            bos.write(buf, 0, n);
+        return parse(new String(bos.toByteArray(), charset).getBytes(UTF8));
+    }
+
+
+    private static Result merge(Chunk[] chunks, long startNanos) {
+        int count = 0;
+        double total = 0.0;
+        for (Chunk chunk : chunks) {
+            count += chunk.size;
+            total += chunk.total;
+        }
+        Map<String, Double> freqs = new HashMap<String, Double>((int) (count / 0.75f) + 1);
+        Map<String, Double> folded = new HashMap<String, Double>();
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.size; i++) {
+                if (chunk.folded[i])
+                    folded.merge(chunk.words[i], chunk.freqs[i], Math::max);
+                else
+                    freqs.put(chunk.words[i], chunk.freqs[i]);
+            }
+        }
+        // 繁体、全角等写法不覆盖规范写法的较大词频
+        for (Map.Entry<String, Double> entry : folded.entrySet())
+            freqs.merge(entry.getKey(), entry.getValue(), Math::max);
+        String[] words = sort(freqs.keySet().toArray(new String[freqs.size()]));
+        return new Result(freqs, words, total, System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * 先按首字做计数排序分桶，再对每个桶内排序，比直接对整个数组做比较排序快得多
+     */
+    private static String[] sort(String[] words) {
+        int[] starts = new int[Character.MAX_VALUE + 2];
+        for (String word : words)
+            starts[word.charAt(0) + 1]++;
+        for (int i = 1; i < starts.length; i++)
+            starts[i] += starts[i - 1];
+        String[] sorted = new String[words.length];
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        for (String word : words)
+            sorted[next[word.charAt(0)]++] = word;
+        for (int i = 0; i < starts.length - 1; i++) {
+            if (starts[i + 1] - starts[i] > 1)
+                Arrays.sort(sorted, starts[i], starts[i + 1]);
+        }
+        return sorted;
+    }
+
+
+    private static int skipBom(byte[] data, int offset, int end) {
+        if (end - offset >= 3 && (data[offset] & 0xFF) == 0xEF && (data[offset + 1] & 0xFF) == 0xBB
+                && (data[offset + 2] & 0xFF) == 0xBF)
+            return offset + 3;
+        return offset;
+    }
+
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+
+    /**
+     * 解析[begin, end)中的所有行，缺少词频或词频不合法的行被跳过
+     */
+    private static void parseLines(byte[] data, int begin, int end, Chunk chunk, byte[] scratch) {
+        int p = begin;
+        while (p < end) {
+            // 词
+            while (p < end && (isSeparator(data[p]) || data[p] == '\r'))
+                p++;
+            int wordStart = p;
+            boolean ascii = true;
+            while (p < end && !isSeparator(data[p]) && data[p] != '\n' && data[p] != '\r') {
+                if (data[p] < 0)
+                    ascii = false;
+                p++;
+            }
+            int wordEnd = p;
+            // 词频
+            while (p < end && isSeparator(data[p]))
+                p++;
+            int freqStart = p;
+            while (p < end && !isSeparator(data[p]) && data[p] != '\n' && data[p] != '\r')
+                p++;
+            int freqEnd = p;
+            // 跳过行尾（词性等）
+            while (p < end && data[p] != '\n')
+                p++;
+            p++;
+
+            if (wordEnd == wordStart || freqEnd == freqStart)
+                continue;
+            double freq = parseFreq(data, freqStart, freqEnd);
+            if (Double.isNaN(freq))
+                continue;
+            addWord(chunk, data, wordStart, wordEnd, ascii, scratch, freq);
+        }
+    }
+
+
+    /**
+     * 词按CharacterUtil.regularize规范化，和分词时的输入一致
+     */
+    private static void addWord(Chunk chunk, byte[] data, int begin, int end, boolean ascii, byte[] scratch,
+                                double freq) {
+        if (!ascii) {
+            String raw = new String(data, begin, end - begin, UTF8);
+            String word = CharacterUtil.regularize(raw);
+            chunk.add(word, freq, word != raw);
+            return;
+        }
+        int len = end - begin;
+        byte[] lower = len <= scratch.length ? scratch : new byte[len];
+        boolean folded = false;
+        for (int i = 0; i < len; i++) {
+            byte b = data[begin + i];
+            if (b >= 'A' && b <= 'Z') {
+                lower[i] = (byte) (b + 32);
+                folded = true;
+            } else {
+                lower[i] = b;
+            }
+        }
+        chunk.add(new String(lower, 0, len, UTF8), freq, folded);
+    }
+
+
+    /**
+     * 常见的整数/小数词频直接按字节解析，其它形式交给Double.parseDouble，非法返回NaN
+     */
+    private static double parseFreq(byte[] data, int begin, int end) {
+        long integer = 0;
+        int p = begin;
+        while (p < end && data[p] >= '0' && data[p] <= '9' && p - begin < 18) {
+            integer = integer * 10 + (data[p] - '0');
+            p++;
+        }
+        if (p == end && p > begin)
+            return integer;
+        if (p < end && data[p] == '.' && p > begin) {
+            double fraction = 0.0;
+            double scale = 1.0;
+            int q = p + 1;
+            while (q < end && data[q] >= '0' && data[q] <= '9' && q - p < 16) {
+                fraction = fraction * 10 + (data[q] - '0');
+                scale *= 10;
+                q++;
+            }
+            if (q == end)
+                return integer + fraction / scale;
+        }
+        try {
+            return Double.parseDouble(new String(data, begin, end - begin, UTF8));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -12,6 +12,10 @@ class DictSegment implements Comparable<DictSegment> {
     // 数组大小上限
     private static final int ARRAY_LENGTH_LIMIT = 3;
 
+    // 节点状态的标志位：从根节点到当前节点的路径是一个词 / 是一个停用词
+    static final int WORD = 1;
+    static final int STOPWORD = 2;
+
     // 公用字典表，存储汉字
     private Map<Character, Character> charMap;
 
@@ -26,7 +30,7 @@ class DictSegment implements Comparable<DictSegment> {
     // storeSize <=ARRAY_LENGTH_LIMIT ，使用数组存储， storeSize >ARRAY_LENGTH_LIMIT
     // ,则使用Map存储
     private int storeSize = 0;
-    // 当前DictSegment状态 ,默认 0 , 1表示从根节点到当前节点的路径表示一个词
+    // 当前DictSegment状态 ,默认 0 , WORD、STOPWORD标志位的组合
     private int nodeState = 0;
 
 
@@ -134,7 +138,7 @@ class DictSegment implements Comparable<DictSegment> {
             } else if (length == 1) {
 
                 // 搜索最后一个char
-                if (ds.nodeState == 1) {
+                if ((ds.nodeState & WORD) != 0) {
                     // 添加HIT状态为完全匹配
                     searchHit.setMatch();
                 }
@@ -163,6 +167,89 @@ class DictSegment implements Comparable<DictSegment> {
     }
 
 
+    /**
+     * 按字典序批量填充词典片段，words必须已排序。
+     * 相邻的词共享前缀，从上一个词的公共前缀节点继续向下，不必每个词都从根节点查找；
+     * 排序后新的子节点总是追加在最后，数组存储时也不需要重新排序
+     *
+     * @param words
+     */
+    void fillSortedSegments(String[] words) {
+        fillSortedSegments(words, WORD);
+    }
+
+
+    /**
+     * 按字典序批量填充，并给每个词的末节点加上state标志位（WORD或STOPWORD）
+     *
+     * @param words
+     * @param state
+     */
+    synchronized void fillSortedSegments(String[] words, int state) {
+        DictSegment[] path = new DictSegment[16];
+        path[0] = this;
+        String prev = "";
+        for (String word : words) {
+            int length = word.length();
+            if (length == 0)
+                continue;
+            int common = 0;
+            int limit = Math.min(length, prev.length());
+            while (common < limit && word.charAt(common) == prev.charAt(common))
+                common++;
+            if (path.length <= length)
+                path = Arrays.copyOf(path, length * 2);
+            for (int i = common; i < length; i++) {
+                Character beginChar = Character.valueOf(word.charAt(i));
+                Character keyChar = charMap.get(beginChar);
+                if (keyChar == null) {
+                    charMap.put(beginChar, beginChar);
+                    keyChar = beginChar;
+                }
+                path[i + 1] = path[i].lookforSegment(keyChar, 1);
+            }
+            path[length].nodeState |= state;
+            prev = word;
+        }
+    }
+
+
+    /**
+     * 沿词典树查找词段对应的节点，不存在返回null。不创建Hit，适合每个词都要查一次的场合
+     */
+    DictSegment find(char[] charArray, int begin, int length) {
+        DictSegment ds = this;
+        for (int i = begin; i < begin + length && ds != null; i++)
+            ds = ds.child(charArray[i]);
+        return ds;
+    }
+
+
+    DictSegment child(char keyChar) {
+        DictSegment[] segmentArray = this.childrenArray;
+        Map<Character, DictSegment> segmentMap = this.childrenMap;
+        if (segmentArray != null) {
+            for (int i = 0; i < this.storeSize && i < segmentArray.length; i++) {
+                DictSegment segment = segmentArray[i];
+                if (segment != null && segment.nodeChar == keyChar)
+                    return segment;
+            }
+            return null;
+        }
+        return segmentMap == null ? null : segmentMap.get(keyChar);
+    }
+
+
+    boolean isWord() {
+        return (nodeState & WORD) != 0;
+    }
+
+
+    boolean isStopword() {
+        return (nodeState & STOPWORD) != 0;
+    }
+
+
     /**
      * 屏蔽词典中的一个词
      *
@@ -318,6 +405,38 @@ class DictSegment implements Comparable<DictSegment> {
     }
 
 
+    /**
+     * 估算公用字典表占用的堆内存
+     */
+    long charMapRamBytesUsed() {
+        return RamUsage.sizeOfHashMap(charMap.size()) + charMap.size() * RamUsage.BOXED;
+    }
+
+
+    /**
+     * 估算以当前节点为根的子树占用的堆内存，不含共享的charMap
+     */
+    long ramBytesUsed() {
+        // 对象头 + 4个引用 + 2个int
+        long size = RamUsage.align(RamUsage.OBJECT_HEADER + 4 * RamUsage.REFERENCE + 8);
+        DictSegment[] array = this.childrenArray;
+        if (array != null) {
+            size += RamUsage.sizeOfArray(array.length, RamUsage.REFERENCE);
+            for (DictSegment segment : array) {
+                if (segment != null)
+                    size += segment.ramBytesUsed();
+            }
+        }
+        Map<Character, DictSegment> map = this.childrenMap;
+        if (map != null) {
+            size += RamUsage.sizeOfHashMap(map.size());
+            for (DictSegment segment : map.values())
+                size += segment.ramBytesUsed();
+        }
+        return size;
+    }
+
+
     /**
      * 实现Comparable接口
      *
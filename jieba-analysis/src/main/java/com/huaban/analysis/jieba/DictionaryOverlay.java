@@ -0,0 +1,105 @@
+package com.huaban.analysis.jieba;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * 叠加在全局词典之上的一组用户词典，例如某个索引专用的词典。
+ * 主词典、全局用户词典和远程词典与全局共享，只额外持有这组词典的层；
+ * 全局词典发布新快照后，下一次get()时重新组合。
+ */
+public final class DictionaryOverlay implements Supplier<DictionarySnapshot> {
+    private static final AtomicLong ids = new AtomicLong();
+    // 每次加载都不同，即使是同一组文件（文件可能已经改变）
+    private final long id = ids.incrementAndGet();
+    private final DictLayer[] layers;
+    // 最近一次组合使用的全局快照和组合结果
+    private volatile Composed composed;
+
+
+    private static final class Composed {
+        final DictionarySnapshot base;
+        final DictionarySnapshot snapshot;
+
+
+        Composed(DictionarySnapshot base, DictionarySnapshot snapshot) {
+            this.base = base;
+            this.snapshot = snapshot;
+        }
+    }
+
+
+    private DictionaryOverlay(DictLayer[] layers) {
+        this.layers = layers;
+    }
+
+
+    /**
+     * 加载一组UTF-8用户词典，后面的覆盖前面的；不存在或无法读取的文件被跳过
+     */
+    public static DictionaryOverlay load(List<File> userDicts) {
+        WordDictionary dictionary = WordDictionary.getInstance();
+        List<DictLayer> loaded = new ArrayList<DictLayer>();
+        for (File userDict : userDicts) {
+            DictLayer layer = dictionary.buildUserLayer(userDict, Charset.forName("UTF-8"));
+            if (null != layer)
+                loaded.add(layer);
+        }
+        return new DictionaryOverlay(loaded.toArray(new DictLayer[loaded.size()]));
+    }
+
+
+    @Override
+    public DictionarySnapshot get() {
+        DictionarySnapshot base = WordDictionary.getInstance().snapshot();
+        Composed current = composed;
+        if (null == current || current.base != base) {
+            current = new Composed(base, base.withOverlay(layers));
+            composed = current;
+        }
+        return current.snapshot;
+    }
+
+
+    /**
+     * 叠加层的唯一标识，全局词典的快照版本号不能区分不同的叠加层
+     */
+    public long id() {
+        return id;
+    }
+
+
+    /**
+     * 估算叠加的词典层占用的堆内存
+     */
+    public long ramBytesUsed() {
+        long size = 0;
+        for (DictLayer layer : layers)
+            size += layer.ramBytes;
+        return size;
+    }
+
+
+    /**
+     * 不再使用时调用，释放这些层的内存记账
+     */
+    public void close() {
+        WordDictionary.adjustMemory(-ramBytesUsed());
+    }
+
+
+    /**
+     * 叠加的词数
+     */
+    public int size() {
+        int size = 0;
+        for (DictLayer layer : layers)
+            size += layer.size();
+        return size;
+    }
+}
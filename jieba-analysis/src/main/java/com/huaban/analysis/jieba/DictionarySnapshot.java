@@ -0,0 +1,298 @@
+package com.huaban.analysis.jieba;
+
+import java.util.Arrays;
+import java.util.Map;
+
+
+/**
+ * 词典在某一时刻的不可变快照：主词典 + 各用户词典层 + 远程增量 + 停用词 + 版本号。
+ * 一次分词只取一次快照，构建DAG和计算路径用的是同一份词典，重新加载只会发布新的快照。
+ */
+public final class DictionarySnapshot {
+    private final DictSegment mainTrie;
+    private final Map<String, Double> mainFreqs;
+    private final double minFreq;
+    private final DictLayer[] layers;
+    private final DictDelta delta;
+    // 只有STOPWORD标志的词典树，不参与切分；没有停用词时为null
+    private final DictSegment stopwords;
+    private final long version;
+
+
+    DictionarySnapshot(DictSegment mainTrie, Map<String, Double> mainFreqs, double minFreq, DictLayer[] layers,
+                       DictDelta delta, DictSegment stopwords, long version) {
+        this.mainTrie = mainTrie;
+        this.mainFreqs = mainFreqs;
+        this.minFreq = minFreq;
+        this.layers = layers;
+        this.delta = delta;
+        this.stopwords = stopwords;
+        this.version = version;
+    }
+
+
+    /**
+     * 替换用户词典层，得到下一个版本的快照
+     */
+    DictionarySnapshot withLayers(DictLayer[] layers) {
+        return new DictionarySnapshot(mainTrie, mainFreqs, minFreq, layers, delta, stopwords, version + 1);
+    }
+
+
+    /**
+     * 替换远程增量，得到下一个版本的快照
+     */
+    DictionarySnapshot withDelta(DictDelta delta) {
+        return new DictionarySnapshot(mainTrie, mainFreqs, minFreq, layers, delta, stopwords, version + 1);
+    }
+
+
+    /**
+     * 替换停用词，得到下一个版本的快照
+     */
+    DictionarySnapshot withStopwords(DictSegment stopwords) {
+        return new DictionarySnapshot(mainTrie, mainFreqs, minFreq, layers, delta, stopwords, version + 1);
+    }
+
+
+    DictSegment getStopwords() {
+        return stopwords;
+    }
+
+
+    DictLayer[] getLayers() {
+        return layers;
+    }
+
+
+    /**
+     * 在当前快照的用户词典层之上叠加额外的层（例如某个索引专用的词典），版本号不变
+     */
+    DictionarySnapshot withOverlay(DictLayer[] overlay) {
+        if (overlay.length == 0)
+            return this;
+        DictLayer[] merged = new DictLayer[layers.length + overlay.length];
+        System.arraycopy(layers, 0, merged, 0, layers.length);
+        System.arraycopy(overlay, 0, merged, layers.length, overlay.length);
+        return new DictionarySnapshot(mainTrie, mainFreqs, minFreq, merged, delta, stopwords, version);
+    }
+
+
+    DictDelta getDelta() {
+        return delta;
+    }
+
+
+    public long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * 已应用的远程增量版本
+     */
+    public long getDeltaVersion() {
+        return delta.version;
+    }
+
+
+    /**
+     * 在主词典和所有用户词典层中匹配词段，合并各层的命中状态；增量中删除的词不算完全匹配
+     */
+    Hit match(char[] charArray, int begin, int length) {
+        final DictLayer[] layers = this.layers;
+        Hit hit = mainTrie.match(charArray, begin, length);
+        for (DictLayer layer : layers) {
+            Hit layerHit = layer.trie.match(charArray, begin, length);
+            if (layerHit.isMatch())
+                hit.setMatch();
+            if (layerHit.isPrefix())
+                hit.setPrefix();
+        }
+        if (delta.isEmpty())
+            return hit;
+        DictDelta.Node node = delta.find(charArray, begin, length);
+        if (null != node) {
+            if (node.state == DictDelta.REMOVED && hit.isMatch()) {
+                boolean prefix = hit.isPrefix();
+                hit.setUnmatch();
+                if (prefix)
+                    hit.setPrefix();
+            } else if (node.state == DictDelta.WORD) {
+                hit.setMatch();
+            }
+            if (node.hasChildren())
+                hit.setPrefix();
+        }
+        return hit;
+    }
+
+
+    Walker walker() {
+        return new Walker();
+    }
+
+
+    /**
+     * 从同一个起点逐字向后匹配：主词典、各用户词典层和增量各自停在上一个前缀的节点上，
+     * 每多一个字每层只查一次子节点，不必像match那样为每个词段从根节点重新走一遍
+     */
+    final class Walker {
+        // [0]为主词典，[k]为第k个用户词典层，已经匹配不下去的为null
+        private final DictSegment[] nodes = new DictSegment[layers.length + 1];
+        private DictDelta.Node deltaNode;
+        private boolean match;
+        private boolean prefix;
+
+
+        /**
+         * 回到根节点，从新的起点开始匹配
+         */
+        void reset() {
+            nodes[0] = mainTrie;
+            for (int k = 0; k < layers.length; k++)
+                nodes[k + 1] = layers[k].trie;
+            deltaNode = delta.isEmpty() ? null : delta.root;
+            match = false;
+            prefix = false;
+        }
+
+
+        /**
+         * 向后匹配一个字，之后的状态与用match匹配从起点到这个字的词段相同
+         */
+        void next(char ch) {
+            match = false;
+            prefix = false;
+            for (int k = 0; k < nodes.length; k++) {
+                DictSegment node = nodes[k];
+                if (null == node)
+                    continue;
+                node = node.child(ch);
+                nodes[k] = node;
+                if (null != node) {
+                    if (node.isWord())
+                        match = true;
+                    if (node.hasNextNode())
+                        prefix = true;
+                }
+            }
+            if (null != deltaNode) {
+                deltaNode = deltaNode.child(ch);
+                if (null != deltaNode) {
+                    if (deltaNode.state == DictDelta.REMOVED)
+                        match = false;
+                    else if (deltaNode.state == DictDelta.WORD)
+                        match = true;
+                    if (deltaNode.hasChildren())
+                        prefix = true;
+                }
+            }
+        }
+
+
+        boolean isMatch() {
+            return match;
+        }
+
+
+        boolean isPrefix() {
+            return prefix;
+        }
+
+
+        /**
+         * 当前词段word的对数词频，与getFreq(word)相同，但只在包含这个词的最上层查一次
+         */
+        double freq(String word) {
+            if (null != deltaNode && deltaNode.state != DictDelta.NONE)
+                return deltaNode.state == DictDelta.WORD ? deltaNode.freq : minFreq;
+            for (int k = nodes.length - 1; k > 0; k--) {
+                if (null != nodes[k] && nodes[k].isWord()) {
+                    Double freq = layers[k - 1].freqs.get(word);
+                    if (null != freq)
+                        return freq;
+                }
+            }
+            if (null != nodes[0] && nodes[0].isWord()) {
+                Double freq = mainFreqs.get(word);
+                if (null != freq)
+                    return freq;
+            }
+            return minFreq;
+        }
+    }
+
+
+    /**
+     * 词段是否是停用词，字符需要和停用词一样先规范化
+     */
+    public boolean isStopword(char[] charArray, int begin, int length) {
+        if (null == stopwords || length <= 0)
+            return false;
+        DictSegment node = stopwords.find(charArray, begin, length);
+        return null != node && node.isStopword();
+    }
+
+
+    private static final long[] NO_SUBWORDS = new long[0];
+
+
+    /**
+     * 词段中在词典里的子词（不含词段本身），从每个起点沿词典树向后匹配，没有更长的前缀时停止
+     *
+     * @return 按起始、结束位置排序，每个子词为 起始 << 32 | 结束（相对begin）
+     */
+    public long[] subwords(char[] charArray, int begin, int length, int minLength, int maxLength) {
+        long[] subwords = NO_SUBWORDS;
+        int count = 0;
+        Walker walker = walker();
+        for (int i = 0; i + minLength <= length; i++) {
+            walker.reset();
+            for (int j = i + 1; j <= length && j - i <= maxLength; j++) {
+                if (j - i == length)
+                    break;
+                walker.next(charArray[begin + j - 1]);
+                if (walker.isMatch() && j - i >= minLength) {
+                    if (count == subwords.length)
+                        subwords = Arrays.copyOf(subwords, Math.max(4, count * 2));
+                    subwords[count++] = ((long) i << 32) | j;
+                }
+                if (!walker.isPrefix())
+                    break;
+            }
+        }
+        return count == subwords.length ? subwords : Arrays.copyOf(subwords, count);
+    }
+
+
+    public boolean containsWord(String word) {
+        DictDelta.Node node = delta.isEmpty() ? null : delta.find(word);
+        if (null != node && node.state != DictDelta.NONE)
+            return node.state == DictDelta.WORD;
+        final DictLayer[] layers = this.layers;
+        for (DictLayer layer : layers) {
+            if (layer.freqs.containsKey(word))
+                return true;
+        }
+        return mainFreqs.containsKey(word);
+    }
+
+
+    /**
+     * 上层覆盖下层，都没有（或已被增量删除）则返回主词典的最小词频
+     */
+    public double getFreq(String key) {
+        DictDelta.Node node = delta.isEmpty() ? null : delta.find(key);
+        if (null != node && node.state != DictDelta.NONE)
+            return node.state == DictDelta.WORD ? node.freq : minFreq;
+        final DictLayer[] layers = this.layers;
+        for (int i = layers.length - 1; i >= 0; i--) {
+            Double freq = layers[i].freqs.get(key);
+            if (null != freq)
+                return freq;
+        }
+        Double freq = mainFreqs.get(key);
+        return null != freq ? freq : minFreq;
+    }
+}
@@ -0,0 +1,76 @@
+package com.huaban.analysis.jieba;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * 词典的内存占用和加载统计
+ */
+public final class DictionaryStats {
+    /**
+     * 一个词典来源：主词典、用户词典文件、远程词典或远程增量
+     */
+    public static final class Source {
+        public final String name;
+        public final int words;
+        public final long ramBytes;
+        public final long loadMillis;
+
+
+        Source(String name, int words, long ramBytes, long loadMillis) {
+            this.name = name;
+            this.words = words;
+            this.ramBytes = ramBytes;
+            this.loadMillis = loadMillis;
+        }
+    }
+
+
+    public final long version;
+    public final long deltaVersion;
+    public final List<Source> sources;
+    // HMM模型
+    public final long finalSegRamBytes;
+    // 当前已记账的内存，包括正在构建的词典层和索引专用词典
+    public final long accountedBytes;
+    // 最近一次加载的来源和耗时
+    public final String lastLoadSource;
+    public final long lastLoadMillis;
+    // 加载成功和失败的累计次数
+    public final long loads;
+    public final long loadFailures;
+
+
+    DictionaryStats(long version, long deltaVersion, List<Source> sources, long finalSegRamBytes,
+                    long accountedBytes, String lastLoadSource, long lastLoadMillis, long loads, long loadFailures) {
+        this.version = version;
+        this.deltaVersion = deltaVersion;
+        this.sources = Collections.unmodifiableList(sources);
+        this.finalSegRamBytes = finalSegRamBytes;
+        this.accountedBytes = accountedBytes;
+        this.lastLoadSource = lastLoadSource;
+        this.lastLoadMillis = lastLoadMillis;
+        this.loads = loads;
+        this.loadFailures = loadFailures;
+    }
+
+
+    /**
+     * 当前快照中所有来源加上HMM模型的估算占用
+     */
+    public long totalRamBytes() {
+        long total = finalSegRamBytes;
+        for (Source source : sources)
+            total += source.ramBytes;
+        return total;
+    }
+
+
+    public int totalWords() {
+        int total = 0;
+        for (Source source : sources)
+            total += source.words;
+        return total;
+    }
+}
@@ -0,0 +1,67 @@
+package com.huaban.analysis.jieba;
+
+
+/**
+ * JFR事件的埋点。这里是Java 8下的空实现；jar包的META-INF/versions/11中有同名的类（源码在src/main/java11），
+ * 在Java 11及以上把这些调用记录为jieba.DocumentSegmented等JFR事件。
+ *
+ * begin返回的对象原样交给对应的end；事件没有在JFR配置中打开时begin返回null，end直接返回。
+ * 两个版本的公开方法必须保持一致。
+ */
+public final class JiebaEvents {
+    private JiebaEvents() {
+    }
+
+
+    public static Object beginDocument() {
+        return null;
+    }
+
+
+    /**
+     * @param length 文档字数
+     * @param tokens 切出的词数
+     */
+    public static void endDocument(Object event, int length, int tokens, String mode) {
+    }
+
+
+    public static Object beginHmm() {
+        return null;
+    }
+
+
+    /**
+     * @param chars  连续未登录单字的字数
+     * @param tokens HMM切出的词数
+     */
+    public static void endHmm(Object event, int chars, int tokens) {
+    }
+
+
+    public static Object beginReload() {
+        return null;
+    }
+
+
+    /**
+     * @param source 词典来源，主词典、用户词典的路径或远程词典
+     * @param words  词数
+     * @param bytes  这份词典占用的内存
+     */
+    public static void endReload(Object event, String source, int words, long bytes) {
+    }
+
+
+    public static Object beginRemoteFetch() {
+        return null;
+    }
+
+
+    /**
+     * @param status HTTP状态码，连接失败等异常时为-1
+     * @param bytes  读取的响应体字节数（压缩时为压缩后的大小）
+     */
+    public static void endRemoteFetch(Object event, String url, int status, long bytes) {
+    }
+}
@@ -3,59 +3,132 @@ package com.huaban.analysis.jieba;
 import com.huaban.analysis.jieba.viterbi.FinalSeg;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 
 public class JiebaSegmenter {
     private static FinalSeg finalSeg = FinalSeg.getInstance();
+    private static volatile SegmentationListener listener = SegmentationListener.NOOP;
+    public static final int DEFAULT_K_BEST = 3;
+    // 每个文档开始时取一次快照
+    private final Supplier<DictionarySnapshot> dictionary;
 
-    private Map<Integer, List<Integer>> createDAG(String sentence) {
+
+    public JiebaSegmenter() {
+        this(() -> WordDictionary.getInstance().snapshot());
+    }
+
+
+    /**
+     * 使用指定的词典，例如在全局词典之上叠加了索引专用词典的{@link DictionaryOverlay}
+     */
+    public JiebaSegmenter(Supplier<DictionarySnapshot> dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * 当前的词典快照
+     */
+    public DictionarySnapshot snapshot() {
+        return dictionary.get();
+    }
+
+
+    public Supplier<DictionarySnapshot> getDictionary() {
+        return dictionary;
+    }
+
+
+    /**
+     * 注册全局的分词回调，null表示取消
+     */
+    public static void setListener(SegmentationListener segmentationListener) {
+        listener = null == segmentationListener ? SegmentationListener.NOOP : segmentationListener;
+    }
+
+
+    /**
+     * 当前注册的回调，没有注册时为null。每个文档只读一次，之后各阶段只判断null，不调用空回调
+     */
+    private static SegmentationListener activeListener() {
+        SegmentationListener current = listener;
+        return current == SegmentationListener.NOOP ? null : current;
+    }
+
+    // 包内可见，供jieba-benchmarks单独测量
+    Map<Integer, List<Integer>> createDAG(final DictionarySnapshot dict, String sentence) {
+        return createDAG(dict, sentence, null);
+    }
+
+
+    /**
+     * 每个起点逐字向后匹配，直到不再是任何一层词典的前缀
+     *
+     * @param freqs 不为null时，freqs[i]依次记录dag.get(i)中每个词的对数词频，计算路径时不必再查词典
+     */
+    private Map<Integer, List<Integer>> createDAG(final DictionarySnapshot dict, String sentence, double[][] freqs) {
         Map<Integer, List<Integer>> dag = new HashMap<Integer, List<Integer>>();
-        DictSegment trie = WordDictionary.getInstance().getTrie();
         char[] chars = sentence.toCharArray();
         int N = chars.length;
-        int i = 0, j = 0;
-        while (i < N) {
-            Hit hit = trie.match(chars, i, j - i + 1);
-            if (hit.isPrefix() || hit.isMatch()) {
-                if (hit.isMatch()) {
-                    if (!dag.containsKey(i)) {
-                        List<Integer> value = new ArrayList<Integer>();
-                        dag.put(i, value);
-                        value.add(j);
-                    } else
-                        dag.get(i).add(j);
-                }
-                j += 1;
-                if (j >= N) {
-                    i += 1;
-                    j = i;
+        int edges = 0;
+        DictionarySnapshot.Walker walker = dict.walker();
+        double[] found = null == freqs ? null : new double[8];
+        for (int i = 0; i < N; ++i) {
+            List<Integer> value = new ArrayList<Integer>();
+            walker.reset();
+            for (int j = i; j < N; ++j) {
+                walker.next(chars[j]);
+                if (walker.isMatch()) {
+                    if (null != found) {
+                        if (value.size() == found.length)
+                            found = Arrays.copyOf(found, found.length * 2);
+                        found[value.size()] = walker.freq(sentence.substring(i, j + 1));
+                    }
+                    value.add(j);
                 }
-            } else {
-                i += 1;
-                j = i;
+                if (!walker.isPrefix())
+                    break;
             }
-        }
-        for (i = 0; i < N; ++i) {
-            if (!dag.containsKey(i)) {
-                List<Integer> value = new ArrayList<Integer>();
+            edges += value.size();
+            if (value.isEmpty()) {
                 value.add(i);
-                dag.put(i, value);
+                if (null != found)
+                    found[0] = dict.getFreq(sentence.substring(i, i + 1));
             }
+            dag.put(i, value);
+            if (null != freqs)
+                freqs[i] = Arrays.copyOf(found, value.size());
         }
+        if (SegmentationMetrics.counted())
+            SegmentationMetrics.dagEdges.add(edges);
         return dag;
     }
 
-    private Map<Integer, Pair<Integer>> calc(String sentence, Map<Integer, List<Integer>> dag) {
+    Map<Integer, Pair<Integer>> calc(final DictionarySnapshot dict, String sentence, Map<Integer, List<Integer>> dag) {
+        return calc(dict, sentence, dag, null);
+    }
+
+    /**
+     * @param freqs createDAG记录的词频，为null时从词典中查
+     */
+    private Map<Integer, Pair<Integer>> calc(final DictionarySnapshot dict, String sentence,
+                                             Map<Integer, List<Integer>> dag, double[][] freqs) {
         int N = sentence.length();
         HashMap<Integer, Pair<Integer>> route = new HashMap<Integer, Pair<Integer>>();
         route.put(N, new Pair<Integer>(0, 0.0));
         for (int i = N - 1; i > -1; i--) {
             Pair<Integer> candidate = null;
-            for (Integer x : dag.get(i)) {
-                double freq = WordDictionary.getInstance().getFreq(sentence.substring(i, x + 1)) + route.get(x + 1).freq;
+            List<Integer> ends = dag.get(i);
+            for (int k = 0; k < ends.size(); k++) {
+                int x = ends.get(k);
+                double freq = (null != freqs ? freqs[i][k] : dict.getFreq(sentence.substring(i, x + 1)))
+                        + route.get(x + 1).freq;
                 if (null == candidate) {
                     candidate = new Pair<Integer>(x, freq);
                 } else if (candidate.freq < freq) {
@@ -69,98 +142,274 @@ public class JiebaSegmenter {
     }
 
     public List<SegToken> process(String paragraph, SegMode mode) {
+        return process(paragraph, mode, DEFAULT_K_BEST);
+    }
+
+
+    /**
+     * @param kBest GRAPH模式保留的切分路径数，其他模式忽略
+     */
+    public List<SegToken> process(String paragraph, SegMode mode, int kBest) {
+        // 整个文档使用同一份词典快照
+        return process(dictionary.get(), paragraph, mode, kBest);
+    }
+
+
+    /**
+     * 使用指定的快照分词，调用方可以用同一份快照的版本号做缓存的key
+     */
+    public List<SegToken> process(final DictionarySnapshot dict, String paragraph, SegMode mode, int kBest) {
+        final SegmentationListener listener = activeListener();
+        Object event = JiebaEvents.beginDocument();
+        long start = System.nanoTime();
+        if (null != listener) {
+            listener.begin(SegmentationListener.Phase.DOCUMENT, paragraph.length());
+            listener.begin(SegmentationListener.Phase.NORMALIZE, paragraph.length());
+        }
+        char[] normalized = new char[paragraph.length()];
+        for (int i = 0; i < normalized.length; ++i)
+            normalized[i] = CharacterUtil.regularize(paragraph.charAt(i));
+        if (null != listener)
+            listener.end(SegmentationListener.Phase.NORMALIZE, normalized.length, System.nanoTime() - start);
+        return segment(dict, paragraph, normalized, normalized.length, mode, kBest, listener, event, start);
+    }
+
+
+    /**
+     * 对调用方已经逐字按{@link CharacterUtil#regularize(char)}规范化的文本normalized[0, length)分词，不再重复规范化。
+     * 不是中英文、数字的字单独成词，词的内容为规范化后的字符
+     */
+    public List<SegToken> processNormalized(final DictionarySnapshot dict, char[] normalized, int length, SegMode mode,
+                                            int kBest) {
+        final SegmentationListener listener = activeListener();
+        Object event = JiebaEvents.beginDocument();
+        long start = System.nanoTime();
+        if (null != listener)
+            listener.begin(SegmentationListener.Phase.DOCUMENT, length);
+        return segment(dict, null, normalized, length, mode, kBest, listener, event, start);
+    }
+
+
+    /**
+     * @param paragraph 规范化之前的文本，单独成词的字取原来的字符；为null时取规范化后的字符
+     */
+    private List<SegToken> segment(final DictionarySnapshot dict, String paragraph, char[] normalized, int length,
+                                   SegMode mode, int kBest, SegmentationListener listener, Object event, long start) {
         List<SegToken> tokens = new ArrayList<SegToken>();
         StringBuilder sb = new StringBuilder();
         int offset = 0;
-        for (int i = 0; i < paragraph.length(); ++i) {
-            char ch = CharacterUtil.regularize(paragraph.charAt(i));
+        for (int i = 0; i < length; ++i) {
+            char ch = normalized[i];
             if (CharacterUtil.ccFind(ch))
                 sb.append(ch);
             else {
                 if (sb.length() > 0) {
                     // process
-                    if (mode == SegMode.SEARCH) {
-                        for (String word : sentenceProcess(sb.toString())) {
-                            tokens.add(new SegToken(word, offset, offset += word.length()));
-                        }
-                    } else {
-                        for (String token : sentenceProcess(sb.toString())) {
-                            if (token.length() > 2) {
-                                String gram2;
-                                int j = 0;
-                                for (; j < token.length() - 1; ++j) {
-                                    gram2 = token.substring(j, j + 2);
-                                    if (WordDictionary.getInstance().containsWord(gram2))
-                                        tokens.add(new SegToken(gram2, offset + j, offset + j + 2));
-                                }
-                            }
-                            if (token.length() > 3) {
-                                String gram3;
-                                int j = 0;
-                                for (; j < token.length() - 2; ++j) {
-                                    gram3 = token.substring(j, j + 3);
-                                    if (WordDictionary.getInstance().containsWord(gram3))
-                                        tokens.add(new SegToken(gram3, offset + j, offset + j + 3));
-                                }
-                            }
-                            tokens.add(new SegToken(token, offset, offset += token.length()));
-                        }
-                    }
+                    processSentence(dict, sb.toString(), offset, mode, kBest, listener, tokens);
                     sb = new StringBuilder();
                     offset = i;
                 }
-                if (WordDictionary.getInstance().containsWord(paragraph.substring(i, i + 1)))
-                    tokens.add(new SegToken(paragraph.substring(i, i + 1), offset, ++offset));
-                else
-                    tokens.add(new SegToken(paragraph.substring(i, i + 1), offset, ++offset));
+                tokens.add(new SegToken(null == paragraph ? String.valueOf(ch) : paragraph.substring(i, i + 1), offset,
+                        ++offset));
             }
         }
         if (sb.length() > 0)
-            if (mode == SegMode.SEARCH) {
-                for (String token : sentenceProcess(sb.toString())) {
-                    tokens.add(new SegToken(token, offset, offset += token.length()));
+            processSentence(dict, sb.toString(), offset, mode, kBest, listener, tokens);
+
+        long elapsed = System.nanoTime() - start;
+        if (SegmentationMetrics.counted()) {
+            SegmentationMetrics.texts.increment();
+            SegmentationMetrics.tokens.add(tokens.size());
+            SegmentationMetrics.textNanos.record(elapsed);
+        }
+        if (null != listener)
+            listener.end(SegmentationListener.Phase.DOCUMENT, tokens.size(), elapsed);
+        JiebaEvents.endDocument(event, length, tokens.size(), mode.name());
+        return tokens;
+    }
+
+
+    private void processSentence(final DictionarySnapshot dict, String sentence, int offset, SegMode mode, int kBest,
+                                 SegmentationListener listener, List<SegToken> tokens) {
+        if (SegmentationMetrics.counted()) {
+            SegmentationMetrics.sentences.increment();
+            SegmentationMetrics.chars.add(sentence.length());
+        }
+        if (mode == SegMode.SEARCH) {
+            for (String word : sentenceProcess(dict, sentence, listener)) {
+                tokens.add(new SegToken(word, offset, offset += word.length()));
+            }
+        } else if (mode == SegMode.GRAPH) {
+            // 各条路径共有的词只输出一次
+            Set<Long> seen = new HashSet<Long>();
+            for (List<String> path : sentenceProcess(dict, sentence, kBest, listener)) {
+                int start = offset;
+                for (String word : path) {
+                    int end = start + word.length();
+                    if (seen.add(((long) start << 32) | end))
+                        tokens.add(new SegToken(word, start, end));
+                    start = end;
                 }
-            } else {
-                for (String token : sentenceProcess(sb.toString())) {
-                    if (token.length() > 2) {
-                        String gram2;
-                        int j = 0;
-                        for (; j < token.length() - 1; ++j) {
-                            gram2 = token.substring(j, j + 2);
-                            if (WordDictionary.getInstance().containsWord(gram2))
-                                tokens.add(new SegToken(gram2, offset + j, offset + j + 2));
-                        }
+            }
+        } else {
+            for (String token : sentenceProcess(dict, sentence, listener)) {
+                if (token.length() > 2) {
+                    String gram2;
+                    int j = 0;
+                    for (; j < token.length() - 1; ++j) {
+                        gram2 = token.substring(j, j + 2);
+                        if (dict.containsWord(gram2))
+                            tokens.add(new SegToken(gram2, offset + j, offset + j + 2));
                     }
-                    if (token.length() > 3) {
-                        String gram3;
-                        int j = 0;
-                        for (; j < token.length() - 2; ++j) {
-                            gram3 = token.substring(j, j + 3);
-                            if (WordDictionary.getInstance().containsWord(gram3))
-                                tokens.add(new SegToken(gram3, offset + j, offset + j + 3));
-                        }
+                }
+                if (token.length() > 3) {
+                    String gram3;
+                    int j = 0;
+                    for (; j < token.length() - 2; ++j) {
+                        gram3 = token.substring(j, j + 3);
+                        if (dict.containsWord(gram3))
+                            tokens.add(new SegToken(gram3, offset + j, offset + j + 3));
                     }
-                    tokens.add(new SegToken(token, offset, offset += token.length()));
                 }
+                tokens.add(new SegToken(token, offset, offset += token.length()));
             }
-
-        return tokens;
+        }
     }
 
     /*
      *
      */
     public List<String> sentenceProcess(String sentence) {
+        return sentenceProcess(dictionary.get(), sentence);
+    }
+
+
+    public List<String> sentenceProcess(final DictionarySnapshot dict, String sentence) {
+        return sentenceProcess(dict, sentence, activeListener());
+    }
+
+
+    private List<String> sentenceProcess(final DictionarySnapshot dict, String sentence, SegmentationListener listener) {
         List<String> tokens = new ArrayList<String>();
         int N = sentence.length();
-        Map<Integer, List<Integer>> dag = createDAG(sentence);
-        Map<Integer, Pair<Integer>> route = calc(sentence, dag);
+        if (null != listener)
+            listener.begin(SegmentationListener.Phase.DAG, N);
+        long start = System.nanoTime();
+        double[][] freqs = new double[N][];
+        Map<Integer, List<Integer>> dag = createDAG(dict, sentence, freqs);
+        long built = System.nanoTime();
+        if (null != listener) {
+            listener.end(SegmentationListener.Phase.DAG, N, built - start);
+            listener.begin(SegmentationListener.Phase.ROUTE, N);
+        }
+        Map<Integer, Pair<Integer>> route = calc(dict, sentence, dag, freqs);
+        long routed = System.nanoTime();
+        if (null != listener)
+            listener.end(SegmentationListener.Phase.ROUTE, N, routed - built);
+        if (SegmentationMetrics.counted()) {
+            SegmentationMetrics.dagNanos.record(built - start);
+            SegmentationMetrics.routeNanos.record(routed - built);
+        }
+
+        int[] next = new int[N];
+        for (int x = 0; x < N; x = next[x])
+            next[x] = route.get(x).key + 1;
+        cut(dict, sentence, next, listener, tokens);
+        return tokens;
+    }
+
+
+    /**
+     * 概率最大的前kBest种切分，第一种与{@link #sentenceProcess(DictionarySnapshot, String)}相同
+     */
+    public List<List<String>> sentenceProcess(final DictionarySnapshot dict, String sentence, int kBest) {
+        if (kBest < 1)
+            throw new IllegalArgumentException("kBest must be positive: " + kBest);
+        return sentenceProcess(dict, sentence, kBest, activeListener());
+    }
+
+
+    private List<List<String>> sentenceProcess(final DictionarySnapshot dict, String sentence, int kBest,
+                                               SegmentationListener listener) {
+        int N = sentence.length();
+        if (null != listener)
+            listener.begin(SegmentationListener.Phase.DAG, N);
+        long start = System.nanoTime();
+        double[][] freqs = new double[N][];
+        Map<Integer, List<Integer>> dag = createDAG(dict, sentence, freqs);
+        long built = System.nanoTime();
+        if (null != listener) {
+            listener.end(SegmentationListener.Phase.DAG, N, built - start);
+            listener.begin(SegmentationListener.Phase.ROUTE, N);
+        }
+        // 每个位置到句尾的前kBest条路径，按概率从大到小：score为对数概率，end为第一个词的结束位置，rank为后续路径的名次
+        double[][] score = new double[N + 1][kBest];
+        int[][] end = new int[N + 1][kBest];
+        int[][] rank = new int[N + 1][kBest];
+        int[] count = new int[N + 1];
+        count[N] = 1;
+        for (int i = N - 1; i > -1; i--) {
+            List<Integer> ends = dag.get(i);
+            for (int e = 0; e < ends.size(); e++) {
+                int x = ends.get(e);
+                double freq = freqs[i][e];
+                for (int r = 0; r < count[x + 1]; r++) {
+                    double candidate = freq + score[x + 1][r];
+                    // 概率相同时先出现的排在前面，与calc的选择一致
+                    int k = count[i];
+                    while (k > 0 && score[i][k - 1] < candidate)
+                        k--;
+                    if (k >= kBest)
+                        break;
+                    int last = Math.min(count[i], kBest - 1);
+                    System.arraycopy(score[i], k, score[i], k + 1, last - k);
+                    System.arraycopy(end[i], k, end[i], k + 1, last - k);
+                    System.arraycopy(rank[i], k, rank[i], k + 1, last - k);
+                    score[i][k] = candidate;
+                    end[i][k] = x;
+                    rank[i][k] = r;
+                    count[i] = last + 1;
+                }
+            }
+        }
+        long routed = System.nanoTime();
+        if (null != listener)
+            listener.end(SegmentationListener.Phase.ROUTE, N, routed - built);
+        if (SegmentationMetrics.counted()) {
+            SegmentationMetrics.dagNanos.record(built - start);
+            SegmentationMetrics.routeNanos.record(routed - built);
+        }
 
+        List<List<String>> paths = new ArrayList<List<String>>(count[0]);
+        int[] next = new int[N];
+        for (int p = 0; p < count[0]; p++) {
+            for (int x = 0, r = p; x < N; ) {
+                int y = end[x][r] + 1;
+                r = rank[x][r];
+                next[x] = y;
+                x = y;
+            }
+            List<String> tokens = new ArrayList<String>();
+            cut(dict, sentence, next, listener, tokens);
+            paths.add(tokens);
+        }
+        return paths;
+    }
+
+
+    /**
+     * 按路径切分，连续的单字不是词时交给HMM切分
+     *
+     * @param next 路径上每个词的起始位置到结束位置（不含）的映射
+     */
+    private void cut(final DictionarySnapshot dict, String sentence, int[] next, SegmentationListener listener,
+                     List<String> tokens) {
+        int N = sentence.length();
         int x = 0;
         int y = 0;
         String buf = "";
         while (x < N) {
-            y = route.get(x).key + 1;
+            y = next[x];
             String lWord = sentence.substring(x, y);
             if (y - x == 1)
                 buf += lWord;
@@ -170,10 +419,10 @@ public class JiebaSegmenter {
                         tokens.add(buf.toString());
                         buf = "";
                     } else {
-                        if (WordDictionary.getInstance().containsWord(buf)) {
+                        if (dict.containsWord(buf)) {
                             tokens.add(buf.toString());
                         } else {
-                            finalSeg.cut(buf, tokens);
+                            hmmCut(buf, listener, tokens);
                         }
                         buf = "";
                     }
@@ -187,21 +436,44 @@ public class JiebaSegmenter {
                 tokens.add(buf.toString());
                 buf = "";
             } else {
-                if (WordDictionary.getInstance().containsWord(buf)) {
+                if (dict.containsWord(buf)) {
                     tokens.add(buf.toString());
                 } else {
-                    finalSeg.cut(buf, tokens);
+                    hmmCut(buf, listener, tokens);
                 }
                 buf = "";
             }
 
         }
-        return tokens;
+    }
+
+
+    /**
+     * 连续的未登录单字交给HMM切分
+     */
+    private static void hmmCut(String buf, SegmentationListener listener, List<String> tokens) {
+        if (null != listener)
+            listener.begin(SegmentationListener.Phase.HMM, buf.length());
+        Object event = JiebaEvents.beginHmm();
+        int before = tokens.size();
+        long start = System.nanoTime();
+        finalSeg.cut(buf, tokens);
+        long elapsed = System.nanoTime() - start;
+        if (SegmentationMetrics.counted()) {
+            SegmentationMetrics.hmmCuts.increment();
+            SegmentationMetrics.hmmChars.add(buf.length());
+            SegmentationMetrics.hmmNanos.record(elapsed);
+        }
+        if (null != listener)
+            listener.end(SegmentationListener.Phase.HMM, tokens.size() - before, elapsed);
+        JiebaEvents.endHmm(event, buf.length(), tokens.size() - before);
     }
 
 
     public static enum SegMode {
         INDEX,
-        SEARCH
+        SEARCH,
+        // 查询时使用：前几种切分合成的词图，由分词器输出PositionLengthAttribute
+        GRAPH
     }
 }
@@ -0,0 +1,37 @@
+package com.huaban.analysis.jieba;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * 按2的幂分桶的耗时直方图：第i个桶记录[2^(i-1), 2^i)纳秒，第0个桶记录0。
+ * 每个桶是一个LongAdder，多个线程同时记录时不争用同一个计数器
+ */
+final class LatencyHistogram {
+    static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets[i] = new LongAdder();
+    }
+
+
+    void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        sum.add(nanos);
+    }
+
+
+    SegmentationStats.Histogram snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] = buckets[i].sum();
+        return new SegmentationStats.Histogram(counts, sum.sum());
+    }
+}
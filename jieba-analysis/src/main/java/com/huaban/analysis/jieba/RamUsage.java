@@ -0,0 +1,73 @@
+package com.huaban.analysis.jieba;
+
+import java.util.Map;
+
+
+/**
+ * 堆内存占用的粗略估算，按64位JVM开启压缩指针计算（对象头12字节，引用4字节，8字节对齐）
+ */
+public final class RamUsage {
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+    // Double、Character等包装对象
+    public static final long BOXED = 16;
+    // HashMap.Node：hash、key、value、next
+    static final long HASH_MAP_NODE = 32;
+    static final long HASH_MAP = 48;
+
+
+    private RamUsage() {
+    }
+
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+
+    public static long sizeOfArray(int length, int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+
+    static long sizeOfString(String s) {
+        return align(OBJECT_HEADER + REFERENCE + 8) + sizeOfArray(s.length(), 2);
+    }
+
+
+    /**
+     * HashMap本身、桶数组和节点，不含键值对象
+     */
+    public static long sizeOfHashMap(int size) {
+        int capacity = 1;
+        while (capacity * 0.75f < size)
+            capacity <<= 1;
+        return HASH_MAP + sizeOfArray(capacity, REFERENCE) + size * HASH_MAP_NODE;
+    }
+
+
+    /**
+     * 词 -> 词频
+     */
+    static long sizeOfFreqs(Map<String, Double> freqs) {
+        long size = sizeOfHashMap(freqs.size());
+        for (String word : freqs.keySet())
+            size += sizeOfString(word) + BOXED;
+        return size;
+    }
+
+
+    /**
+     * 可读的大小，例如 12.3mb
+     */
+    public static String humanReadable(long bytes) {
+        if (bytes < 1024)
+            return bytes + "b";
+        if (bytes < 1024 * 1024)
+            return String.format("%.1fkb", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024)
+            return String.format("%.1fmb", bytes / 1024.0 / 1024);
+        return String.format("%.1fgb", bytes / 1024.0 / 1024 / 1024);
+    }
+}
@@ -0,0 +1,43 @@
+package com.huaban.analysis.jieba;
+
+
+/**
+ * 分词各阶段的回调，例如记录慢文档。通过{@link JiebaSegmenter#setListener(SegmentationListener)}全局注册，
+ * 回调在分词线程上同步执行，同一线程上的begin/end成对出现，HMM、DAG等阶段嵌套在DOCUMENT之内。
+ * 没有注册时使用{@link #NOOP}，分词时每个文档只读一次注册的回调，是NOOP时各阶段都不调用回调。
+ */
+public interface SegmentationListener {
+    SegmentationListener NOOP = new SegmentationListener() {
+        @Override
+        public void begin(Phase phase, int size) {
+        }
+
+
+        @Override
+        public void end(Phase phase, int size, long nanos) {
+        }
+    };
+
+
+    enum Phase {
+        // 整个文档：开始时为字数，结束时为词数
+        DOCUMENT,
+        // 字符规范化：字数
+        NORMALIZE,
+        // 构建DAG：句子的字数
+        DAG,
+        // 计算最大概率路径：句子的字数
+        ROUTE,
+        // HMM切分连续的未登录单字：开始时为字数，结束时为切出的词数
+        HMM
+    }
+
+
+    void begin(Phase phase, int size);
+
+
+    /**
+     * @param nanos 这个阶段的耗时
+     */
+    void end(Phase phase, int size, long nanos);
+}
@@ -0,0 +1,48 @@
+package com.huaban.analysis.jieba;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * 全局的分词计数，所有JiebaSegmenter共用。只做LongAdder累加和System.nanoTime，不加锁
+ */
+final class SegmentationMetrics {
+    static final LongAdder texts = new LongAdder();
+    static final LongAdder sentences = new LongAdder();
+    static final LongAdder chars = new LongAdder();
+    static final LongAdder tokens = new LongAdder();
+    static final LongAdder dagEdges = new LongAdder();
+    static final LongAdder hmmCuts = new LongAdder();
+    static final LongAdder hmmChars = new LongAdder();
+    static final LatencyHistogram textNanos = new LatencyHistogram();
+    static final LatencyHistogram dagNanos = new LatencyHistogram();
+    static final LatencyHistogram routeNanos = new LatencyHistogram();
+    static final LatencyHistogram hmmNanos = new LatencyHistogram();
+
+    // 不计入统计的线程（启动预热），没有时为null
+    private static volatile Thread excluded;
+
+
+    private SegmentationMetrics() {
+    }
+
+
+    static void exclude(Thread thread) {
+        excluded = thread;
+    }
+
+
+    /**
+     * 当前线程的分词是否计入统计
+     */
+    static boolean counted() {
+        return Thread.currentThread() != excluded;
+    }
+
+
+    static SegmentationStats stats() {
+        return new SegmentationStats(texts.sum(), sentences.sum(), chars.sum(), tokens.sum(), dagEdges.sum(),
+                hmmCuts.sum(), hmmChars.sum(), textNanos.snapshot(), dagNanos.snapshot(), routeNanos.snapshot(),
+                hmmNanos.snapshot());
+    }
+}
@@ -0,0 +1,130 @@
+package com.huaban.analysis.jieba;
+
+import java.util.Arrays;
+
+
+/**
+ * 分词的累计计数和各阶段的耗时分布，从节点启动（或类加载）开始累计
+ */
+public final class SegmentationStats {
+    /**
+     * 耗时直方图的快照，可以合并多个节点的结果
+     */
+    public static final class Histogram {
+        // 第i个桶为[2^(i-1), 2^i)纳秒
+        public final long[] counts;
+        public final long sumNanos;
+
+
+        public Histogram(long[] counts, long sumNanos) {
+            this.counts = counts;
+            this.sumNanos = sumNanos;
+        }
+
+
+        public long count() {
+            long count = 0;
+            for (long c : counts)
+                count += c;
+            return count;
+        }
+
+
+        public long meanNanos() {
+            long count = count();
+            return count == 0 ? 0 : sumNanos / count;
+        }
+
+
+        /**
+         * 分位数所在桶的上界，q在0到1之间
+         */
+        public long percentileNanos(double q) {
+            long count = count();
+            if (count == 0)
+                return 0;
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0)
+                    return i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : 1L << i;
+            }
+            return Long.MAX_VALUE;
+        }
+
+
+        public Histogram merge(Histogram other) {
+            long[] merged = Arrays.copyOf(counts, Math.max(counts.length, other.counts.length));
+            for (int i = 0; i < other.counts.length; i++)
+                merged[i] += other.counts[i];
+            return new Histogram(merged, sumNanos + other.sumNanos);
+        }
+    }
+
+
+    // 分词的文本、句子（连续的中英文数字片段）、字符和输出的词
+    public final long texts;
+    public final long sentences;
+    public final long chars;
+    public final long tokens;
+    // DAG中的边（词典中匹配到的词）
+    public final long dagEdges;
+    // 交给HMM切分的片段数和字符数
+    public final long hmmCuts;
+    public final long hmmChars;
+    // 每段文本、每个句子构建DAG、计算路径、HMM切分的耗时
+    public final Histogram textNanos;
+    public final Histogram dagNanos;
+    public final Histogram routeNanos;
+    public final Histogram hmmNanos;
+
+
+    public SegmentationStats(long texts, long sentences, long chars, long tokens, long dagEdges, long hmmCuts,
+                             long hmmChars, Histogram textNanos, Histogram dagNanos, Histogram routeNanos,
+                             Histogram hmmNanos) {
+        this.texts = texts;
+        this.sentences = sentences;
+        this.chars = chars;
+        this.tokens = tokens;
+        this.dagEdges = dagEdges;
+        this.hmmCuts = hmmCuts;
+        this.hmmChars = hmmChars;
+        this.textNanos = textNanos;
+        this.dagNanos = dagNanos;
+        this.routeNanos = routeNanos;
+        this.hmmNanos = hmmNanos;
+    }
+
+
+    /**
+     * 所有分词器到目前为止累计的计数和耗时分布，不会加载词典或HMM模型
+     */
+    public static SegmentationStats current() {
+        return SegmentationMetrics.stats();
+    }
+
+
+    /**
+     * 当前线程之后的分词不计入统计，用于启动预热；传入false恢复。同一时间只有一个线程被排除
+     */
+    public static void excludeCurrentThread(boolean exclude) {
+        SegmentationMetrics.exclude(exclude ? Thread.currentThread() : null);
+    }
+
+
+    /**
+     * 由HMM切分的字符占句子字符的比例
+     */
+    public double hmmRate() {
+        return chars == 0 ? 0.0 : (double) hmmChars / chars;
+    }
+
+
+    public SegmentationStats merge(SegmentationStats other) {
+        return new SegmentationStats(texts + other.texts, sentences + other.sentences, chars + other.chars,
+                tokens + other.tokens, dagEdges + other.dagEdges, hmmCuts + other.hmmCuts, hmmChars + other.hmmChars,
+                textNanos.merge(other.textNanos), dagNanos.merge(other.dagNanos), routeNanos.merge(other.routeNanos),
+                hmmNanos.merge(other.hmmNanos));
+    }
+}
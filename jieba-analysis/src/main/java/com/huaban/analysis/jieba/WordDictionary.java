@@ -2,20 +2,54 @@ package com.huaban.analysis.jieba;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import com.huaban.analysis.jieba.viterbi.FinalSeg;
 
 
 public class WordDictionary {
+    private static final Logger logger = Logger.getLogger(WordDictionary.class.getName());
     private static final String MAIN_DICT = "/dict.txt";
-    private static WordDictionary singleton;
+    // 没有主词典时用于归一化的总词频，与jieba自带的dict.txt相同
+    private static final double DEFAULT_TOTAL = 60101967.0;
+    private static volatile WordDictionary singleton;
     private static String USER_DICT_SUFFIX = ".dict";
+    private static final String REMOTE_DICT = "remote";
+    // 词典目录中的停用词表，每行一个词，以//开头的行是注释
+    private static final String STOPWORDS = "stopwords.txt";
 
     public final Map<String, Double> freqs = new HashMap<String, Double>();
-    public final Map<String, Long> loadedPath = new HashMap<String, Long>();
     private Double minFreq = Double.MAX_VALUE;
     private Double total = 0.0;
     private DictSegment _dict;
+    // 当前发布的词典快照，整体替换，不原地修改
+    private volatile DictionarySnapshot snapshot;
+    private long mainRamBytes = 0;
+    private long mainLoadMillis = 0;
+    private volatile String lastLoadSource = null;
+    private volatile long lastLoadMillis = 0;
+    // 加载（包括重新加载、远程词典和增量）成功和失败的次数
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    // 已加载的停用词表的修改时间，没有加载时为0
+    // updateWords累计的修改（规范化后的词，词频未取对数），可以补发给没有收到的节点；远程增量的reset一并清空
+    private final Map<String, Double> editedWords = new LinkedHashMap<String, Double>();
+    private final Set<String> removedWords = new LinkedHashSet<String>();
+
+    private long stopwordsModified = 0;
+    private int stopwordCount = 0;
+    private long stopwordsRamBytes = 0;
+    private long stopwordsLoadMillis = 0;
+
+    // 内存记账，构建的层在被丢弃之前一直计入
+    private static volatile DictMemoryAccounting accounting = DictMemoryAccounting.NOOP;
+    private static final AtomicLong accountedBytes = new AtomicLong();
 
     private WordDictionary() {
         this.loadDict();
@@ -34,33 +68,38 @@ public class WordDictionary {
     }
 
     private boolean checkModify(File configFile){
-        WordDictionary instance = getInstance();
+        if (new File(configFile, STOPWORDS).lastModified() != stopwordsModified) {
+            return true;
+        }
+        Map<String, DictLayer> loaded = userLayers();
         int count = 0;
         for (File userDict : configFile.listFiles()) {
             if (userDict.getPath().endsWith(USER_DICT_SUFFIX)) {
-                Long historyLastModify = instance.loadedPath.getOrDefault(userDict.getAbsolutePath(), 0L);
-                if(Objects.equals(historyLastModify, userDict.lastModified())){
+                DictLayer layer = loaded.get(userDict.getAbsolutePath());
+                if(layer != null && layer.lastModified == userDict.lastModified()){
                     count++;
                     continue;
                 }
                 return true;
             }
         }
-        return instance.loadedPath.size() != count;
+        return loaded.size() != count;
     }
 
-    public static synchronized void reload(File configFile, boolean remoteChange, ByteArrayOutputStream byteArrayOutputStream){
+    /**
+     * 增量重新加载：主词典保持不变，只重建发生变化的用户词典层（以及变化了的远程词典层），
+     * 然后整体替换层数组，查询线程看到的要么是旧的层，要么是新的层
+     */
+    public static synchronized void reload(File configFile){
         if(Objects.isNull(configFile)){
             return;
         }
-        if(!getInstance().checkModify(configFile) && !remoteChange){
-            System.out.println("user dic not modify");
+        WordDictionary instance = getInstance();
+        if(!instance.checkModify(configFile)){
+            logger.fine("user dic not modify");
             return;
         }
-        WordDictionary wordDictionary = new WordDictionary();
-        wordDictionary.init(configFile, wordDictionary);
-        wordDictionary.loadRemoteDict(byteArrayOutputStream);
-        WordDictionary.singleton = wordDictionary;
+        instance.init(configFile, instance);
     }
 
 
@@ -72,14 +111,32 @@ public class WordDictionary {
      */
     public void init(File configFile, WordDictionary wordDictionary) {
         String path = configFile.getAbsolutePath();
-        System.out.println("initialize user dictionary:" + path);
+        logger.info("initialize user dictionary:" + path);
         synchronized (WordDictionary.class) {
+            Map<String, DictLayer> loaded = userLayers();
+            List<DictLayer> next = new ArrayList<DictLayer>();
             for (File userDict : configFile.listFiles()) {
                 if (userDict.getPath().endsWith(USER_DICT_SUFFIX)) {
-                    wordDictionary.loadUserDict(userDict);
-                    loadedPath.put(userDict.getAbsolutePath(), userDict.lastModified());
+                    DictLayer layer = loaded.get(userDict.getAbsolutePath());
+                    if (layer == null || layer.lastModified != userDict.lastModified()) {
+                        // 重建失败（例如超出内存限制）时保留旧的层
+                        DictLayer rebuilt = wordDictionary.buildUserLayer(userDict, Charset.forName("UTF-8"));
+                        layer = null == rebuilt ? layer : rebuilt;
+                    } else {
+                        logger.fine("already loaded: " + layer.source);
+                    }
+                    if (layer != null) {
+                        next.add(layer);
+                    }
                 }
             }
+            for (DictLayer layer : snapshot.getLayers()) {
+                if (REMOTE_DICT.equals(layer.source)) {
+                    next.add(layer);
+                }
+            }
+            loadStopwords(new File(configFile, STOPWORDS));
+            publish(next);
         }
     }
 
@@ -87,50 +144,124 @@ public class WordDictionary {
     public void loadDict() {
         _dict = new DictSegment((char) 0, new HashMap<>());
         InputStream is = this.getClass().getResourceAsStream(MAIN_DICT);
-        try {
-            BufferedReader br = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-
-            long s = System.currentTimeMillis();
-            while (br.ready()) {
-                String line = br.readLine();
-                String[] tokens = line.split("[\t ]+");
+        if (null == is) {
+            logger.warning(String.format("%s not found!", MAIN_DICT));
+            loadFailures.increment();
+        } else {
+            Object event = JiebaEvents.beginReload();
+            try {
+                DictParser.Result parsed = DictParser.parse(readFully(is));
+                long s = System.currentTimeMillis();
+                total = parsed.total;
+                freqs.putAll(parsed.freqs);
+                _dict.fillSortedSegments(parsed.words);
+                // normalize
+                for (Entry<String, Double> entry : freqs.entrySet()) {
+                    entry.setValue((Math.log(entry.getValue() / total)));
+                    minFreq = Math.min(entry.getValue(), minFreq);
+                }
+                mainLoadMillis = parsed.elapsedMillis() + System.currentTimeMillis() - s;
+                mainRamBytes = _dict.ramBytesUsed() + _dict.charMapRamBytesUsed() + RamUsage.sizeOfFreqs(freqs);
+                // 没有主词典无法分词，只记账不拒绝
+                adjustMemory(mainRamBytes);
+                recordLoad(MAIN_DICT, mainLoadMillis);
+                JiebaEvents.endReload(event, MAIN_DICT, parsed.words.length, mainRamBytes);
+                logger.info(String.format("main dict load finished, tot words:%d, parse %d ms (%d words/s), build %d ms, ram %s",
+                        parsed.words.length, parsed.elapsedMillis(), parsed.wordsPerSecond(), System.currentTimeMillis() - s,
+                        RamUsage.humanReadable(mainRamBytes)));
+            } catch (IOException e) {
+                logger.warning(String.format("%s load failure!", MAIN_DICT));
+                loadFailures.increment();
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    logger.warning(String.format("%s close failure!", MAIN_DICT));
+                }
+            }
+        }
+        if (!(total > 0)) {
+            // 否则用户词典、增量的词频都是log(freq / 0) = Infinity，词频不再影响切分；未登录词按词频1计
+            total = DEFAULT_TOTAL;
+            minFreq = Math.log(1 / total);
+        }
+        DictLayer[] layers = null == snapshot ? new DictLayer[0] : snapshot.getLayers();
+        DictDelta delta = null == snapshot ? DictDelta.EMPTY : snapshot.getDelta();
+        DictSegment stopwords = null == snapshot ? null : snapshot.getStopwords();
+        snapshot = new DictionarySnapshot(_dict, freqs, minFreq, layers, delta, stopwords,
+                null == snapshot ? 0 : snapshot.getVersion() + 1);
+    }
 
-                if (tokens.length < 2)
-                    continue;
 
-                String word = tokens[0];
-                double freq = Double.valueOf(tokens[1]);
-                total += freq;
-                word = addWord(word);
-                freqs.put(word, freq);
+    /**
+     * 加载停用词表，停用词只在单独的词典树上打STOPWORD标志，不影响切分。
+     * 文件没有变化时不重新加载，文件被删除时清空停用词
+     */
+    public void loadStopwords(File stopwordsFile) {
+        long lastModified = stopwordsFile.lastModified();
+        synchronized (WordDictionary.class) {
+            if (lastModified == stopwordsModified) {
+                return;
             }
-            // normalize
-            for (Entry<String, Double> entry : freqs.entrySet()) {
-                entry.setValue((Math.log(entry.getValue() / total)));
-                minFreq = Math.min(entry.getValue(), minFreq);
+            long s = System.currentTimeMillis();
+            DictSegment trie = null;
+            int count = 0;
+            long ramBytes = 0;
+            if (lastModified != 0) {
+                String[] words;
+                try {
+                    words = readStopwords(stopwordsFile);
+                } catch (IOException e) {
+                    logger.warning(String.format("%s: load stopwords failure!", stopwordsFile.getAbsolutePath()));
+                    loadFailures.increment();
+                    return;
+                }
+                trie = new DictSegment((char) 0, new HashMap<Character, Character>());
+                trie.fillSortedSegments(words, DictSegment.STOPWORD);
+                count = words.length;
+                ramBytes = trie.ramBytesUsed() + trie.charMapRamBytesUsed();
             }
-            System.out.println(String.format("main dict load finished, time elapsed %d ms",
-                    System.currentTimeMillis() - s));
-        } catch (IOException e) {
-            System.err.println(String.format("%s load failure!", MAIN_DICT));
-        } finally {
-            try {
-                if (null != is)
-                    is.close();
-            } catch (IOException e) {
-                System.err.println(String.format("%s close failure!", MAIN_DICT));
+            adjustMemory(ramBytes - stopwordsRamBytes);
+            stopwordsModified = lastModified;
+            stopwordCount = count;
+            stopwordsRamBytes = ramBytes;
+            stopwordsLoadMillis = System.currentTimeMillis() - s;
+            snapshot = snapshot.withStopwords(trie);
+            recordLoad(STOPWORDS, stopwordsLoadMillis);
+            logger.info(String.format("stopwords %s load finished, tot words:%d, time elapsed:%dms",
+                    stopwordsFile.getAbsolutePath(), count, stopwordsLoadMillis));
+        }
+    }
+
+
+    /**
+     * 读取停用词，和分词器的输出一样，中英文、数字按CharacterUtil规范化，其他字符保持原样
+     */
+    private static String[] readStopwords(File stopwordsFile) throws IOException {
+        TreeSet<String> words = new TreeSet<String>();
+        for (String line : Files.readAllLines(stopwordsFile.toPath(), Charset.forName("UTF-8"))) {
+            line = line.replace("\uFEFF", "").trim();
+            if (line.isEmpty() || line.startsWith("//"))
+                continue;
+            char[] chars = line.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                char ch = CharacterUtil.regularize(chars[i]);
+                if (CharacterUtil.ccFind(ch))
+                    chars[i] = ch;
             }
+            words.add(new String(chars));
         }
+        return words.toArray(new String[words.size()]);
     }
 
 
-    private String addWord(String word) {
-        if (null != word && !"".equals(word.trim())) {
-            String key = word.trim().toLowerCase();
-            _dict.fillSegment(key.toCharArray());
-            return key;
-        } else
-            return null;
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(is.available(), 4096));
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ((n = is.read(buf)) != -1)
+            bos.write(buf, 0, n);
+        return bos.toByteArray();
     }
 
 
@@ -138,75 +269,395 @@ public class WordDictionary {
         loadUserDict(userDict, Charset.forName("UTF-8"));
     }
 
-    private void  loadRemoteDict(ByteArrayOutputStream byteArrayOutputStream){
-        if(Objects.isNull(byteArrayOutputStream)){
-            System.out.println("remote dict is null");
-            return;
-        }
+    /**
+     * 直接从输入流（例如HTTP响应）解析远程词典并替换远程词典层，不在内存中缓存原始内容
+     *
+     * @param is UTF-8编码的词典内容
+     */
+    public void loadRemoteDict(InputStream is) throws IOException {
+        Object event = JiebaEvents.beginReload();
+        long s = System.currentTimeMillis();
+        DictParser.Result parsed;
+        DictLayer layer;
         try {
-            BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()), "UTF-8"));
-            long s = System.currentTimeMillis();
-            int count = 0;
-            while (br.ready()) {
-                String line = br.readLine();
-                String[] tokens = line.split("[\t ]+");
+            parsed = DictParser.parse(is);
+            layer = newLayer(REMOTE_DICT, s, parsed);
+        } catch (IOException | RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        }
+        logger.info(String.format("user remote dict load finished, tot words:%d, time elapsed:%dms, %d words/s",
+                layer.size(), System.currentTimeMillis() - s, parsed.wordsPerSecond()));
+        publishRemote(layer);
+        JiebaEvents.endReload(event, REMOTE_DICT, layer.size(), layer.ramBytes);
+    }
+
+
+    private void publishRemote(DictLayer layer) {
+        synchronized (WordDictionary.class) {
+            List<DictLayer> next = new ArrayList<DictLayer>();
+            for (DictLayer current : snapshot.getLayers()) {
+                if (!REMOTE_DICT.equals(current.source)) {
+                    next.add(current);
+                }
+            }
+            if (layer != null) {
+                next.add(layer);
+            }
+            publish(next);
+        }
+    }
 
-                if (tokens.length < 2)
+
+    /**
+     * 应用远程增量，内容为UTF-8文本：
+     * <pre>
+     * version 42
+     * reset          （可选，先清空已有的增量）
+     * + 新词 100      （新增）
+     * = 旧词 200      （修改词频）
+     * - 旧词          （删除）
+     * </pre>
+     * 版本号不大于当前版本且没有reset时忽略；非法的行被跳过
+     *
+     * @return 是否发布了新的增量
+     */
+    public boolean applyDelta(InputStream is) throws IOException {
+        long s = System.currentTimeMillis();
+        BufferedReader br = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
+        String header = nextLine(br);
+        long version = -1;
+        if (null != header && header.startsWith("version")) {
+            try {
+                version = Long.parseLong(header.substring("version".length()).trim());
+            } catch (NumberFormatException ignore) {}
+        }
+        if (version < 0) {
+            logger.warning("invalid remote delta header: " + header);
+            loadFailures.increment();
+            return false;
+        }
+        // 先读完所有操作，不在持锁期间读网络
+        boolean reset = false;
+        List<String> words = new ArrayList<String>();
+        List<Double> logFreqs = new ArrayList<Double>();
+        String line = nextLine(br);
+        if ("reset".equals(line)) {
+            reset = true;
+            line = nextLine(br);
+        }
+        for (; line != null; line = nextLine(br)) {
+            // 操作符之后依次为词和词频，和DictParser一样逐字符扫描空格、tab，不用正则切分
+            char op = line.charAt(0);
+            int p = skipSeparators(line, 1);
+            int wordEnd = skipToken(line, p);
+            if (wordEnd == p)
+                continue;
+            String word = CharacterUtil.regularize(line.substring(p, wordEnd));
+            if (op == '-') {
+                words.add(word);
+                logFreqs.add(null);
+            } else if (op == '+' || op == '=') {
+                int freqStart = skipSeparators(line, wordEnd);
+                int freqEnd = skipToken(line, freqStart);
+                if (freqEnd == freqStart)
                     continue;
+                try {
+                    double freq = Double.parseDouble(line.substring(freqStart, freqEnd));
+                    // 和updateWords一样跳过非正的词频，否则对数为-Infinity或NaN，破坏路径计算
+                    if (!(freq > 0) || Double.isInfinite(freq))
+                        continue;
+                    logFreqs.add(Math.log(freq / total));
+                    words.add(word);
+                } catch (NumberFormatException ignore) {}
+            }
+        }
+        synchronized (WordDictionary.class) {
+            DictDelta delta = reset ? DictDelta.EMPTY : snapshot.getDelta();
+            if (!reset && version <= delta.version)
+                return false;
+            if (reset) {
+                editedWords.clear();
+                removedWords.clear();
+            }
+            for (int i = 0; i < words.size(); i++) {
+                Double logFreq = logFreqs.get(i);
+                delta = null == logFreq ? delta.remove(words.get(i)) : delta.put(words.get(i), logFreq);
+            }
+            snapshot = snapshot.withDelta(delta.withVersion(version));
+            recordLoad("delta", System.currentTimeMillis() - s);
+            logger.info(String.format("remote delta %d applied, %d ops, %d words in delta, time elapsed:%dms",
+                    version, words.size(), delta.size, System.currentTimeMillis() - s));
+            return true;
+        }
+    }
+
 
-                String word = tokens[0];
-                double freq = Double.valueOf(tokens[1]);
-                word = addWord(word);
-                freqs.put(word, Math.log(freq / total));
-                count++;
+    /**
+     * 直接增删词，写入远程增量所在的同一个路径复制的词典树，不重建任何词典层，也不改变增量的版本号。
+     * 远程增量的reset会一并清除这里的修改
+     *
+     * @param add    新增或修改的词和词频（与词典文件中的词频相同，未取对数）
+     * @param remove 删除的词
+     * @return 发布后的快照版本
+     */
+    public long updateWords(Map<String, Double> add, Collection<String> remove) {
+        long s = System.currentTimeMillis();
+        synchronized (WordDictionary.class) {
+            DictDelta delta = snapshot.getDelta();
+            Map<String, Double> added = new LinkedHashMap<String, Double>();
+            List<String> removed = new ArrayList<String>();
+            for (Entry<String, Double> entry : add.entrySet()) {
+                String word = CharacterUtil.regularize(entry.getKey().trim());
+                if (word.isEmpty() || null == entry.getValue() || !(entry.getValue() > 0))
+                    throw new IllegalArgumentException("invalid word [" + entry.getKey() + "] or freq [" + entry.getValue() + "]");
+                delta = delta.put(word, Math.log(entry.getValue() / total));
+                added.put(word, entry.getValue());
+            }
+            for (String word : remove) {
+                String key = CharacterUtil.regularize(word.trim());
+                if (!key.isEmpty()) {
+                    delta = delta.remove(key);
+                    removed.add(key);
+                }
             }
-            System.out.println(String.format("user remote dict load finished, tot words:%d, time elapsed:%dms",
-                     count, System.currentTimeMillis() - s));
-        }catch (Exception e){
-            e.printStackTrace();
-            System.out.println("remote load dict failure!");
+            snapshot = snapshot.withDelta(delta);
+            for (Entry<String, Double> entry : added.entrySet()) {
+                removedWords.remove(entry.getKey());
+                editedWords.put(entry.getKey(), entry.getValue());
+            }
+            for (String word : removed) {
+                editedWords.remove(word);
+                removedWords.add(word);
+            }
+            recordLoad("words", System.currentTimeMillis() - s);
+            logger.info(String.format("%d words added, %d words removed, %d words in delta",
+                    add.size(), remove.size(), delta.size));
+            return snapshot.getVersion();
+        }
+    }
+
+
+    /**
+     * updateWords新增或修改、且之后没有被删除的词和词频
+     */
+    public Map<String, Double> editedWords() {
+        synchronized (WordDictionary.class) {
+            return new LinkedHashMap<String, Double>(editedWords);
+        }
+    }
+
+
+    /**
+     * updateWords删除、且之后没有被重新加入的词
+     */
+    public List<String> removedWords() {
+        synchronized (WordDictionary.class) {
+            return new ArrayList<String>(removedWords);
+        }
+    }
+
+
+    private static int skipSeparators(String line, int p) {
+        while (p < line.length() && (line.charAt(p) == ' ' || line.charAt(p) == '\t'))
+            p++;
+        return p;
+    }
+
+
+    private static int skipToken(String line, int p) {
+        while (p < line.length() && line.charAt(p) != ' ' && line.charAt(p) != '\t')
+            p++;
+        return p;
+    }
+
+
+    private static String nextLine(BufferedReader br) throws IOException {
+        String line;
+        while ((line = br.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty())
+                return line;
         }
+        return null;
+    }
+
+
+    public long getDeltaVersion() {
+        return snapshot.getDeltaVersion();
     }
 
 
     public void loadUserDict(File userDict, Charset charset) {
-        InputStream is;
-        try {
-            is = new FileInputStream(userDict);
-        } catch (FileNotFoundException e) {
-            System.err.println(String.format("could not find %s", userDict.getAbsolutePath()));
+        DictLayer layer = buildUserLayer(userDict, charset);
+        if (layer == null) {
             return;
         }
+        synchronized (WordDictionary.class) {
+            List<DictLayer> next = new ArrayList<DictLayer>();
+            for (DictLayer current : snapshot.getLayers()) {
+                if (!layer.source.equals(current.source)) {
+                    next.add(current);
+                }
+            }
+            next.add(layer);
+            publish(next);
+        }
+    }
+
+
+    DictLayer buildUserLayer(File userDict, Charset charset) {
+        Object event = JiebaEvents.beginReload();
         try {
-            @SuppressWarnings("resource")
-            BufferedReader br = new BufferedReader(new InputStreamReader(is, charset));
             long s = System.currentTimeMillis();
-            int count = 0;
-            while (br.ready()) {
-                String line = br.readLine();
-                String[] tokens = line.split("[\t ]+");
+            long lastModified = userDict.lastModified();
+            DictParser.Result parsed;
+            if (Charset.forName("UTF-8").equals(charset)) {
+                parsed = DictParser.parse(Files.readAllBytes(userDict.toPath()));
+            } else {
+                InputStream is = new FileInputStream(userDict);
+                try {
+                    parsed = DictParser.parse(is, charset);
+                } finally {
+                    is.close();
+                }
+            }
+            DictLayer layer = newLayer(userDict.getAbsolutePath(), lastModified, parsed);
+            logger.info(String.format("user dict %s load finished, tot words:%d, time elapsed:%dms, %d words/s",
+                    userDict.getAbsolutePath(), layer.size(), System.currentTimeMillis() - s, parsed.wordsPerSecond()));
+            JiebaEvents.endReload(event, layer.source, layer.size(), layer.ramBytes);
+            return layer;
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            logger.warning(String.format("could not find %s", userDict.getAbsolutePath()));
+            loadFailures.increment();
+            return null;
+        } catch (IOException e) {
+            logger.warning(String.format("%s: load user dict failure!", userDict.getAbsolutePath()));
+            loadFailures.increment();
+            return null;
+        } catch (RuntimeException e) {
+            logger.warning(String.format("%s: load user dict refused: %s", userDict.getAbsolutePath(), e.getMessage()));
+            loadFailures.increment();
+            return null;
+        }
+    }
 
-                if (tokens.length < 2)
-                    continue;
 
-                String word = tokens[0];
-                double freq = Double.valueOf(tokens[1]);
-                word = addWord(word);
-                freqs.put(word, Math.log(freq / total));
-                count++;
+    /**
+     * 构建一个词典层：先按估算值预留内存（超出限制时抛出异常），构建完成后按实际占用修正
+     */
+    private DictLayer newLayer(String source, long lastModified, DictParser.Result parsed) {
+        long estimate = DictLayer.estimateRamBytes(parsed);
+        reserveMemory(estimate, source);
+        DictLayer layer;
+        try {
+            layer = new DictLayer(source, lastModified, parsed, total);
+        } catch (RuntimeException | Error e) {
+            adjustMemory(-estimate);
+            throw e;
+        }
+        adjustMemory(layer.ramBytes - estimate);
+        recordLoad(source, layer.loadMillis);
+        return layer;
+    }
+
+
+    private void recordLoad(String source, long millis) {
+        lastLoadSource = source;
+        lastLoadMillis = millis;
+        loads.increment();
+    }
+
+
+    static void reserveMemory(long bytes, String source) {
+        accounting.reserve(bytes, source);
+        accountedBytes.addAndGet(bytes);
+    }
+
+
+    static void adjustMemory(long bytes) {
+        accounting.adjust(bytes);
+        accountedBytes.addAndGet(bytes);
+    }
+
+
+    /**
+     * 设置内存记账，已经加载的词典立即计入
+     */
+    public static void setMemoryAccounting(DictMemoryAccounting memoryAccounting) {
+        DictMemoryAccounting next = null == memoryAccounting ? DictMemoryAccounting.NOOP : memoryAccounting;
+        synchronized (WordDictionary.class) {
+            long accounted = accountedBytes.get();
+            accounting.adjust(-accounted);
+            next.adjust(accounted);
+            accounting = next;
+        }
+    }
+
+
+    /**
+     * 发布新的层数组，用户词典按路径排序，远程词典始终在最上层（后加载的覆盖先加载的）
+     */
+    private void publish(List<DictLayer> next) {
+        Collections.sort(next, new Comparator<DictLayer>() {
+            @Override
+            public int compare(DictLayer o1, DictLayer o2) {
+                boolean r1 = REMOTE_DICT.equals(o1.source);
+                boolean r2 = REMOTE_DICT.equals(o2.source);
+                if (r1 != r2) {
+                    return r1 ? 1 : -1;
+                }
+                return o1.source.compareTo(o2.source);
             }
-            System.out.println(String.format("user dict %s load finished, tot words:%d, time elapsed:%dms",
-                    userDict.getAbsolutePath(), count, System.currentTimeMillis() - s));
-        } catch (IOException e) {
-            System.err.println(String.format("%s: load user dict failure!", userDict.getAbsolutePath()));
-        } finally {
-            try {
-                if (null != is)
-                    is.close();
-            } catch (IOException e) {
-                System.err.println(String.format("%s close failure!", userDict.getAbsolutePath()));
+        });
+        DictLayer[] previous = snapshot.getLayers();
+        this.snapshot = snapshot.withLayers(next.toArray(new DictLayer[next.size()]));
+        // 被替换掉的层不再计入
+        long dropped = 0;
+        for (DictLayer layer : previous) {
+            boolean kept = false;
+            for (DictLayer current : next) {
+                kept |= current == layer;
+            }
+            if (!kept) {
+                dropped += layer.ramBytes;
             }
         }
+        adjustMemory(-dropped);
+    }
+
+
+    /**
+     * 当前快照中各词典来源的词数、估算的内存占用和加载耗时
+     */
+    public DictionaryStats stats() {
+        DictionarySnapshot current = snapshot;
+        List<DictionaryStats.Source> sources = new ArrayList<DictionaryStats.Source>();
+        sources.add(new DictionaryStats.Source(MAIN_DICT, freqs.size(), mainRamBytes, mainLoadMillis));
+        for (DictLayer layer : current.getLayers()) {
+            sources.add(new DictionaryStats.Source(layer.source, layer.size(), layer.ramBytes, layer.loadMillis));
+        }
+        if (null != current.getStopwords()) {
+            sources.add(new DictionaryStats.Source(STOPWORDS, stopwordCount, stopwordsRamBytes, stopwordsLoadMillis));
+        }
+        DictDelta delta = current.getDelta();
+        if (!delta.isEmpty()) {
+            sources.add(new DictionaryStats.Source("delta", delta.size, delta.ramBytesUsed(), 0));
+        }
+        return new DictionaryStats(current.getVersion(), current.getDeltaVersion(), sources,
+                FinalSeg.getInstance().ramBytesUsed(), accountedBytes.get(), lastLoadSource, lastLoadMillis,
+                loads.sum(), loadFailures.sum());
+    }
+
+
+    private Map<String, DictLayer> userLayers() {
+        Map<String, DictLayer> loaded = new HashMap<String, DictLayer>();
+        for (DictLayer layer : snapshot.getLayers()) {
+            if (!REMOTE_DICT.equals(layer.source)) {
+                loaded.put(layer.source, layer);
+            }
+        }
+        return loaded;
     }
 
 
@@ -215,15 +666,20 @@ public class WordDictionary {
     }
 
 
+    /**
+     * 当前的词典快照，一次分词应只取一次
+     */
+    public DictionarySnapshot snapshot() {
+        return snapshot;
+    }
+
+
     public boolean containsWord(String word) {
-        return freqs.containsKey(word);
+        return snapshot.containsWord(word);
     }
 
 
     public Double getFreq(String key) {
-        if (containsWord(key))
-            return freqs.get(key);
-        else
-            return minFreq;
+        return snapshot.getFreq(key);
     }
 }
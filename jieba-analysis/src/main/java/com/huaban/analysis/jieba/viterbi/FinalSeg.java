@@ -2,20 +2,24 @@ package com.huaban.analysis.jieba.viterbi;
 
 import com.huaban.analysis.jieba.CharacterUtil;
 import com.huaban.analysis.jieba.Pair;
+import com.huaban.analysis.jieba.RamUsage;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
 
 public class FinalSeg {
+    private static final Logger logger = Logger.getLogger(FinalSeg.class.getName());
     private static final String PROB_EMIT = "/prob_emit.txt";
     private static FinalSeg singleInstance;
     private static char[] states = new char[]{'B', 'M', 'E', 'S'};
@@ -88,20 +92,40 @@ public class FinalSeg {
                 }
             }
         } catch (IOException e) {
-            System.err.println(String.format("%s: load model failure!", PROB_EMIT));
+            logger.warning(String.format("%s: load model failure!", PROB_EMIT));
         } finally {
             try {
                 if (null != is)
                     is.close();
             } catch (IOException e) {
-                System.err.println(String.format("%s: close failure!", PROB_EMIT));
+                logger.warning(String.format("%s: close failure!", PROB_EMIT));
             }
         }
-        System.out.println(String.format("model load finished, time elapsed %d ms.",
+        logger.info(String.format("model load finished, time elapsed %d ms.",
                 System.currentTimeMillis() - s));
     }
 
 
+    /**
+     * 估算HMM模型（发射、转移、初始概率）占用的堆内存
+     */
+    public long ramBytesUsed() {
+        long size = 0;
+        for (Map<Character, Map<Character, Double>> table : Arrays.asList(emit, trans)) {
+            if (null == table)
+                continue;
+            size += RamUsage.sizeOfHashMap(table.size()) + table.size() * RamUsage.BOXED;
+            for (Map<Character, Double> row : table.values())
+                size += RamUsage.sizeOfHashMap(row.size()) + row.size() * 2 * RamUsage.BOXED;
+        }
+        if (null != start)
+            size += RamUsage.sizeOfHashMap(start.size()) + start.size() * 2 * RamUsage.BOXED;
+        if (null != prevStatus)
+            size += RamUsage.sizeOfHashMap(prevStatus.size()) + prevStatus.size() * (RamUsage.BOXED + RamUsage.sizeOfArray(2, 2));
+        return size;
+    }
+
+
     public void cut(String sentence, List<String> tokens) {
         StringBuilder chinese = new StringBuilder();
         StringBuilder other = new StringBuilder();
@@ -0,0 +1,186 @@
+package com.huaban.analysis.jieba;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Java 11及以上的JFR事件，编译后放在jar包的META-INF/versions/11中，替换同名的空实现。
+ * 所有事件默认关闭，在JFR配置中打开（见conf/jieba.jfc），可以按threshold只记录耗时超过阈值的事件。
+ * 事件关闭时begin中的isEnabled为常量，创建的事件对象经过逃逸分析后不会分配。
+ */
+public final class JiebaEvents {
+    private JiebaEvents() {
+    }
+
+
+    @Name("jieba.DocumentSegmented")
+    @Label("Document Segmented")
+    @Description("One document segmented by JiebaSegmenter.process")
+    @Category("Jieba")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class DocumentSegmented extends Event {
+        @Label("Length")
+        @Description("Characters in the document")
+        int length;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Mode")
+        String mode;
+    }
+
+
+    @Name("jieba.HmmInvocation")
+    @Label("HMM Invocation")
+    @Description("A run of unknown single characters cut by the HMM")
+    @Category("Jieba")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class HmmInvocation extends Event {
+        @Label("Characters")
+        int chars;
+
+        @Label("Tokens")
+        int tokens;
+    }
+
+
+    @Name("jieba.DictionaryReload")
+    @Label("Dictionary Reload")
+    @Description("Main, user or remote dictionary loaded and built")
+    @Category("Jieba")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class DictionaryReload extends Event {
+        @Label("Source")
+        String source;
+
+        @Label("Words")
+        int words;
+
+        @Label("Bytes")
+        @Description("Estimated heap used by the dictionary")
+        @DataAmount
+        long bytes;
+    }
+
+
+    @Name("jieba.RemoteFetch")
+    @Label("Remote Fetch")
+    @Description("HTTP request for a remote dictionary or delta, including reading the body")
+    @Category("Jieba")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class RemoteFetch extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Status")
+        @Description("HTTP status code, -1 when the request failed")
+        int status;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+
+    public static Object beginDocument() {
+        DocumentSegmented event = new DocumentSegmented();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+
+    public static void endDocument(Object event, int length, int tokens, String mode) {
+        if (null == event)
+            return;
+        DocumentSegmented document = (DocumentSegmented) event;
+        document.end();
+        if (document.shouldCommit()) {
+            document.length = length;
+            document.tokens = tokens;
+            document.mode = mode;
+            document.commit();
+        }
+    }
+
+
+    public static Object beginHmm() {
+        HmmInvocation event = new HmmInvocation();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+
+    public static void endHmm(Object event, int chars, int tokens) {
+        if (null == event)
+            return;
+        HmmInvocation hmm = (HmmInvocation) event;
+        hmm.end();
+        if (hmm.shouldCommit()) {
+            hmm.chars = chars;
+            hmm.tokens = tokens;
+            hmm.commit();
+        }
+    }
+
+
+    public static Object beginReload() {
+        DictionaryReload event = new DictionaryReload();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+
+    public static void endReload(Object event, String source, int words, long bytes) {
+        if (null == event)
+            return;
+        DictionaryReload reload = (DictionaryReload) event;
+        reload.end();
+        if (reload.shouldCommit()) {
+            reload.source = source;
+            reload.words = words;
+            reload.bytes = bytes;
+            reload.commit();
+        }
+    }
+
+
+    public static Object beginRemoteFetch() {
+        RemoteFetch event = new RemoteFetch();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+
+    public static void endRemoteFetch(Object event, String url, int status, long bytes) {
+        if (null == event)
+            return;
+        RemoteFetch fetch = (RemoteFetch) event;
+        fetch.end();
+        if (fetch.shouldCommit()) {
+            fetch.url = url;
+            fetch.status = status;
+            fetch.bytes = bytes;
+            fetch.commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.huaban.analysis.jieba;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+public class DictParserTest extends TestCase {
+    private static final String DICT = "\uFEFF小清新 3\n百搭\t3 n\r\nUTF-8 3 nz\n显瘦  1.5\n\n无词频\n坏词频 abc\n小清新 7\n  又拍云 2e2";
+
+
+    @Test
+    public void testParse() throws IOException {
+        DictParser.Result result = DictParser.parse(DICT.getBytes("UTF-8"));
+        assertEquals(Arrays.asList("utf-8", "又拍云", "小清新", "显瘦", "百搭"), Arrays.asList(result.words));
+        assertEquals(7.0, result.freqs.get("小清新"));
+        assertEquals(3.0, result.freqs.get("百搭"));
+        assertEquals(1.5, result.freqs.get("显瘦"));
+        assertEquals(200.0, result.freqs.get("又拍云"));
+        assertEquals(3 + 3 + 3 + 1.5 + 7 + 200, result.total, 1e-9);
+    }
+
+
+    @Test
+    public void testFoldedWordsKeepTheLargerFreq() throws IOException {
+        DictParser.Result result = DictParser.parse("電話 30\n电话 10\n醫院 2\n医院 5\nＡＢＣ 1\n".getBytes("UTF-8"));
+        assertEquals(Arrays.asList("abc", "医院", "电话"), Arrays.asList(result.words));
+        assertEquals(30.0, result.freqs.get("电话"));
+        assertEquals(5.0, result.freqs.get("医院"));
+    }
+
+
+    @Test
+    public void testStreamMatchesBytes() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            sb.append("词").append(i).append('\t').append(i % 97 + 1).append('\n');
+        byte[] bytes = sb.toString().getBytes("UTF-8");
+        DictParser.Result fromBytes = DictParser.parse(bytes);
+        DictParser.Result fromStream = DictParser.parse(new ByteArrayInputStream(bytes));
+        assertEquals(20000, fromBytes.words.length);
+        assertTrue(Arrays.equals(fromBytes.words, fromStream.words));
+        assertEquals(fromBytes.freqs, fromStream.freqs);
+    }
+}
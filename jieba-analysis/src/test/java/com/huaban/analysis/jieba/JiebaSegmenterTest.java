@@ -7,7 +7,14 @@ import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 
 
@@ -110,8 +117,8 @@ public class JiebaSegmenterTest extends TestCase {
 
     @Override
     protected void setUp() throws Exception {
-        WordDictionary.reload(new File("conf"), false, null);
-        WordDictionary.reload(new File("conf"), false, null);
+        WordDictionary.reload(new File("conf"));
+        WordDictionary.reload(new File("conf"));
     }
 
 
@@ -139,6 +146,143 @@ public class JiebaSegmenterTest extends TestCase {
     }
 
 
+    @Test
+    public void testKBest() throws IOException {
+        WordDictionary dictionary = WordDictionary.getInstance();
+        dictionary.applyDelta(new ByteArrayInputStream(
+                "version 1\n+ 南京 100\n+ 南京市 80\n+ 市长 60\n+ 长江 100\n+ 长江大桥 40\n+ 大桥 100\n+ 江大桥 1\n"
+                        .getBytes("UTF-8")));
+        try {
+            DictionarySnapshot dict = dictionary.snapshot();
+            for (String sentence : sentences) {
+                List<List<String>> paths = segmenter.sentenceProcess(dict, sentence, 3);
+                assertEquals(segmenter.sentenceProcess(dict, sentence), paths.get(0));
+                for (List<String> path : paths) {
+                    StringBuilder sb = new StringBuilder();
+                    for (String word : path)
+                        sb.append(word);
+                    assertEquals(sentence, sb.toString());
+                }
+                assertEquals(segmenter.process(sentence, SegMode.SEARCH).toString(),
+                        segmenter.process(sentence, SegMode.GRAPH, 1).toString());
+            }
+            List<List<String>> paths = segmenter.sentenceProcess(dict, "南京市长江大桥", 3);
+            System.out.print(String.format("\n%s\n%s", "南京市长江大桥", paths));
+            assertEquals(3, paths.size());
+            assertEquals(3, new HashSet<List<String>>(paths).size());
+            List<SegToken> graph = segmenter.process("南京市长江大桥", SegMode.GRAPH, 3);
+            assertTrue(graph.toString(), graph.size() > segmenter.process("南京市长江大桥", SegMode.SEARCH).size());
+        } finally {
+            dictionary.applyDelta(new ByteArrayInputStream("version 0\nreset\n".getBytes("UTF-8")));
+        }
+    }
+
+
+    @Test
+    public void testStats() {
+        SegmentationStats before = SegmentationStats.current();
+        List<SegToken> tokens = segmenter.process("鲜芋仙123，王者荣耀", SegMode.SEARCH);
+        SegmentationStats after = SegmentationStats.current();
+        // 并行执行的其他测试也会计数，这里只检查至少增加了这一段文本的量
+        assertTrue(after.texts - before.texts >= 1);
+        assertTrue(after.sentences - before.sentences >= 2);
+        assertTrue(after.chars - before.chars >= 10);
+        assertTrue(after.tokens - before.tokens >= tokens.size());
+        assertTrue(after.textNanos.count() - before.textNanos.count() >= 1);
+        assertTrue(after.textNanos.percentileNanos(0.5) <= after.textNanos.percentileNanos(0.99));
+
+        SegmentationStats.Histogram histogram = new SegmentationStats.Histogram(new long[]{0, 1, 0, 2}, 9);
+        assertEquals(3, histogram.count());
+        assertEquals(3, histogram.meanNanos());
+        assertEquals(2, histogram.percentileNanos(0.3));
+        assertEquals(8, histogram.percentileNanos(0.99));
+        assertEquals(6, histogram.merge(histogram).count());
+    }
+
+
+    @Test
+    public void testExcludedThreadIsNotCounted() throws InterruptedException {
+        SegmentationStats.excludeCurrentThread(true);
+        try {
+            assertFalse(SegmentationMetrics.counted());
+            final boolean[] other = new boolean[1];
+            Thread thread = new Thread(() -> other[0] = SegmentationMetrics.counted());
+            thread.start();
+            thread.join();
+            assertTrue(other[0]);
+        } finally {
+            SegmentationStats.excludeCurrentThread(false);
+        }
+        assertTrue(SegmentationMetrics.counted());
+    }
+
+
+    @Test
+    public void testListener() {
+        final Thread thread = Thread.currentThread();
+        final List<String> events = new ArrayList<String>();
+        final Deque<SegmentationListener.Phase> open = new ArrayDeque<SegmentationListener.Phase>();
+        JiebaSegmenter.setListener(new SegmentationListener() {
+            @Override
+            public void begin(Phase phase, int size) {
+                if (Thread.currentThread() != thread)
+                    return;
+                open.push(phase);
+                events.add("+" + phase + ":" + size);
+            }
+
+
+            @Override
+            public void end(Phase phase, int size, long nanos) {
+                if (Thread.currentThread() != thread)
+                    return;
+                // 同一线程上成对、嵌套出现
+                assertEquals(phase, open.pop());
+                assertTrue(nanos >= 0);
+                events.add("-" + phase + ":" + size);
+            }
+        });
+        List<SegToken> tokens;
+        try {
+            tokens = segmenter.process("鲜芋仙123，王者荣耀", SegMode.SEARCH);
+        } finally {
+            JiebaSegmenter.setListener(null);
+        }
+        assertTrue(open.isEmpty());
+        assertEquals("+DOCUMENT:11", events.get(0));
+        assertEquals("+NORMALIZE:11", events.get(1));
+        assertEquals("-NORMALIZE:11", events.get(2));
+        assertEquals("-DOCUMENT:" + tokens.size(), events.get(events.size() - 1));
+        // 两个句子，各一次DAG和路径
+        assertEquals(2, Collections.frequency(events, "+DAG:6") + Collections.frequency(events, "+DAG:4"));
+        assertTrue(events.contains("-ROUTE:4"));
+    }
+
+
+    @Test
+    public void testTraditionalAndFullWidth() {
+        // 繁体、全角按简体、半角匹配词典，offset仍然对应原文
+        List<SegToken> simplified = segmenter.process("中国好声音的电话打到了大医院abc", SegMode.SEARCH);
+        List<SegToken> traditional = segmenter.process("中國好聲音的電話打到了大醫院ＡＢＣ", SegMode.SEARCH);
+        assertEquals(simplified.toString(), traditional.toString());
+        assertEquals('a', CharacterUtil.regularize('Ａ'));
+        assertEquals("电话", CharacterUtil.regularize("電話"));
+        // GB2312中的字本身就是简体字，不转换
+        assertEquals("著名", CharacterUtil.regularize("著名"));
+    }
+
+
+    @Test
+    public void testRegularizeIsIdempotent() {
+        // 规范化之后的文本再规范化不变，否则前后两次索引的词不一致
+        for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+            char once = CharacterUtil.regularize((char) i);
+            assertEquals("U+" + Integer.toHexString(i), once, CharacterUtil.regularize(once));
+        }
+        assertEquals('苎', CharacterUtil.regularize('薴'));
+    }
+
+
     @Test
     public void testBugSentence() {
         String[] bugs =
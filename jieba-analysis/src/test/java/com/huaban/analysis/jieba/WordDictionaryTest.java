@@ -0,0 +1,218 @@
+package com.huaban.analysis.jieba;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+
+
+public class WordDictionaryTest extends TestCase {
+    private File dictDir;
+
+
+    @Override
+    protected void setUp() throws Exception {
+        dictDir = File.createTempFile("jieba", "dic");
+        dictDir.delete();
+        dictDir.mkdirs();
+    }
+
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : dictDir.listFiles())
+            file.delete();
+        dictDir.delete();
+        applyDelta("version 0\nreset\n");
+        WordDictionary.reload(new File("conf"));
+    }
+
+
+    @Test
+    public void testReloadOnlyChangedUserDict() throws IOException {
+        File a = write("a.dict", "黄河之水 100\n");
+        File b = write("b.dict", "天上来 100\n");
+        WordDictionary.reload(dictDir);
+        WordDictionary dict = WordDictionary.getInstance();
+        assertTrue(dict.containsWord("黄河之水"));
+        assertTrue(dict.containsWord("天上来"));
+
+        write("b.dict", "奔流到海 100\n");
+        b.setLastModified(b.lastModified() + 2000);
+        WordDictionary.reload(dictDir);
+        assertSame(dict, WordDictionary.getInstance());
+        assertTrue(dict.containsWord("黄河之水"));
+        assertTrue(dict.containsWord("奔流到海"));
+        assertFalse(dict.containsWord("天上来"));
+
+        a.delete();
+        WordDictionary.reload(dictDir);
+        assertFalse(dict.containsWord("黄河之水"));
+        assertTrue(dict.containsWord("奔流到海"));
+    }
+
+
+    @Test
+    public void testApplyDelta() throws IOException {
+        write("a.dict", "黄河之水 100\n");
+        WordDictionary.reload(dictDir);
+        WordDictionary dict = WordDictionary.getInstance();
+        DictionarySnapshot before = dict.snapshot();
+
+        assertTrue(applyDelta("version 3\n+ 奔流到海 100\n- 黄河之水\n"));
+        assertEquals(3, dict.getDeltaVersion());
+        assertFalse(dict.containsWord("黄河之水"));
+        assertTrue(dict.containsWord("奔流到海"));
+        assertFalse(new JiebaSegmenter().sentenceProcess("黄河之水奔流到海").contains("黄河之水"));
+        assertTrue(new JiebaSegmenter().sentenceProcess("黄河之水奔流到海").contains("奔流到海"));
+        // 旧快照不受影响
+        assertTrue(before.containsWord("黄河之水"));
+        assertFalse(before.containsWord("奔流到海"));
+
+        // 旧版本被忽略
+        assertFalse(applyDelta("version 2\n- 奔流到海\n"));
+        assertTrue(dict.containsWord("奔流到海"));
+
+        assertTrue(applyDelta("version 4\n+ 黄河之水 100\n= 奔流到海 5\n"));
+        assertTrue(dict.containsWord("黄河之水"));
+        assertEquals(Math.log(5.0 / 100), dict.getFreq("奔流到海") - dict.getFreq("黄河之水"), 1e-9);
+
+        // 非正的词频被跳过，tab分隔的行照常处理
+        assertTrue(applyDelta("version 5\n= 奔流到海 0\n+ 天上来 -3\n+\t白日依山\t\t20 n\n"));
+        assertEquals(Math.log(5.0 / 100), dict.getFreq("奔流到海") - dict.getFreq("黄河之水"), 1e-9);
+        assertFalse(dict.containsWord("天上来"));
+        assertTrue(dict.containsWord("白日依山"));
+
+        assertTrue(applyDelta("version 1\nreset\n"));
+        assertEquals(1, dict.getDeltaVersion());
+        assertFalse(dict.containsWord("奔流到海"));
+    }
+
+
+    @Test
+    public void testUpdateWords() throws IOException {
+        WordDictionary dict = WordDictionary.getInstance();
+        assertTrue(applyDelta("version 7\n+ 黄河之水 100\n"));
+        long version = dict.snapshot().getVersion();
+        assertTrue(dict.updateWords(Collections.singletonMap("奔流到海", 100.0), Collections.<String>emptyList()) > version);
+        assertTrue(dict.containsWord("奔流到海"));
+        assertTrue(new JiebaSegmenter().sentenceProcess("黄河之水奔流到海").contains("奔流到海"));
+        // 不改变远程增量的版本
+        assertEquals(7, dict.getDeltaVersion());
+
+        dict.updateWords(Collections.<String, Double>emptyMap(), Collections.singletonList("黄河之水"));
+        assertFalse(dict.containsWord("黄河之水"));
+        // 累计的修改可以补发给其他节点
+        assertEquals(Collections.singletonMap("奔流到海", 100.0), dict.editedWords());
+        assertEquals(Collections.singletonList("黄河之水"), dict.removedWords());
+
+        // 非法的词频整个请求都不生效
+        long before = dict.snapshot().getVersion();
+        try {
+            dict.updateWords(Collections.singletonMap("天上来", -1.0), Collections.singletonList("奔流到海"));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(before, dict.snapshot().getVersion());
+        assertTrue(dict.containsWord("奔流到海"));
+        assertEquals(1, dict.editedWords().size());
+
+        // 重新加入的词不再算作删除；远程增量的reset清空记录
+        dict.updateWords(Collections.singletonMap("黄河之水", 50.0), Collections.<String>emptyList());
+        assertTrue(dict.removedWords().isEmpty());
+        assertTrue(applyDelta("version 8\nreset\n"));
+        assertTrue(dict.editedWords().isEmpty());
+    }
+
+
+    @Test
+    public void testOverlay() throws IOException {
+        File index = write("index.txt", "奔流到海 100\n");
+        DictionaryOverlay overlay = DictionaryOverlay.load(Collections.singletonList(index));
+        WordDictionary dict = WordDictionary.getInstance();
+        assertEquals(1, overlay.size());
+        assertTrue(overlay.get().containsWord("奔流到海"));
+        assertFalse(dict.containsWord("奔流到海"));
+        assertTrue(new JiebaSegmenter(overlay).sentenceProcess("黄河之水奔流到海").contains("奔流到海"));
+
+        // 全局词典更新后重新组合
+        write("a.dict", "黄河之水 100\n");
+        WordDictionary.reload(dictDir);
+        assertTrue(overlay.get().containsWord("黄河之水"));
+        assertTrue(overlay.get().containsWord("奔流到海"));
+        assertSame(overlay.get(), overlay.get());
+    }
+
+
+    @Test
+    public void testMemoryAccountingRefusesReload() throws IOException {
+        File a = write("a.dict", "黄河之水 100\n");
+        WordDictionary.reload(dictDir);
+        WordDictionary dict = WordDictionary.getInstance();
+        final long[] accounted = new long[]{0};
+        final long limit = dict.stats().accountedBytes + 4096;
+        WordDictionary.setMemoryAccounting(new DictMemoryAccounting() {
+            @Override
+            public void reserve(long bytes, String source) {
+                if (accounted[0] + bytes > limit)
+                    throw new IllegalStateException("over limit");
+                accounted[0] += bytes;
+            }
+
+
+            @Override
+            public void adjust(long bytes) {
+                accounted[0] += bytes;
+            }
+        });
+        try {
+            assertEquals(dict.stats().accountedBytes, accounted[0]);
+            StringBuilder big = new StringBuilder();
+            for (int i = 0; i < 1000; i++)
+                big.append("奔流到海").append(i).append(" 100\n");
+            write("a.dict", big.toString());
+            a.setLastModified(a.lastModified() + 2000);
+            WordDictionary.reload(dictDir);
+            // 超出限制，保留旧的词典
+            assertTrue(dict.containsWord("黄河之水"));
+            assertFalse(dict.containsWord("奔流到海1"));
+            assertEquals(dict.stats().accountedBytes, accounted[0]);
+
+            long layerBytes = 0;
+            for (DictionaryStats.Source source : dict.stats().sources) {
+                if (source.name.equals(a.getAbsolutePath()))
+                    layerBytes = source.ramBytes;
+            }
+            assertTrue(layerBytes > 0);
+            long before = accounted[0];
+            a.delete();
+            WordDictionary.reload(dictDir);
+            assertEquals(before - layerBytes, accounted[0]);
+        } finally {
+            WordDictionary.setMemoryAccounting(null);
+        }
+    }
+
+
+    private static boolean applyDelta(String delta) throws IOException {
+        return WordDictionary.getInstance().applyDelta(new ByteArrayInputStream(delta.getBytes("UTF-8")));
+    }
+
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dictDir, name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,201 @@
+package com.huaban.analysis.jieba;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * 基准测试用的语料，同一份词典下每次生成的内容完全相同：
+ * test.txt中的句子，加上用固定种子从test.txt的句子和词典中的词拼接出来的长文档
+ */
+public final class BenchmarkCorpus {
+    private static final long SEED = 20170117L;
+    private static final String PUNCTUATION = "，。、；：？！";
+
+    private static volatile boolean dictionaryLoaded;
+
+    private BenchmarkCorpus() {
+    }
+
+
+    /**
+     * 加载jieba.dic（默认为插件的src/main/dic）下的词典，只加载一次
+     */
+    public static synchronized void loadDictionary() {
+        if (dictionaryLoaded)
+            return;
+        File dir = new File(System.getProperty("jieba.dic", "../src/main/dic"));
+        if (!dir.isDirectory())
+            throw new IllegalStateException("dictionary directory not found: " + dir.getAbsolutePath());
+        WordDictionary.reload(dir);
+        dictionaryLoaded = true;
+    }
+
+
+    /**
+     * test.txt的非空行
+     */
+    public static List<String> lines() throws IOException {
+        InputStream is = BenchmarkCorpus.class.getResourceAsStream("/test.txt");
+        if (null == is)
+            throw new IllegalStateException("test.txt not found on classpath");
+        List<String> lines = new ArrayList<String>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty())
+                    lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+
+    /**
+     * 按名称取语料：test为test.txt的每一行，long为8篇各约2万字的合成文档
+     */
+    public static List<String> documents(String corpus) throws IOException {
+        if ("test".equals(corpus))
+            return lines();
+        if ("long".equals(corpus))
+            return documents(8, 20000);
+        throw new IllegalArgumentException("unknown corpus: " + corpus);
+    }
+
+
+    /**
+     * 合成的长文档：test.txt的句子、词典中随机的词、标点和数字交替拼接，每篇约length个字
+     */
+    public static List<String> documents(int count, int length) throws IOException {
+        loadDictionary();
+        List<String> lines = lines();
+        List<String> words = words();
+        Random random = new Random(SEED);
+        List<String> documents = new ArrayList<String>(count);
+        StringBuilder sb = new StringBuilder(length + 64);
+        for (int d = 0; d < count; d++) {
+            appendDocument(sb, random, lines, words, length);
+            documents.add(sb.toString());
+            sb.setLength(0);
+        }
+        return documents;
+    }
+
+
+    /**
+     * 把合成文档逐行写入文件（每行一篇，约length个字），直到总字数达到chars；
+     * 同样的词典、字数和篇幅得到同样的文件，语料可以远大于堆
+     *
+     * @return 文档数
+     */
+    public static long writeDocuments(File file, long chars, int length) throws IOException {
+        loadDictionary();
+        List<String> lines = lines();
+        List<String> words = words();
+        Random random = new Random(SEED);
+        long count = 0;
+        long written = 0;
+        StringBuilder sb = new StringBuilder(length + 64);
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            while (written < chars) {
+                appendDocument(sb, random, lines, words, length);
+                // 一篇一行
+                for (int i = 0; i < sb.length(); i++) {
+                    if (sb.charAt(i) == '\n' || sb.charAt(i) == '\r')
+                        sb.setCharAt(i, ' ');
+                }
+                writer.append(sb).append('\n');
+                written += sb.length();
+                sb.setLength(0);
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    private static void appendDocument(StringBuilder sb, Random random, List<String> lines, List<String> words,
+                                       int length) {
+        while (sb.length() < length) {
+            int kind = random.nextInt(10);
+            if (kind < 3) {
+                sb.append(lines.get(random.nextInt(lines.size())));
+            } else if (kind < 9) {
+                // 一段连续的词，模拟正文
+                for (int n = 2 + random.nextInt(8); n > 0; n--)
+                    sb.append(words.get(random.nextInt(words.size())));
+                sb.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            } else {
+                sb.append(random.nextInt(100000)).append(' ');
+            }
+        }
+    }
+
+
+    /**
+     * 文档中连续的可切分字符（规范化之后），即JiebaSegmenter交给createDAG的句子
+     */
+    public static List<String> sentences(List<String> documents) {
+        List<String> sentences = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (String document : documents) {
+            for (int i = 0; i <= document.length(); i++) {
+                char ch = i < document.length() ? CharacterUtil.regularize(document.charAt(i)) : 0;
+                if (i < document.length() && CharacterUtil.ccFind(ch)) {
+                    sb.append(ch);
+                } else if (sb.length() > 0) {
+                    sentences.add(sb.toString());
+                    sb.setLength(0);
+                }
+            }
+        }
+        return sentences;
+    }
+
+
+    /**
+     * 文档中连续的汉字，即FinalSeg交给viterbi的片段
+     */
+    public static List<String> chineseRuns(List<String> documents) {
+        List<String> runs = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (String document : documents) {
+            for (int i = 0; i <= document.length(); i++) {
+                if (i < document.length() && CharacterUtil.isChineseLetter(document.charAt(i))) {
+                    sb.append(document.charAt(i));
+                } else if (sb.length() > 0) {
+                    runs.add(sb.toString());
+                    sb.setLength(0);
+                }
+            }
+        }
+        return runs;
+    }
+
+
+    /**
+     * 当前词典中的所有词（主词典和用户词典层），排序后返回，保证同一份词典得到同样的语料
+     */
+    public static List<String> words() {
+        loadDictionary();
+        WordDictionary dictionary = WordDictionary.getInstance();
+        Set<String> words = new TreeSet<String>(dictionary.freqs.keySet());
+        for (DictLayer layer : dictionary.snapshot().getLayers())
+            words.addAll(layer.freqs.keySet());
+        if (words.isEmpty())
+            throw new IllegalStateException("dictionary is empty");
+        return Collections.unmodifiableList(new ArrayList<String>(words));
+    }
+}
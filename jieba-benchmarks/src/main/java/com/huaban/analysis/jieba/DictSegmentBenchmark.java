@@ -0,0 +1,140 @@
+package com.huaban.analysis.jieba;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 词典树匹配：长文档中每个位置起长度1到4的词段，和createDAG的查询分布相近。
+ * 一次操作为全部词段匹配一遍；layers为叠加在全局词典之上的索引专用词典层数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DictSegmentBenchmark {
+    private static final int MAX_LENGTH = 4;
+
+    @Param({"0", "4"})
+    public int layers;
+
+    private DictSegment trie;
+    private DictionarySnapshot snapshot;
+    private char[] chars;
+    private int[] begins;
+    private int[] lengths;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus.loadDictionary();
+        trie = WordDictionary.getInstance().getTrie();
+        snapshot = WordDictionary.getInstance().snapshot();
+        if (layers > 0)
+            snapshot = overlay(layers).get();
+        List<String> sentences = BenchmarkCorpus.sentences(BenchmarkCorpus.documents(2, 20000));
+        StringBuilder sb = new StringBuilder();
+        for (String sentence : sentences)
+            sb.append(sentence);
+        chars = sb.toString().toCharArray();
+        int count = 0;
+        for (int i = 0; i < chars.length; i++)
+            count += Math.min(MAX_LENGTH, chars.length - i);
+        begins = new int[count];
+        lengths = new int[count];
+        int q = 0;
+        for (int i = 0; i < chars.length; i++) {
+            for (int length = 1; length <= MAX_LENGTH && i + length <= chars.length; length++) {
+                begins[q] = i;
+                lengths[q++] = length;
+            }
+        }
+    }
+
+
+    /**
+     * 只查主词典树
+     */
+    @Benchmark
+    public int mainTrie() {
+        int matches = 0;
+        for (int q = 0; q < begins.length; q++) {
+            if (trie.match(chars, begins[q], lengths[q]).isMatch())
+                matches++;
+        }
+        return matches;
+    }
+
+
+    /**
+     * 把词典中的词轮流分到count个用户词典里，叠加在全局词典之上
+     */
+    private static DictionaryOverlay overlay(int count) throws IOException {
+        List<String> words = BenchmarkCorpus.words();
+        List<File> files = new ArrayList<File>(count);
+        for (int k = 0; k < count; k++) {
+            StringBuilder sb = new StringBuilder();
+            for (int w = k; w < words.size(); w += count)
+                sb.append(words.get(w)).append(" 10\n");
+            File file = File.createTempFile("jieba-layer-" + k, ".dict");
+            file.deleteOnExit();
+            Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return DictionaryOverlay.load(files);
+    }
+
+
+    /**
+     * 通过快照查询，包括各用户词典层和增量
+     */
+    @Benchmark
+    public int snapshot() {
+        int matches = 0;
+        for (int q = 0; q < begins.length; q++) {
+            if (snapshot.match(chars, begins[q], lengths[q]).isMatch())
+                matches++;
+        }
+        return matches;
+    }
+
+
+    /**
+     * 与createDAG相同：每个位置起逐字向后匹配，各层从上一个前缀的节点继续，不再是前缀时结束
+     */
+    @Benchmark
+    public int walker() {
+        int matches = 0;
+        DictionarySnapshot.Walker walker = snapshot.walker();
+        for (int i = 0; i < chars.length; i++) {
+            walker.reset();
+            for (int j = i; j < chars.length && j - i < MAX_LENGTH; j++) {
+                walker.next(chars[j]);
+                if (walker.isMatch())
+                    matches++;
+                if (!walker.isPrefix())
+                    break;
+            }
+        }
+        return matches;
+    }
+}
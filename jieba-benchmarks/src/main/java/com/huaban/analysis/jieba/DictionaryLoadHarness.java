@@ -0,0 +1,317 @@
+package com.huaban.analysis.jieba;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * 词典加载的耗时和内存：在sougou.dict之外加一个N个词的合成用户词典（N从1万到1000万），通过WordDictionary.reload加载，
+ * 记录加载耗时、加载期间的GC停顿、加载后常驻的堆内存（按GC之后的类直方图统计），
+ * 以及修改合成词典后重新加载时的堆峰值（重建期间新旧两层同时存在）。结果写成Markdown报告。
+ *
+ * 系统属性：jieba.dic 词典目录，jieba.dict.scales 逗号分隔的词数，jieba.dict.report 报告路径
+ */
+public class DictionaryLoadHarness {
+    private static final long SEED = 20170117L;
+    private static final String MAIN = "sougou.dict";
+    private static final String SYNTHETIC = "synthetic.dict";
+    private static final double MB = 1024.0 * 1024.0;
+
+    private final List<long[]> pauses = Collections.synchronizedList(new ArrayList<long[]>());
+
+
+    public static void main(String[] args) throws Exception {
+        String scales = System.getProperty("jieba.dict.scales", "10000,100000,1000000,10000000");
+        File report = new File(System.getProperty("jieba.dict.report", "dict-load-report.md"));
+        File dic = new File(System.getProperty("jieba.dic", "../src/main/dic"));
+        new DictionaryLoadHarness().run(dic, scales.split(","), report);
+    }
+
+
+    private void run(File dic, String[] scales, File report) throws Exception {
+        listenGc();
+        // 主词典（classpath中的dict.txt）和HMM模型在第一次使用时加载，不计入后面的测量
+        WordDictionary.getInstance();
+        Path empty = Files.createTempDirectory("jieba-empty");
+
+        StringWriter out = new StringWriter();
+        PrintWriter md = new PrintWriter(out);
+        md.println("# Dictionary load report");
+        md.println();
+        md.printf(Locale.ROOT, "JVM %s %s, max heap %.0f MB, GC %s%n", System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), Runtime.getRuntime().maxMemory() / MB, collectors());
+        md.println();
+        md.println("Every run loads `" + MAIN + "` plus a synthetic user dict of N words (2-6 random CJK chars, seed "
+                + SEED + ").");
+        md.println("Retained heap is the growth of the post-GC class histogram; estimated is the dictionary's own "
+                + "`ramBytes` accounting.");
+        md.println("The reload rewrites the synthetic dict's mtime, so that layer is rebuilt while the old one is "
+                + "still published; peak is the sum of the heap pools' peak usage during the reload.");
+        md.println();
+        md.println("| synthetic words | file MB | load ms | synthetic layer ms | retained MB | estimated MB | "
+                + "bytes/word | load GCs | load GC ms | load max pause ms | reload ms | reload GCs | reload GC ms | "
+                + "reload max pause ms | reload peak heap MB | reload peak over retained MB |");
+        md.println("|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|---|");
+
+        List<String> details = new ArrayList<String>();
+        for (String scale : scales) {
+            int words = Integer.parseInt(scale.trim());
+            Path dir = Files.createTempDirectory("jieba-dict-" + words);
+            Files.copy(new File(dic, MAIN).toPath(), dir.resolve(MAIN), StandardCopyOption.REPLACE_EXISTING);
+            File synthetic = dir.resolve(SYNTHETIC).toFile();
+            writeSynthetic(synthetic, words);
+
+            // 先卸载上一轮的用户词典层
+            WordDictionary.reload(empty.toFile());
+            Map<String, long[]> before = histogram();
+            long baseline = total(before);
+
+            long start = System.nanoTime();
+            long window = uptime();
+            WordDictionary.reload(dir.toFile());
+            long loadMillis = (System.nanoTime() - start) / 1000000L;
+            long[] loadGc = gcDuring(window, uptime());
+
+            Map<String, long[]> after = histogram();
+            long retained = total(after) - baseline;
+            long estimated = 0;
+            long syntheticMillis = 0;
+            long layerWords = 0;
+            for (DictionaryStats.Source source : WordDictionary.getInstance().stats().sources) {
+                if (source.name.endsWith(MAIN) || source.name.endsWith(SYNTHETIC)) {
+                    estimated += source.ramBytes;
+                    layerWords += source.words;
+                }
+                if (source.name.endsWith(SYNTHETIC)) {
+                    syntheticMillis = source.loadMillis;
+                }
+            }
+
+            // 修改时间变化，只重建合成词典这一层
+            if (!synthetic.setLastModified(synthetic.lastModified() + 2000)) {
+                throw new IOException("cannot touch " + synthetic);
+            }
+            System.gc();
+            long used = heapUsed();
+            for (MemoryPoolMXBean pool : heapPools()) {
+                pool.resetPeakUsage();
+            }
+            start = System.nanoTime();
+            window = uptime();
+            WordDictionary.reload(dir.toFile());
+            long reloadMillis = (System.nanoTime() - start) / 1000000L;
+            long[] reloadGc = gcDuring(window, uptime());
+            long peak = 0;
+            for (MemoryPoolMXBean pool : heapPools()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+
+            md.printf(Locale.ROOT, "| %d | %.1f | %d | %d | %.1f | %.1f | %.0f | %d | %d | %d | %d | %d | %d | %d | %.1f | %.1f |%n",
+                    words, synthetic.length() / MB, loadMillis, syntheticMillis, retained / MB, estimated / MB,
+                    (double) retained / Math.max(1, layerWords),
+                    loadGc[0], loadGc[1], loadGc[2], reloadMillis, reloadGc[0], reloadGc[1], reloadGc[2],
+                    peak / MB, (peak - used) / MB);
+            md.flush();
+            details.add(topClasses(words, before, after));
+
+            deleteRecursively(dir.toFile());
+        }
+        WordDictionary.reload(empty.toFile());
+        Files.delete(empty);
+
+        md.println();
+        md.println("## Largest retained classes");
+        for (String detail : details) {
+            md.println();
+            md.print(detail);
+        }
+        md.flush();
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        Files.write(report.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println(out);
+        System.out.println("report written to " + report.getAbsolutePath());
+    }
+
+
+    /**
+     * 合成词典：固定种子生成的2到6个汉字的词，词频1到1000
+     */
+    private static void writeSynthetic(File file, int words) throws IOException {
+        Random random = new Random(SEED + words);
+        char[] word = new char[6];
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < words; i++) {
+                int length = 2 + random.nextInt(5);
+                for (int j = 0; j < length; j++) {
+                    word[j] = (char) (0x4E00 + random.nextInt(0x9FA5 - 0x4E00 + 1));
+                }
+                writer.write(word, 0, length);
+                writer.write(' ');
+                writer.write(Integer.toString(1 + random.nextInt(1000)));
+                writer.write('\n');
+            }
+        }
+    }
+
+
+    /**
+     * 记录每次GC的开始时间（JVM启动后的毫秒数）和持续时间
+     */
+    private void listenGc() {
+        NotificationListener listener = new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                pauses.add(new long[]{info.getGcInfo().getStartTime(), info.getGcInfo().getDuration()});
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+    }
+
+
+    /**
+     * 窗口内开始的GC：次数、总耗时、最长一次（毫秒）。通知是异步送达的，先稍等一下
+     */
+    private long[] gcDuring(long from, long to) throws InterruptedException {
+        Thread.sleep(200);
+        long[] result = new long[3];
+        synchronized (pauses) {
+            for (long[] pause : pauses) {
+                if (pause[0] >= from && pause[0] <= to) {
+                    result[0]++;
+                    result[1] += pause[1];
+                    result[2] = Math.max(result[2], pause[1]);
+                }
+            }
+        }
+        return result;
+    }
+
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+
+    private static String collectors() {
+        List<String> names = new ArrayList<String>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            names.add(gc.getName());
+        }
+        return names.toString();
+    }
+
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+
+    /**
+     * 类直方图（等同于jmap -histo:live，会先做一次Full GC）：类名 -> {实例数, 字节数}
+     */
+    private static Map<String, long[]> histogram() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String text = (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "gcClassHistogram", new Object[]{new String[0]}, new String[]{String[].class.getName()});
+        Map<String, long[]> histogram = new HashMap<String, long[]>();
+        for (String line : text.split("\n")) {
+            String[] fields = line.trim().split("\\s+");
+            // "  1:   12345   678901  java.lang.String (java.base@17)"
+            if (fields.length >= 4 && fields[0].endsWith(":")) {
+                histogram.put(fields[3], new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+            }
+        }
+        return histogram;
+    }
+
+
+    private static long total(Map<String, long[]> histogram) {
+        long bytes = 0;
+        for (long[] entry : histogram.values()) {
+            bytes += entry[1];
+        }
+        return bytes;
+    }
+
+
+    private static String topClasses(int words, Map<String, long[]> before, Map<String, long[]> after) {
+        List<Map.Entry<String, long[]>> growth = new ArrayList<Map.Entry<String, long[]>>();
+        for (Map.Entry<String, long[]> entry : after.entrySet()) {
+            long[] previous = before.get(entry.getKey());
+            long instances = entry.getValue()[0] - (null == previous ? 0 : previous[0]);
+            long bytes = entry.getValue()[1] - (null == previous ? 0 : previous[1]);
+            if (bytes > 0) {
+                growth.add(new AbstractMap.SimpleEntry<String, long[]>(entry.getKey(), new long[]{instances, bytes}));
+            }
+        }
+        growth.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        StringBuilder sb = new StringBuilder();
+        sb.append("### ").append(words).append(" synthetic words\n\n");
+        sb.append("| class | instances | MB |\n|---|---|---|\n");
+        for (int i = 0; i < Math.min(10, growth.size()); i++) {
+            Map.Entry<String, long[]> entry = growth.get(i);
+            sb.append(String.format(Locale.ROOT, "| `%s` | %d | %.1f |%n", entry.getKey(), entry.getValue()[0],
+                    entry.getValue()[1] / MB));
+        }
+        return sb.toString();
+    }
+
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (null != children) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.delete(file.toPath());
+    }
+}
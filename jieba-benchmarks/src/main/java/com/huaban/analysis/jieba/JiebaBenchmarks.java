@@ -0,0 +1,30 @@
+package com.huaban.analysis.jieba;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * 运行基准测试，参数同JMH命令行。总是启用GC profiler（报告分配速率和每次操作的分配字节数），
+ * 结果默认以JSON写入jieba.benchmark.result，便于比较不同版本
+ */
+public class JiebaBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class);
+        if (!cmd.getResult().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON)
+                    .result(System.getProperty("jieba.benchmark.result", "jmh-results.json"));
+        }
+        // 子进程也需要找到词典
+        if (!cmd.getJvmArgsAppend().hasValue()) {
+            options.jvmArgsAppend("-Djieba.dic=" + System.getProperty("jieba.dic", "../src/main/dic"));
+        }
+        new Runner(options.build()).run();
+    }
+}
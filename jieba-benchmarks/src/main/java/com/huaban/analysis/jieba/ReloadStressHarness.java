@@ -0,0 +1,291 @@
+package com.huaban.analysis.jieba;
+
+import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * 重新加载词典时的并发压测：N个线程不停地分词，另一个线程按固定频率交替写入两版用户词典（A、B两组标记词）并重新加载。
+ * 每次调用的耗时记入HdrHistogram，和重新加载重叠的调用单独统计。
+ *
+ * 每次调用都检查拿到的快照是否完整：要么包含全部A组标记词、不含B组，要么反过来，
+ * 并且切分结果必须和单线程下该版本词典的结果完全一致；任何一次不一致都记为违例，进程以1退出。
+ *
+ * 系统属性：jieba.dic 词典目录，jieba.stress.threads 分词线程数，jieba.stress.seconds 持续时间，
+ * jieba.stress.reloads_per_second 重新加载频率，jieba.stress.report 报告路径
+ */
+public class ReloadStressHarness {
+    private static final long SEED = 20170117L;
+    private static final String STRESS_DICT = "stress.dict";
+    private static final int MARKERS = 50;
+    private static final long HIGHEST = TimeUnit.SECONDS.toNanos(60);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final List<String> markersA = new ArrayList<String>();
+    private final List<String> markersB = new ArrayList<String>();
+    private final List<String> texts = new ArrayList<String>();
+    private final List<List<String>> expectedA = new ArrayList<List<String>>();
+    private final List<List<String>> expectedB = new ArrayList<List<String>>();
+    private final JiebaSegmenter segmenter = new JiebaSegmenter();
+
+    // 已开始和已完成的重新加载次数，两者不等说明正在重新加载
+    private final AtomicLong reloadsStarted = new AtomicLong();
+    private final AtomicLong reloadsFinished = new AtomicLong();
+    private final AtomicLong violations = new AtomicLong();
+    private volatile String firstViolation;
+    private volatile boolean running = true;
+
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("jieba.stress.threads", Runtime.getRuntime().availableProcessors());
+        int seconds = Integer.getInteger("jieba.stress.seconds", 60);
+        double reloadsPerSecond = Double.parseDouble(System.getProperty("jieba.stress.reloads_per_second", "2"));
+        File report = new File(System.getProperty("jieba.stress.report", "reload-stress-report.md"));
+        File dic = new File(System.getProperty("jieba.dic", "../src/main/dic"));
+        long violations = new ReloadStressHarness().run(dic, threads, seconds, reloadsPerSecond, report);
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+
+    private long run(File dic, int threads, int seconds, double reloadsPerSecond, File report) throws Exception {
+        Path dir = Files.createTempDirectory("jieba-stress");
+        File[] files = dic.listFiles();
+        if (null == files) {
+            throw new IOException("dictionary directory not found: " + dic.getAbsolutePath());
+        }
+        for (File file : files) {
+            if (file.isFile()) {
+                Files.copy(file.toPath(), dir.resolve(file.getName()));
+            }
+        }
+        File stressDict = dir.resolve(STRESS_DICT).toFile();
+        prepare(stressDict, dir.toFile());
+
+        List<Histogram> all = new ArrayList<Histogram>();
+        List<Histogram> overlapping = new ArrayList<Histogram>();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final Histogram calls = new Histogram(HIGHEST, 3);
+            final Histogram duringReload = new Histogram(HIGHEST, 3);
+            all.add(calls);
+            overlapping.add(duringReload);
+            final int offset = t;
+            Thread worker = new Thread(() -> segmentLoop(offset, calls, duringReload), "stress-segment-" + t);
+            workers.add(worker);
+        }
+        Histogram reloads = new Histogram(HIGHEST, 3);
+        Thread reloader = new Thread(() -> reloadLoop(stressDict, dir.toFile(), reloadsPerSecond, reloads),
+                "stress-reload");
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        reloader.start();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running = false;
+        reloader.join();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        WordDictionary.reload(dic);
+        for (File file : dir.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(dir);
+
+        Histogram total = merge(all);
+        Histogram during = merge(overlapping);
+        Histogram outside = total.copy();
+        outside.subtract(during);
+
+        StringWriter out = new StringWriter();
+        PrintWriter md = new PrintWriter(out);
+        md.println("# Reload stress report");
+        md.println();
+        md.printf(Locale.ROOT, "%d segmenting threads, %d s, %.1f reloads/s requested, %d reloads done. JVM %s %s.%n",
+                threads, seconds, reloadsPerSecond, reloadsFinished.get(), System.getProperty("java.vm.name"),
+                System.getProperty("java.version"));
+        md.println("Each thread segments in a closed loop, so latency under a stall is under-reported (coordinated "
+                + "omission); compare the two rows rather than reading the absolute tail.");
+        md.println();
+        md.println("| calls | count | p50 us | p90 us | p99 us | p99.9 us | p99.99 us | max us |");
+        md.println("|---|---|---|---|---|---|---|---|");
+        row(md, "all", total);
+        row(md, "overlapping a reload", during);
+        row(md, "no reload", outside);
+        row(md, "reload itself", reloads);
+        md.println();
+        md.printf(Locale.ROOT, "Torn or inconsistent dictionary views: **%d**%s%n", violations.get(),
+                null == firstViolation ? "" : " (first: " + firstViolation + ")");
+        md.flush();
+
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        Files.write(report.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println(out);
+        System.out.println("report written to " + report.getAbsolutePath());
+        return violations.get();
+    }
+
+
+    /**
+     * 生成两组标记词和测试文本，分别在两版词典下单线程分词，得到期望的结果
+     */
+    private void prepare(File stressDict, File dir) throws IOException {
+        Random random = new Random(SEED);
+        StringBuilder markerText = new StringBuilder();
+        while (markersA.size() + markersB.size() < 2 * MARKERS) {
+            // 生僻字区间，主词典里几乎没有这些词
+            char[] word = new char[4];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = (char) (0x9E00 + random.nextInt(0x9FA5 - 0x9E00 + 1));
+            }
+            String marker = new String(word);
+            if (markersA.contains(marker) || markersB.contains(marker)) {
+                continue;
+            }
+            (markersA.size() <= markersB.size() ? markersA : markersB).add(marker);
+            markerText.append(marker);
+        }
+        for (String line : BenchmarkCorpus.lines()) {
+            texts.add(line + markerText);
+        }
+
+        writeStressDict(stressDict, markersA, 1);
+        WordDictionary.reload(dir);
+        for (String text : texts) {
+            expectedA.add(words(segmenter.process(segmenter.snapshot(), text, SegMode.SEARCH, JiebaSegmenter.DEFAULT_K_BEST)));
+        }
+        writeStressDict(stressDict, markersB, 2);
+        WordDictionary.reload(dir);
+        for (String text : texts) {
+            expectedB.add(words(segmenter.process(segmenter.snapshot(), text, SegMode.SEARCH, JiebaSegmenter.DEFAULT_K_BEST)));
+        }
+        if (expectedA.equals(expectedB)) {
+            throw new IllegalStateException("marker words do not change the segmentation");
+        }
+    }
+
+
+    private void segmentLoop(int offset, Histogram calls, Histogram duringReload) {
+        int i = offset;
+        while (running) {
+            int index = i++ % texts.size();
+            long started = reloadsStarted.get();
+            long finished = reloadsFinished.get();
+            long start = System.nanoTime();
+            DictionarySnapshot dict = segmenter.snapshot();
+            List<SegToken> tokens = segmenter.process(dict, texts.get(index), SegMode.SEARCH,
+                    JiebaSegmenter.DEFAULT_K_BEST);
+            long elapsed = System.nanoTime() - start;
+            calls.recordValue(Math.min(elapsed, HIGHEST));
+            // 开始时正在重新加载，或者调用期间开始了新的重新加载
+            if (started != finished || reloadsStarted.get() != started) {
+                duringReload.recordValue(Math.min(elapsed, HIGHEST));
+            }
+            check(dict, index, tokens);
+        }
+    }
+
+
+    private void check(DictionarySnapshot dict, int index, List<SegToken> tokens) {
+        int a = 0;
+        int b = 0;
+        for (String marker : markersA) {
+            a += dict.containsWord(marker) ? 1 : 0;
+        }
+        for (String marker : markersB) {
+            b += dict.containsWord(marker) ? 1 : 0;
+        }
+        String violation = null;
+        if (!((a == MARKERS && b == 0) || (a == 0 && b == MARKERS))) {
+            violation = "snapshot " + dict.getVersion() + " has " + a + " A markers and " + b + " B markers";
+        } else if (!words(tokens).equals(a == MARKERS ? expectedA.get(index) : expectedB.get(index))) {
+            violation = "snapshot " + dict.getVersion() + " segmented text " + index + " differently";
+        }
+        if (null != violation && violations.getAndIncrement() == 0) {
+            firstViolation = violation;
+        }
+    }
+
+
+    private void reloadLoop(File stressDict, File dir, double reloadsPerSecond, Histogram reloads) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / reloadsPerSecond);
+        long next = System.nanoTime();
+        int version = 3;
+        try {
+            while (running) {
+                // 交替写入两版，每次的修改时间都不同，保证重建这一层
+                writeStressDict(stressDict, version % 2 == 1 ? markersA : markersB, version);
+                version++;
+                reloadsStarted.incrementAndGet();
+                long start = System.nanoTime();
+                WordDictionary.reload(dir);
+                reloads.recordValue(Math.min(System.nanoTime() - start, HIGHEST));
+                reloadsFinished.incrementAndGet();
+                next += interval;
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private static void writeStressDict(File file, List<String> markers, int version) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String marker : markers) {
+            sb.append(marker).append(" 100000\n");
+        }
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        if (!file.setLastModified(1000000000000L + version * 1000L)) {
+            throw new IOException("cannot set mtime of " + file);
+        }
+    }
+
+
+    private static List<String> words(List<SegToken> tokens) {
+        List<String> words = new ArrayList<String>(tokens.size());
+        for (SegToken token : tokens) {
+            words.add(token.word);
+        }
+        return words;
+    }
+
+
+    private static Histogram merge(List<Histogram> histograms) {
+        Histogram merged = new Histogram(HIGHEST, 3);
+        for (Histogram histogram : histograms) {
+            merged.add(histogram);
+        }
+        return merged;
+    }
+
+
+    private static void row(PrintWriter md, String name, Histogram histogram) {
+        md.printf(Locale.ROOT, "| %s | %d", name, histogram.getTotalCount());
+        for (double percentile : PERCENTILES) {
+            md.printf(Locale.ROOT, " | %.1f", histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        md.printf(Locale.ROOT, " | %.1f |%n", histogram.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.huaban.analysis.jieba;
+
+import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * JiebaSegmenter的各个阶段：构建DAG、计算最大概率路径，以及两种模式下的完整分词。
+ * 一次操作为整份语料处理一遍
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmenterBenchmark {
+    @Param({"test", "long"})
+    public String corpus;
+
+    private JiebaSegmenter segmenter;
+    private DictionarySnapshot dict;
+    private List<String> documents;
+    private List<String> sentences;
+    private List<Map<Integer, List<Integer>>> dags;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus.loadDictionary();
+        segmenter = new JiebaSegmenter();
+        dict = segmenter.snapshot();
+        documents = BenchmarkCorpus.documents(corpus);
+        sentences = BenchmarkCorpus.sentences(documents);
+        dags = new ArrayList<Map<Integer, List<Integer>>>(sentences.size());
+        for (String sentence : sentences)
+            dags.add(segmenter.createDAG(dict, sentence));
+    }
+
+
+    @Benchmark
+    public void createDAG(Blackhole bh) {
+        for (String sentence : sentences)
+            bh.consume(segmenter.createDAG(dict, sentence));
+    }
+
+
+    @Benchmark
+    public void calc(Blackhole bh) {
+        for (int i = 0; i < sentences.size(); i++)
+            bh.consume(segmenter.calc(dict, sentences.get(i), dags.get(i)));
+    }
+
+
+    @Benchmark
+    public void processSearch(Blackhole bh) {
+        for (String document : documents)
+            bh.consume(segmenter.process(dict, document, SegMode.SEARCH, JiebaSegmenter.DEFAULT_K_BEST));
+    }
+
+
+    @Benchmark
+    public void processIndex(Blackhole bh) {
+        for (String document : documents)
+            bh.consume(segmenter.process(dict, document, SegMode.INDEX, JiebaSegmenter.DEFAULT_K_BEST));
+    }
+}
@@ -0,0 +1,58 @@
+package com.huaban.analysis.jieba;
+
+import com.huaban.analysis.jieba.viterbi.FinalSeg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * HMM：对语料中连续的汉字直接调用viterbi（正常分词只对词典切不开的片段调用）。
+ * 一次操作为全部片段处理一遍
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViterbiBenchmark {
+    @Param({"test", "long"})
+    public String corpus;
+
+    private FinalSeg finalSeg;
+    private List<String> runs;
+    private final List<String> tokens = new ArrayList<String>();
+
+
+    @Setup
+    public void setUp() throws IOException {
+        finalSeg = FinalSeg.getInstance();
+        runs = BenchmarkCorpus.chineseRuns(BenchmarkCorpus.documents(corpus));
+    }
+
+
+    @Benchmark
+    public int viterbi() {
+        int count = 0;
+        for (String run : runs) {
+            tokens.clear();
+            finalSeg.viterbi(run, tokens);
+            count += tokens.size();
+        }
+        return count;
+    }
+}
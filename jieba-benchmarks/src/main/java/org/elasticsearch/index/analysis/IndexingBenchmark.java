@@ -0,0 +1,199 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.BenchmarkCorpus;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cn.smart.SmartChineseAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+
+/**
+ * 在本地Lucene IndexWriter中索引合成的中文语料，比较jieba_index、jieba_search和Lucene自带的SmartChineseAnalyzer：
+ * 每秒文档数、每秒词数、索引大小和分配速率。不需要ES集群。
+ *
+ * 语料按字数生成到一个文件中（每行一篇），同样的参数下内容相同，已存在时直接复用。
+ * 系统属性：jieba.dic 词典目录，jieba.index.chars 语料总字数，jieba.index.dir 语料和索引的目录，
+ * jieba.index.analyzers 逗号分隔的分析器，jieba.index.report 报告路径
+ */
+public class IndexingBenchmark {
+    private static final String FIELD = "body";
+    private static final int DOC_LENGTH = 2000;
+    private static final int WARMUP_DOCS = 2000;
+    private static final double MB = 1024.0 * 1024.0;
+
+
+    public static void main(String[] args) throws Exception {
+        // 默认10亿字，UTF-8约3GB
+        long chars = Long.parseLong(System.getProperty("jieba.index.chars", "1000000000"));
+        File dir = new File(System.getProperty("jieba.index.dir", "build/indexing"));
+        String[] analyzers = System.getProperty("jieba.index.analyzers", "jieba_index,jieba_search,smartcn").split(",");
+        File report = new File(System.getProperty("jieba.index.report", "indexing-report.md"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+
+        BenchmarkCorpus.loadDictionary();
+        File corpus = new File(dir, "corpus-" + chars + ".txt");
+        if (!corpus.isFile()) {
+            File tmp = new File(dir, corpus.getName() + ".tmp");
+            long start = System.nanoTime();
+            long docs = BenchmarkCorpus.writeDocuments(tmp, chars, DOC_LENGTH);
+            Files.move(tmp.toPath(), corpus.toPath());
+            System.out.printf(Locale.ROOT, "generated %d docs (%.1f MB) in %d s%n", docs, corpus.length() / MB,
+                    (System.nanoTime() - start) / 1000000000L);
+        }
+
+        StringWriter out = new StringWriter();
+        PrintWriter md = new PrintWriter(out);
+        md.println("# Indexing throughput");
+        md.println();
+        md.printf(Locale.ROOT, "Corpus: %s, %.1f MB UTF-8, %d chars, about %d chars per doc. JVM %s %s, max heap %.0f MB.%n",
+                corpus.getName(), corpus.length() / MB, chars, DOC_LENGTH, System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), Runtime.getRuntime().maxMemory() / MB);
+        md.println("One indexing thread, body field not stored, 256 MB RAM buffer, one commit at the end.");
+        md.println();
+        md.println("| analyzer | docs | seconds | docs/s | tokens | tokens/s | index MB | allocated GB | alloc MB/s | alloc bytes/doc |");
+        md.println("|---|---|---|---|---|---|---|---|---|---|");
+        for (String name : analyzers) {
+            try (Analyzer analyzer = analyzer(name.trim())) {
+                warmUp(analyzer, corpus);
+                Path index = dir.toPath().resolve("index-" + name.trim());
+                deleteRecursively(index.toFile());
+                Result result = index(analyzer, corpus, index);
+                md.printf(Locale.ROOT, "| %s | %d | %.1f | %.0f | %d | %.0f | %.1f | %.2f | %.0f | %.0f |%n",
+                        name.trim(), result.docs, result.nanos / 1e9, result.docs / (result.nanos / 1e9), result.tokens,
+                        result.tokens / (result.nanos / 1e9), result.indexBytes / MB, result.allocated / MB / 1024,
+                        result.allocated / MB / (result.nanos / 1e9), (double) result.allocated / result.docs);
+                md.flush();
+                System.out.println(out);
+                deleteRecursively(index.toFile());
+            }
+        }
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        Files.write(report.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("report written to " + report.getAbsolutePath());
+    }
+
+
+    private static Analyzer analyzer(String name) {
+        switch (name) {
+            case "jieba_index":
+                return new JiebaAnalyzer("INDEX");
+            case "jieba_search":
+                return new JiebaAnalyzer("SEARCH");
+            case "smartcn":
+                return new SmartChineseAnalyzer();
+            default:
+                throw new IllegalArgumentException("unknown analyzer: " + name);
+        }
+    }
+
+
+    private static final class Result {
+        long docs;
+        long tokens;
+        long nanos;
+        long indexBytes;
+        long allocated;
+    }
+
+
+    /**
+     * 先在内存索引中索引前几千篇，让JIT编译热点代码
+     */
+    private static void warmUp(Analyzer analyzer, File corpus) throws IOException {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+             BufferedReader reader = Files.newBufferedReader(corpus.toPath(), StandardCharsets.UTF_8)) {
+            Document doc = new Document();
+            Field body = new TextField(FIELD, "", Field.Store.NO);
+            doc.add(body);
+            String line;
+            for (int i = 0; i < WARMUP_DOCS && (line = reader.readLine()) != null; i++) {
+                body.setStringValue(line);
+                writer.addDocument(doc);
+            }
+        }
+    }
+
+
+    private static Result index(Analyzer analyzer, File corpus, Path path) throws IOException {
+        Result result = new Result();
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setRAMBufferSizeMB(256);
+        System.gc();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        try (Directory directory = FSDirectory.open(path)) {
+            try (IndexWriter writer = new IndexWriter(directory, config);
+                 BufferedReader reader = Files.newBufferedReader(corpus.toPath(), StandardCharsets.UTF_8)) {
+                Document doc = new Document();
+                Field id = new StringField("id", "", Field.Store.NO);
+                Field body = new TextField(FIELD, "", Field.Store.NO);
+                doc.add(id);
+                doc.add(body);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    id.setStringValue(Long.toString(result.docs++));
+                    body.setStringValue(line);
+                    writer.addDocument(doc);
+                }
+                writer.commit();
+            }
+            result.nanos = System.nanoTime() - start;
+            result.allocated = allocatedBytes() - allocatedBefore;
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                result.tokens = reader.getSumTotalTermFreq(FIELD);
+            }
+            for (String file : directory.listAll()) {
+                result.indexBytes += directory.fileLength(file);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * 当前线程（索引线程，段的刷写也在这个线程上进行）分配的字节数
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (null != children) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists()) {
+            Files.delete(file.toPath());
+        }
+    }
+}
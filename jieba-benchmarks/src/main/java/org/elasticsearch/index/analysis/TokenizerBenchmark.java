@@ -0,0 +1,73 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.BenchmarkCorpus;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 通过JiebaAnalyzer端到端地分词，包括读入文本、JiebaTokenizer的属性设置和位置计算。
+ * 一次操作为整份语料处理一遍
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+    @Param({"test", "long"})
+    public String corpus;
+
+    @Param({"SEARCH", "INDEX"})
+    public String mode;
+
+    private JiebaAnalyzer analyzer;
+    private List<String> documents;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus.loadDictionary();
+        analyzer = new JiebaAnalyzer(mode);
+        documents = BenchmarkCorpus.documents(corpus);
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+
+    @Benchmark
+    public int tokenize() throws IOException {
+        int tokens = 0;
+        for (String document : documents) {
+            try (TokenStream stream = analyzer.tokenStream("content", document)) {
+                CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+                stream.reset();
+                while (stream.incrementToken())
+                    tokens += term.length() > 0 ? 1 : 0;
+                stream.end();
+            }
+        }
+        return tokens;
+    }
+}
@@ -2,27 +2,92 @@ package org.elasticsearch.index.analysis;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+import com.huaban.analysis.jieba.CharacterUtil;
+import com.huaban.analysis.jieba.DictionaryOverlay;
+import com.huaban.analysis.jieba.DictionarySnapshot;
 import com.huaban.analysis.jieba.JiebaSegmenter;
 import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
 import com.huaban.analysis.jieba.SegToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+/**
+ * 把一个字段的文本交给分词器，按起始、结束位置排序后逐个输出。
+ * 文本、规范化后的字符和切分结果都放在可复用的数组里，词的内容直接从字符数组中按位置拷贝。
+ * 分词本身（{@link JiebaSegmenter#process}）仍然为每个词创建SegToken和String，这里只是不再为输出的词额外分配。
+ */
 public class JiebaAdapter implements Iterator<SegToken> {
 
+  private static final Logger logger = LogManager.getLogger(JiebaAdapter.class);
+
   private final static JiebaSegmenter jiebaTagger = new JiebaSegmenter();
 
+  private final static int MAX_RETAINED_CHARS = 64 * 1024;
+
   private final SegMode segMode;
 
-  private Iterator<SegToken> tokens;
+  private final JiebaSegmenter segmenter;
+
+  private final int kBest;
+
+  // 输出的词是否转成简体；为false时与早期版本一致，只做全角转半角、英文大写转小写
+  private final boolean t2s;
 
-  private String raw = null;
+  // 去掉首尾空白后的文本，[textStart, textStart + textLength)，分词后中英文、数字已规范化
+  private char[] text = new char[1024];
+  // 交给分词器的规范化文本，与text去掉首部空白后逐字对应
+  private char[] normalized = new char[1024];
+  // t2s为false时查停用词用的文本：中英文、数字转成简体，其他字符保持原样，与停用词表的规范化一致
+  private char[] stopwordText;
+  private int textStart;
+  private int textLength;
+  // 读入的字符数，包括首尾空白
+  private int inputLength;
+  private String raw;
+
+  // 切分结果，高32位为起始位置，低32位为结束位置，排序后即按起始、结束位置有序
+  private long[] spans = new long[64];
+  private int count;
+  private int cursor;
+  private int startOffset;
+  private int endOffset;
+
+  // GRAPH模式：offset处是第几个切分点，即词图中的位置；不是切分点的offset不会被用到
+  private int[] nodes = new int[1024];
+
+  // 最近一次分词用的词典快照，停用词也从同一个快照中查
+  private DictionarySnapshot dict;
 
   public JiebaAdapter(String segModeName) {
+    this(segModeName, null);
+  }
 
+  /**
+   * @param segmenter 为null时使用全局词典
+   */
+  public JiebaAdapter(String segModeName, JiebaSegmenter segmenter) {
+    this(segModeName, segmenter, JiebaSegmenter.DEFAULT_K_BEST);
+  }
+
+  /**
+   * @param kBest GRAPH模式保留的切分路径数
+   */
+  public JiebaAdapter(String segModeName, JiebaSegmenter segmenter, int kBest) {
+    this(segModeName, segmenter, kBest, true);
+  }
 
-    System.out.println("init jieba adapter");
+  /**
+   * @param t2s 输出的词是否转成简体，分词总是在简体上进行
+   */
+  public JiebaAdapter(String segModeName, JiebaSegmenter segmenter, int kBest, boolean t2s) {
+    this.segmenter = null == segmenter ? jiebaTagger : segmenter;
+    this.kBest = kBest;
+    this.t2s = t2s;
     if (null == segModeName) {
       segMode = SegMode.SEARCH;
     } else {
@@ -30,51 +95,229 @@ public class JiebaAdapter implements Iterator<SegToken> {
     }
   }
 
-  public synchronized void reset(Reader input) {
+  public synchronized void reset(Reader input) throws IOException {
+    read(input);
+    segment(segmenter.snapshot());
+  }
+
+  /**
+   * 读入一个字段的文本，之后调用{@link #segment(DictionarySnapshot)}分词
+   */
+  public void read(Reader input) throws IOException {
+    // 不长期占用超长文档留下的大数组
+    if (text.length > MAX_RETAINED_CHARS) {
+      text = new char[1024];
+      normalized = new char[1024];
+      stopwordText = null;
+    }
+    int length = 0;
     try {
-      StringBuilder bdr = new StringBuilder();
-      char[] buf = new char[1024];
-      int size = 0;
-      while ((size = input.read(buf, 0, buf.length)) != -1) {
-        String tempstr = new String(buf, 0, size);
-        bdr.append(tempstr);
+      int size;
+      while ((size = input.read(text, length, text.length - length)) != -1) {
+        length += size;
+        if (length == text.length) {
+          text = Arrays.copyOf(text, text.length * 2);
+        }
       }
-      raw = bdr.toString().trim();
     } catch (IOException e) {
-      e.printStackTrace();
+      // 不对读了一半的文本分词，清掉上一个文档的结果后交给调用方处理
+      logger.error("failed to read the text to segment", e);
+      count = 0;
+      cursor = 0;
+      throw e;
+    }
+    inputLength = length;
+    // 与String.trim()相同
+    int start = 0;
+    while (start < length && text[start] <= ' ') {
+      start++;
     }
+    while (length > start && text[length - 1] <= ' ') {
+      length--;
+    }
+    textStart = start;
+    textLength = length - start;
+    raw = new String(text, textStart, textLength);
+    count = 0;
+    cursor = 0;
+  }
 
-    List<SegToken> list = jiebaTagger.process(raw, segMode);
-    list.sort((o1, o2) -> {
-      if (o1.startOffset < o2.startOffset) {
-        return -1;
-      }
-      if (o1.startOffset > o2.startOffset) {
-        return 1;
-      }
-      if (o1.startOffset == o2.startOffset) {
-        if (o1.endOffset < o2.endOffset) {
-          return -1;
+  /**
+   * 用指定的词典快照对读入的文本分词
+   */
+  public void segment(DictionarySnapshot dict) {
+    this.dict = dict;
+    // 逐字规范化一遍：分词器用规范化后的文本，输出的中英文、数字直接写回text，其他字符保持原样
+    if (normalized.length < textLength) {
+      normalized = new char[text.length];
+    }
+    if (!t2s && (stopwordText == null || stopwordText.length < textLength)) {
+      stopwordText = new char[normalized.length];
+    }
+    for (int i = 0; i < textLength; i++) {
+      char ch = text[textStart + i];
+      char n = CharacterUtil.regularize(ch);
+      normalized[i] = n;
+      if (t2s) {
+        if (CharacterUtil.ccFind(n)) {
+          text[textStart + i] = n;
         }
-        return 1;
+      } else {
+        stopwordText[i] = CharacterUtil.ccFind(n) ? n : ch;
+        char out = CharacterUtil.regularizeCompat(ch);
+        if (CharacterUtil.ccFind(out)) {
+          text[textStart + i] = out;
+        }
+      }
+    }
+    List<SegToken> list = segmenter.processNormalized(dict, normalized, textLength, segMode, kBest);
+    if (spans.length < list.size()) {
+      spans = new long[Math.max(list.size(), spans.length * 2)];
+    }
+    count = 0;
+    for (SegToken token : list) {
+      spans[count++] = ((long) token.startOffset << 32) | token.endOffset;
+    }
+    Arrays.sort(spans, 0, count);
+    cursor = 0;
+    if (segMode == SegMode.GRAPH) {
+      numberNodes();
+    }
+  }
+
+  public DictionarySnapshot snapshot() {
+    return segmenter.snapshot();
+  }
+
+  /**
+   * 查询缓存的key：词典（全局词典或某个叠加层）、模式、路径数、是否转简体、词典版本和读入的文本
+   */
+  JiebaQueryCache.Key cacheKey(DictionarySnapshot dict, JiebaTokenizer.Stopwords stopwords) {
+    long dictionary = segmenter.getDictionary() instanceof DictionaryOverlay
+        ? ((DictionaryOverlay) segmenter.getDictionary()).id() : 0;
+    return new JiebaQueryCache.Key(dictionary, segMode.name(), segMode == SegMode.GRAPH ? kBest : 0,
+        stopwords.ordinal(), t2s, dict.getVersion(), raw);
+  }
+
+  /**
+   * 所有路径都从文本开头连续切分到结尾，词的起止位置就是词图的节点，按offset从小到大编号
+   */
+  private void numberNodes() {
+    if (nodes.length <= textLength) {
+      nodes = new int[Math.max(textLength + 1, nodes.length * 2)];
+    }
+    Arrays.fill(nodes, 0, textLength + 1, 0);
+    for (int i = 0; i < count; i++) {
+      nodes[(int) (spans[i] >>> 32)] = 1;
+      nodes[(int) spans[i]] = 1;
+    }
+    int node = -1;
+    for (int offset = 0; offset <= textLength; offset++) {
+      if (nodes[offset] != 0) {
+        node++;
       }
-      return 0;
-    });
-    tokens = list.iterator();
+      nodes[offset] = node;
+    }
+  }
+
+  public boolean isGraph() {
+    return segMode == SegMode.GRAPH;
+  }
+
+  /**
+   * GRAPH模式下当前词在词图中的起始位置
+   */
+  public int startNode() {
+    return nodes[startOffset];
+  }
+
+  public int endNode() {
+    return nodes[endOffset];
+  }
+
+  /**
+   * 移动到下一个词
+   *
+   * @return 没有更多的词时返回false
+   */
+  public boolean advance() {
+    if (cursor >= count) {
+      return false;
+    }
+    long span = spans[cursor++];
+    startOffset = (int) (span >>> 32);
+    endOffset = (int) span;
+    return true;
+  }
+
+  /**
+   * 当前词是否是词典快照中的停用词
+   */
+  public boolean isStopword() {
+    if (!t2s) {
+      return dict.isStopword(stopwordText, startOffset, endOffset - startOffset);
+    }
+    return dict.isStopword(text, textStart + startOffset, endOffset - startOffset);
+  }
+
+  /**
+   * 当前词在去掉首尾空白后的文本中的起始位置
+   */
+  public int startOffset() {
+    return startOffset;
+  }
+
+  public int endOffset() {
+    return endOffset;
+  }
+
+  /**
+   * 当前词的内容所在的字符数组，从{@link #termStart()}开始，长度为endOffset - startOffset
+   */
+  public char[] termBuffer() {
+    return text;
+  }
+
+  public int termStart() {
+    return textStart + startOffset;
+  }
+
+  /**
+   * 去掉的首部空白的长度，词在输入中的位置为textStart() + startOffset()
+   */
+  public int textStart() {
+    return textStart;
+  }
+
+  /**
+   * 读入的字符数，包括首尾空白
+   */
+  public int inputLength() {
+    return inputLength;
+  }
+
+  /**
+   * 文本的长度（不含首尾空白）
+   */
+  public int length() {
+    return textLength;
   }
 
   @Override
   public boolean hasNext() {
-    return tokens.hasNext();
+    return cursor < count;
   }
 
   @Override
   public SegToken next() {
-    return tokens.next();
+    if (!advance()) {
+      throw new NoSuchElementException();
+    }
+    return new SegToken(new String(text, termStart(), endOffset - startOffset), startOffset, endOffset);
   }
 
   @Override
   public void remove() {
-    tokens.remove();
+    throw new UnsupportedOperationException();
   }
-}
\ No newline at end of file
+}
@@ -11,6 +11,16 @@ public class JiebaAnalyzer extends Analyzer {
 
   private String segMode;
 
+  private JiebaSegmenter segmenter;
+
+  private int kBest = JiebaSegmenter.DEFAULT_K_BEST;
+
+  private boolean queryCache;
+
+  private JiebaTokenizer.Stopwords stopwords = JiebaTokenizer.Stopwords.KEEP;
+
+  private boolean t2s = true;
+
   /**
    *
    */
@@ -22,6 +32,49 @@ public class JiebaAnalyzer extends Analyzer {
     this.segMode = segMode;
   }
 
+  /**
+   * @param segmenter 为null时使用全局词典
+   */
+  public JiebaAnalyzer(String segMode, JiebaSegmenter segmenter) {
+    this.segMode = segMode;
+    this.segmenter = segmenter;
+  }
+
+  /**
+   * @param kBest GRAPH模式保留的切分路径数
+   */
+  public JiebaAnalyzer(String segMode, JiebaSegmenter segmenter, int kBest) {
+    this(segMode, segmenter, kBest, false);
+  }
+
+  /**
+   * @param queryCache 是否使用节点级的查询分词缓存
+   */
+  public JiebaAnalyzer(String segMode, JiebaSegmenter segmenter, int kBest, boolean queryCache) {
+    this(segMode, segmenter, kBest, queryCache, JiebaTokenizer.Stopwords.KEEP);
+  }
+
+  /**
+   * @param stopwords 是否在分词器中去掉停用词
+   */
+  public JiebaAnalyzer(String segMode, JiebaSegmenter segmenter, int kBest, boolean queryCache,
+                       JiebaTokenizer.Stopwords stopwords) {
+    this(segMode, segmenter, kBest, queryCache, stopwords, true);
+  }
+
+  /**
+   * @param t2s 输出的词是否转成简体
+   */
+  public JiebaAnalyzer(String segMode, JiebaSegmenter segmenter, int kBest, boolean queryCache,
+                       JiebaTokenizer.Stopwords stopwords, boolean t2s) {
+    this.segMode = segMode;
+    this.segmenter = segmenter;
+    this.kBest = kBest;
+    this.queryCache = queryCache;
+    this.stopwords = stopwords;
+    this.t2s = t2s;
+  }
+
   /**
    * @param reuseStrategy
    */
@@ -29,8 +82,25 @@ public class JiebaAnalyzer extends Analyzer {
     super(reuseStrategy);
   }
 
+  /**
+   * 在分析器开始使用之前设置，为null时使用全局词典
+   */
+  void setSegmenter(JiebaSegmenter segmenter) {
+    this.segmenter = segmenter;
+  }
+
+  /**
+   * 释放分析器持有的索引专用词典
+   */
+  @Override
+  public void close() {
+    super.close();
+    JiebaIndexDictionaries.release(this);
+  }
+
   @Override
   protected TokenStreamComponents createComponents(String fieldName) {
-    return new TokenStreamComponents(new JiebaTokenizer(this.segMode));
+    return new TokenStreamComponents(new JiebaTokenizer(this.segMode, this.segmenter, this.kBest, this.queryCache,
+        this.stopwords, this.t2s));
   }
 }
\ No newline at end of file
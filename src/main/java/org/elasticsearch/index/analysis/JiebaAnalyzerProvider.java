@@ -1,5 +1,6 @@
 package org.elasticsearch.index.analysis;
 
+import com.huaban.analysis.jieba.DictionaryOverlay;
 import com.huaban.analysis.jieba.JiebaSegmenter;
 import com.huaban.analysis.jieba.WordDictionary;
 import org.apache.lucene.analysis.Analyzer;
@@ -20,13 +21,24 @@ public class JiebaAnalyzerProvider extends AbstractIndexAnalyzerProvider<JiebaAn
                               Settings settings,
                               JiebaSegmenter.SegMode mode) {
     super(indexSettings, name, settings);
+    JiebaDict.init(environment);
+    JiebaDict.awaitReady();
+    int kBest = JiebaTokenizerFactory.kBest(settings);
+    boolean queryCache = settings.getAsBoolean(JiebaTokenizerFactory.QUERY_CACHE, false);
+    JiebaTokenizer.Stopwords stopwords = JiebaTokenizerFactory.stopwords(settings);
+    boolean t2s = settings.getAsBoolean(JiebaTokenizerFactory.T2S, true);
     if (null != mode) {
-      jiebaAnalyzer = new JiebaAnalyzer(mode.name());
+      jiebaAnalyzer = new JiebaAnalyzer(mode.name(), null, kBest, queryCache, stopwords, t2s);
     } else {
-      jiebaAnalyzer = new JiebaAnalyzer(settings.get("segMode", JiebaSegmenter.SegMode.SEARCH.name()));
+      jiebaAnalyzer = new JiebaAnalyzer(settings.get("segMode", JiebaSegmenter.SegMode.SEARCH.name()), null, kBest,
+          queryCache, stopwords, t2s);
+    }
+    // 由分析器持有索引专用词典，分析器随IndexService关闭时释放
+    DictionaryOverlay overlay = JiebaIndexDictionaries.acquire(jiebaAnalyzer, indexSettings.getIndex(), environment,
+        settings);
+    if (null != overlay) {
+      jiebaAnalyzer.setSegmenter(new JiebaSegmenter(overlay));
     }
-
-    JiebaDict.init(environment);
   }
 
   @Override
@@ -59,4 +71,17 @@ public class JiebaAnalyzerProvider extends AbstractIndexAnalyzerProvider<JiebaAn
 
     return jiebaAnalyzerProvider;
   }
+
+  public static AnalyzerProvider<? extends Analyzer> getJiebaGraphAnalyzerProvider(IndexSettings indexSettings,
+                                                                                  Environment environment,
+                                                                                  String s,
+                                                                                  Settings settings) {
+    JiebaAnalyzerProvider jiebaAnalyzerProvider = new JiebaAnalyzerProvider(indexSettings,
+        environment,
+        s,
+        settings,
+        JiebaSegmenter.SegMode.GRAPH);
+
+    return jiebaAnalyzerProvider;
+  }
 }
@@ -1,67 +1,114 @@
 package org.elasticsearch.index.analysis;
 
 
+import com.huaban.analysis.jieba.DictionaryStats;
+import com.huaban.analysis.jieba.SegmentationStats;
 import com.huaban.analysis.jieba.WordDictionary;
+import com.huaban.analysis.jieba.viterbi.FinalSeg;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.SpecialPermission;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.hash.MessageDigests;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaDictPublisher;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaDictWordsReplayer;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class JiebaDict {
     private static final Logger logger = LogManager.getLogger(JiebaDict.class);
 
-    private static JiebaDict singleton;
-    private static long lastModified = 0;
-    private static ByteArrayOutputStream remoteDict = null;
+    private static volatile JiebaDict singleton;
+    private static RemoteDictFetcher remoteFetcher;
+    private static JiebaDictPublisher publisher;
+    private static JiebaDictWordsReplayer wordsReplayer;
+
+    private static Properties properties;
+    private static long delay = 1000;
+    private static long period = 60 * 1000;
+    private static long jitter = 5 * 1000;
+    private static long debounce = 500;
+
+    // 集群推送的远程词典
+    private static final Object REMOTE_LOCK = new Object();
+    private static volatile long remoteVersion = 0;
+    private static volatile String remoteSha256 = null;
+    private static byte[] pendingRemote = null;
+
+    private static volatile Path dictDir;
+    private static ScheduledExecutorService scheduler;
+    private static Thread watcher;
+    private static volatile ScheduledFuture<?> pendingLocalReload;
+
+    // 启动预热：预热完成之前创建的分词器最多等待warmupTimeout毫秒
+    private static final String WARMUP_CORPUS = "warmup.txt";
+    private static long warmupRounds = 20;
+    private static long warmupTimeout = 30 * 1000;
+    private static volatile CountDownLatch warmupLatch;
+    private static volatile long warmupMillis = -1;
+    private static Thread warmupThread;
 
     public static JiebaDict init(Environment environment) {
         if (singleton == null) {
             synchronized (JiebaDict.class) {
                 if (singleton == null) {
-                    Properties properties = new Properties();
-                    long delay = 1000;
-                    long period = 60 * 1000;
-                    try {
-                        properties.load(Files.newInputStream(environment.pluginsFile().resolve("jieba/jieba.cfg.properties").toFile().toPath()));
-                        delay = Long.parseLong(properties.getOrDefault("remote.task.delay", delay).toString());
-                        period = Long.parseLong(properties.getOrDefault("remote.task.period", period).toString());
-                        if(delay < 0){
-                            delay = 0;
-                        }
-                        if(period < 0){
-                            period = 60 * 1000;
-                        }
-                    }catch (Exception e){
-                        logger.error(e);
-                    }
-                    logger.info("properties:{}", properties);
-                    TimerTask task = new TimerTask() {
-                        @Override
-                        public void run() {
-                            logger.info("start to load remote dict");
-                            boolean remoteChange = loadRemoteDic(properties);
-                            logger.info("start to load local dict");
-                            WordDictionary.reload(environment.pluginsFile().resolve("jieba/dic").toFile(), remoteChange, remoteDict);
-//                            WordDictionary.getInstance()
-//                                    .init(environment.pluginsFile().resolve("jieba/dic").toFile());
-                            logger.info("end load local dict");
-                        }
-                    };
-
-                    new Timer().scheduleAtFixedRate(task,delay, period);
-
+                    loadConfig(environment);
+                    Path dir = environment.pluginsFile().resolve("jieba/dic");
+                    dictDir = dir;
+                    // 先发布单例，之后收到的集群推送直接应用，之前收到的由下面的任务应用
                     singleton = new JiebaDict();
+
+                    ScheduledExecutorService executor = scheduler();
+                    // 启动时加载一次本地词典，之后只在目录发生变化时重新加载
+                    executor.schedule(() -> reloadLocal(dir), delay, TimeUnit.MILLISECONDS);
+                    executor.schedule(JiebaDict::applyPendingRemote, delay, TimeUnit.MILLISECONDS);
+                    if (remoteEnabled(properties) && publisher == null) {
+                        // 没有集群分发时各节点自己拉取远程词典
+                        remoteFetcher = createRemoteFetcher(properties);
+                        RemoteDictFetcher fetcher = remoteFetcher;
+                        scheduleRemote(executor, "remote dict", () -> loadRemoteDic(fetcher), delay, period, jitter);
+                    }
+                    String deltaUrl = properties.getOrDefault("remote.delta.url", "").toString();
+                    if (deltaUrl.startsWith("http")) {
+                        int[] timeouts = timeouts(properties);
+                        scheduleRemote(executor, "remote delta",
+                                () -> loadRemoteDelta(deltaUrl, timeouts[0], timeouts[1]),
+                                delay, period, jitter);
+                    }
+                    if (!watch(dir, debounce)) {
+                        // 不支持文件监听时退回到按周期检查
+                        executor.scheduleWithFixedDelay(() -> reloadLocal(dir), period, period, TimeUnit.MILLISECONDS);
+                    }
                     return singleton;
                 }
             }
@@ -70,72 +117,543 @@ public class JiebaDict {
     }
 
 
-    private static boolean loadRemoteDic(Properties properties) {
-        SpecialPermission.check();
-        return AccessController.doPrivileged((PrivilegedAction<Boolean>) () -> loadRemoteDicUnprivileged(properties));
+    /**
+     * 集群分发：只有主节点拉取远程词典，再通过传输层推送给所有节点，
+     * 所有节点使用同一份远程词典，词典服务器也只承受一个节点的请求
+     */
+    public static synchronized void bindCluster(Environment environment, ClusterService clusterService, Client client) {
+        loadConfig(environment);
+        if (wordsReplayer == null) {
+            wordsReplayer = new JiebaDictWordsReplayer(client);
+            clusterService.addListener(wordsReplayer);
+        }
+        if (!remoteEnabled(properties) || publisher != null
+                || !Boolean.parseBoolean(properties.getOrDefault("remote.cluster.push", "true").toString())) {
+            return;
+        }
+        publisher = new JiebaDictPublisher(clusterService, client);
+        clusterService.addListener(publisher);
+        remoteFetcher = createRemoteFetcher(properties);
+        RemoteDictFetcher fetcher = remoteFetcher;
+        JiebaDictPublisher clusterPublisher = publisher;
+        // 在init之前调用，调度线程池可能还没有创建
+        scheduleRemote(scheduler(), "remote dict", () -> pushRemoteDic(fetcher, clusterPublisher), delay, period,
+                jitter);
     }
 
-    private static boolean loadRemoteDicUnprivileged(Properties properties) {
+
+    private static synchronized void loadConfig(Environment environment) {
+        if (properties != null) {
+            return;
+        }
+        Properties config = new Properties();
         try {
-            Object remoteDic = properties.getOrDefault("remote.ext.dic", "");
-            String remoteUrl = remoteDic.toString();
-            if(!remoteUrl.startsWith("http")){
-                logger.info("remote dic url invalid remoteUrl:{}", remoteUrl);
-                System.out.println("remote dic url invalid remoteUrl:" + remoteUrl);
-                return false;
+            config.load(Files.newInputStream(environment.pluginsFile().resolve("jieba/jieba.cfg.properties").toFile().toPath()));
+            delay = Long.parseLong(config.getOrDefault("remote.task.delay", delay).toString());
+            period = Long.parseLong(config.getOrDefault("remote.task.period", period).toString());
+            jitter = Long.parseLong(config.getOrDefault("remote.task.jitter", jitter).toString());
+            debounce = Long.parseLong(config.getOrDefault("local.watch.debounce", debounce).toString());
+            warmupRounds = Long.parseLong(config.getOrDefault("warmup.rounds", warmupRounds).toString());
+            warmupTimeout = Long.parseLong(config.getOrDefault("warmup.wait.timeout", warmupTimeout).toString());
+            if(delay < 0){
+                delay = 0;
+            }
+            if(period < 0){
+                period = 60 * 1000;
+            }
+            if(jitter < 0){
+                jitter = 0;
+            }
+            if(debounce < 0){
+                debounce = 500;
             }
-            int connectTimeout = 2000;
-            int readTimeout = 5000;
+            if(warmupRounds < 0){
+                warmupRounds = 0;
+            }
+            if(warmupTimeout < 0){
+                warmupTimeout = 0;
+            }
+        }catch (Exception e){
+            logger.error(e);
+        }
+        logger.info("properties:{}", config);
+        properties = config;
+    }
+
+
+    private static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("jieba-dict-scheduler"));
+        }
+        return scheduler;
+    }
+
+
+    /**
+     * 节点启动时在后台线程加载主词典、HMM模型和本地用户词典，再用内置语料分词若干轮触发JIT编译，
+     * 避免第一次创建索引或第一次查询时在业务线程上加载词典
+     */
+    public static synchronized void warmUp(Environment environment) {
+        if (warmupLatch != null) {
+            return;
+        }
+        loadConfig(environment);
+        CountDownLatch latch = new CountDownLatch(1);
+        long rounds = warmupRounds;
+        Path dictDir = environment.pluginsFile().resolve("jieba/dic");
+        warmupLatch = latch;
+        warmupThread = daemonThreadFactory("jieba-dict-warmup").newThread(() -> {
+            long start = System.currentTimeMillis();
             try {
-                connectTimeout = Integer.parseInt(properties.getOrDefault("remote.connectTimeout", connectTimeout).toString());
-                readTimeout = Integer.parseInt(properties.getOrDefault("remote.readTimeout", readTimeout).toString());
-                if(connectTimeout < 0){
-                    connectTimeout = 2000;
+                init(environment);
+                FinalSeg.getInstance();
+                reloadLocal(dictDir);
+                segmentCorpus(rounds);
+                warmupMillis = System.currentTimeMillis() - start;
+                logger.info("jieba warm-up done in {}ms", warmupMillis);
+            } catch (Throwable t) {
+                logger.error("jieba warm-up err", t);
+            } finally {
+                latch.countDown();
+            }
+        });
+        warmupThread.start();
+    }
+
+
+    private static void segmentCorpus(long rounds) throws IOException {
+        List<String> lines = new ArrayList<>();
+        InputStream in = JiebaDict.class.getResourceAsStream(WARMUP_CORPUS);
+        if (in == null) {
+            logger.warn("warm-up corpus {} not found", WARMUP_CORPUS);
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
                 }
-                if(readTimeout < 0){
-                    connectTimeout = 5000;
+            }
+        }
+        // 走和索引、查询相同的分词器路径，预热的分词不计入_jieba/stats
+        JiebaTokenizer[] tokenizers = {new JiebaTokenizer("SEARCH"), new JiebaTokenizer("INDEX")};
+        SegmentationStats.excludeCurrentThread(true);
+        try {
+            for (long i = 0; i < rounds && !Thread.currentThread().isInterrupted(); i++) {
+                for (String line : lines) {
+                    for (JiebaTokenizer tokenizer : tokenizers) {
+                        tokenizer.setReader(new StringReader(line));
+                        tokenizer.reset();
+                        while (tokenizer.incrementToken()) {
+                            // 丢弃
+                        }
+                        tokenizer.end();
+                        tokenizer.close();
+                    }
                 }
-            }catch (NumberFormatException ignore){}
-
-            URL url = new URL(remoteUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(connectTimeout);  // 设置连接超时时间为2秒
-            connection.setReadTimeout(readTimeout);   // 设置读取超时时间为5秒
-
-            String lastModifiedHeader = connection.getHeaderField("Last-Modified");
-            if(Objects.isNull(lastModifiedHeader)){
-                logger.info("remote dic header not Last-Modified");
-                System.out.println("remote dic header not Last-Modified");
-                return false;
             }
-            long remoteLastModified = 0;
+        } finally {
+            SegmentationStats.excludeCurrentThread(false);
+        }
+    }
+
+
+    /**
+     * 等待启动预热完成，最多等待warmup.wait.timeout毫秒；没有启动预热时直接返回
+     *
+     * @return 预热是否已经完成
+     */
+    public static boolean awaitReady() {
+        CountDownLatch latch = warmupLatch;
+        if (latch == null || latch.getCount() == 0) {
+            return true;
+        }
+        try {
+            if (latch.await(warmupTimeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            logger.warn("jieba dict not ready after {}ms, continue without waiting", warmupTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+
+    public static boolean isReady() {
+        CountDownLatch latch = warmupLatch;
+        return latch == null ? singleton != null : latch.getCount() == 0;
+    }
+
+
+    /**
+     * 预热耗时，还没有完成或没有预热时返回-1
+     */
+    public static long warmupMillis() {
+        return warmupMillis;
+    }
+
+
+    public static synchronized void close() {
+        if (warmupThread != null) {
+            warmupThread.interrupt();
+            warmupThread = null;
+        }
+        warmupLatch = null;
+        warmupMillis = -1;
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        remoteFetcher = null;
+        publisher = null;
+        wordsReplayer = null;
+        properties = null;
+        dictDir = null;
+        singleton = null;
+    }
+
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    private static boolean remoteEnabled(Properties properties) {
+        return properties.getOrDefault("remote.ext.dic", "").toString().startsWith("http");
+    }
+
+
+    /**
+     * 每次执行完再安排下一次，并加上随机抖动，避免所有节点同时请求词典服务器；
+     * 任何异常都只记录日志，不影响后续的调度；close之后线程池已关闭，不再调度
+     */
+    private static void scheduleRemote(ScheduledExecutorService executor, String name, Supplier<Boolean> task,
+                                       long delay, long period, long jitter) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        long next = delay + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        executor.schedule(() -> {
             try {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss z", Locale.ENGLISH);
-                ZonedDateTime zonedDateTime = ZonedDateTime.parse(lastModifiedHeader, formatter);
-                remoteLastModified = zonedDateTime.toInstant().getEpochSecond()*1000;
-            }catch (Exception ignore){}
+                logger.info("start to load {}", name);
+                if (task.get()) {
+                    logger.info("end load {}", name);
+                }
+            } catch (Throwable t) {
+                logger.error("load " + name + " err", t);
+            } finally {
+                scheduleRemote(executor, name, task, period, period, jitter);
+            }
+        }, next, TimeUnit.MILLISECONDS);
+    }
+
+
+    private static void reloadLocal(Path dictDir) {
+        try {
+            logger.info("start to load local dict");
+            WordDictionary.reload(dictDir.toFile());
+            logger.info("end load local dict");
+        } catch (Throwable t) {
+            logger.error("load local dict err", t);
+        }
+    }
 
-            if(lastModified == remoteLastModified){
+
+    /**
+     * 监听词典目录，目录中的.dict文件或停用词表有变化时，在debounce毫秒内不再有新的变化才重新加载，
+     * 一次拷贝多个文件只触发一次加载
+     */
+    private static boolean watch(Path dictDir, long debounce) {
+        WatchService watchService;
+        try {
+            watchService = dictDir.getFileSystem().newWatchService();
+            dictDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (Exception e) {
+            logger.warn("can not watch dict dir " + dictDir + ", fall back to periodic check", e);
+            return false;
+        }
+        watcher = daemonThreadFactory("jieba-dict-watcher").newThread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || (context != null && (context.toString().endsWith(".dict")
+                                || context.toString().equals("stopwords.txt")))) {
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        scheduleLocalReload(dictDir, debounce);
+                    }
+                    if (!key.reset()) {
+                        logger.warn("dict dir {} is no longer watched", dictDir);
+                        break;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    watchService.close();
+                } catch (IOException ignore) {}
+            }
+        });
+        watcher.start();
+        return true;
+    }
+
+
+    private static synchronized void scheduleLocalReload(Path dictDir, long debounce) {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        ScheduledFuture<?> pending = pendingLocalReload;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pendingLocalReload = executor.schedule(() -> reloadLocal(dictDir), debounce, TimeUnit.MILLISECONDS);
+    }
+
+
+    private static RemoteDictFetcher createRemoteFetcher(Properties properties) {
+        int[] timeouts = timeouts(properties);
+        return new RemoteDictFetcher(properties.getOrDefault("remote.ext.dic", "").toString(), timeouts[0], timeouts[1]);
+    }
+
+
+    private static int[] timeouts(Properties properties) {
+        int connectTimeout = 2000;
+        int readTimeout = 5000;
+        try {
+            connectTimeout = Integer.parseInt(properties.getOrDefault("remote.connectTimeout", connectTimeout).toString());
+            readTimeout = Integer.parseInt(properties.getOrDefault("remote.readTimeout", readTimeout).toString());
+            if(connectTimeout < 0){
+                connectTimeout = 2000;
+            }
+            if(readTimeout < 0){
+                readTimeout = 5000;
+            }
+        }catch (NumberFormatException ignore){}
+        return new int[]{connectTimeout, readTimeout};
+    }
+
+
+    /**
+     * 远程词典没有变化时只有一次条件请求；有变化时边下载边解析，直接替换远程词典层
+     */
+    private static boolean loadRemoteDic(RemoteDictFetcher fetcher) {
+        SpecialPermission.check();
+        return AccessController.doPrivileged((PrivilegedAction<Boolean>) () -> {
+            try {
+                return fetcher.fetch(body -> WordDictionary.getInstance().loadRemoteDict(body));
+            } catch (Exception e) {
+                logger.error("load remote dict err", e);
+            }
+            return false;
+        });
+    }
+
+
+    /**
+     * 带上已应用的增量版本请求远程增量，只发布增删改的词，不重建任何词典层
+     */
+    private static boolean loadRemoteDelta(String deltaUrl, int connectTimeout, int readTimeout) {
+        SpecialPermission.check();
+        return AccessController.doPrivileged((PrivilegedAction<Boolean>) () -> {
+            WordDictionary dictionary = WordDictionary.getInstance();
+            String url = deltaUrl + (deltaUrl.indexOf('?') < 0 ? '?' : '&') + "since=" + dictionary.getDeltaVersion();
+            boolean[] applied = new boolean[1];
+            try {
+                RemoteDictFetcher.get(url, connectTimeout, readTimeout, body -> applied[0] = dictionary.applyDelta(body));
+            } catch (Exception e) {
+                logger.error("load remote delta err", e);
+            }
+            return applied[0];
+        });
+    }
+
+
+    /**
+     * 主节点拉取远程词典，有变化时压缩后推送到所有节点；非主节点什么也不做
+     */
+    private static boolean pushRemoteDic(RemoteDictFetcher fetcher, JiebaDictPublisher clusterPublisher) {
+        if (!clusterPublisher.isLocalNodeElectedMaster()) {
+            return false;
+        }
+        SpecialPermission.check();
+        byte[] content = AccessController.doPrivileged((PrivilegedAction<byte[]>) () -> {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try {
+                boolean changed = fetcher.fetch(body -> {
+                    GZIPOutputStream gzip = new GZIPOutputStream(bos, 64 * 1024);
+                    byte[] buf = new byte[64 * 1024];
+                    int len;
+                    while ((len = body.read(buf)) != -1) {
+                        gzip.write(buf, 0, len);
+                    }
+                    gzip.finish();
+                });
+                return changed ? bos.toByteArray() : null;
+            } catch (Exception e) {
+                logger.error("load remote dict err", e);
+            }
+            return null;
+        });
+        if (content == null) {
+            clusterPublisher.retryFailed();
+            return false;
+        }
+        clusterPublisher.publish(content, Math.max(System.currentTimeMillis(), remoteVersion + 1));
+        return true;
+    }
+
+
+    /**
+     * 应用主节点推送的远程词典：校验摘要，忽略旧版本和内容相同的推送，然后整体替换远程词典层；
+     * 本节点的词典还没有初始化时先保存下来，初始化后再应用
+     *
+     * @param content gzip压缩的词典内容
+     * @return 是否替换了远程词典
+     */
+    public static boolean applyRemoteSnapshot(long version, String sha256, BytesReference content) throws IOException {
+        if (content == null) {
+            return false;
+        }
+        byte[] bytes = BytesReference.toBytes(content);
+        String actual = MessageDigests.toHexString(MessageDigests.sha256().digest(bytes));
+        if (!actual.equals(sha256)) {
+            throw new IOException("remote dict sha256 mismatch, expected " + sha256 + " but was " + actual);
+        }
+        synchronized (REMOTE_LOCK) {
+            if (version < remoteVersion) {
                 return false;
             }
-            InputStream inputStream = connection.getInputStream();
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            byte[] buf = new byte[4096];
-            int len;
-            while ((len = inputStream.read(buf)) != -1) {
-                byteArrayOutputStream.write(buf,0, len);
+            if (sha256.equals(remoteSha256)) {
+                remoteVersion = version;
+                return false;
             }
-            byteArrayOutputStream.flush();
-            synchronized (JiebaDict.class){
-                lastModified = remoteLastModified;
-                remoteDict = byteArrayOutputStream;
+            if (singleton == null) {
+                pendingRemote = bytes;
+            } else {
+                WordDictionary.getInstance().loadRemoteDict(new GZIPInputStream(new ByteArrayInputStream(bytes)));
             }
+            remoteVersion = version;
+            remoteSha256 = sha256;
+            logger.info("remote dict {} ({}) applied", version, sha256);
             return true;
-        } catch (Exception e) {
-            logger.error("load remote dict err", e);
-            System.err.println(e);
         }
-        return false;
+    }
+
+
+    private static void applyPendingRemote() {
+        synchronized (REMOTE_LOCK) {
+            if (pendingRemote == null) {
+                return;
+            }
+            try {
+                WordDictionary.getInstance().loadRemoteDict(new GZIPInputStream(new ByteArrayInputStream(pendingRemote)));
+            } catch (Throwable t) {
+                logger.error("load remote dict err", t);
+            }
+            pendingRemote = null;
+        }
+    }
+
+
+    public static long remoteVersion() {
+        return remoteVersion;
+    }
+
+
+    public static String remoteSha256() {
+        return remoteSha256;
+    }
+
+
+    /**
+     * 直接增删词，不重建词典层；词典还没有初始化时抛出异常
+     *
+     * @return 发布后的快照版本
+     */
+    public static long updateWords(Map<String, Double> add, Collection<String> remove) {
+        if (singleton == null) {
+            throw new IllegalStateException("jieba dict is not initialized on this node");
+        }
+        return WordDictionary.getInstance().updateWords(add, remove);
+    }
+
+
+    /**
+     * 本节点通过updateWords累计新增或修改的词，用于补发给其他节点
+     */
+    public static Map<String, Double> editedWords() {
+        return singleton == null ? Collections.emptyMap() : WordDictionary.getInstance().editedWords();
+    }
+
+
+    public static List<String> removedWords() {
+        return singleton == null ? Collections.emptyList() : WordDictionary.getInstance().removedWords();
+    }
+
+
+    /**
+     * 立即检查本地词典目录并重新加载有变化的词典，自己拉取远程词典的节点同时拉取一次远程词典，
+     * 主节点拉取并推送给所有节点，不等待定时任务
+     */
+    public static void reloadNow() {
+        Path dir = dictDir;
+        if (singleton == null || dir == null) {
+            throw new IllegalStateException("jieba dict is not initialized on this node");
+        }
+        SpecialPermission.check();
+        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            reloadLocal(dir);
+            return null;
+        });
+        RemoteDictFetcher fetcher = remoteFetcher;
+        JiebaDictPublisher clusterPublisher = publisher;
+        if (fetcher != null) {
+            if (clusterPublisher == null) {
+                loadRemoteDic(fetcher);
+            } else {
+                pushRemoteDic(fetcher, clusterPublisher);
+            }
+        }
+    }
+
+
+    /**
+     * 本节点词典快照的版本，词典还没有初始化时返回-1
+     */
+    public static long dictVersion() {
+        return singleton == null ? -1 : WordDictionary.getInstance().snapshot().getVersion();
+    }
+
+
+    /**
+     * 本节点的词典统计，词典还没有初始化时返回null
+     */
+    public static DictionaryStats stats() {
+        return singleton == null ? null : WordDictionary.getInstance().stats();
+    }
+
+
+    public static long deltaVersion() {
+        return singleton == null ? -1 : WordDictionary.getInstance().getDeltaVersion();
     }
 }
@@ -0,0 +1,151 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.DictionaryOverlay;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.Index;
+
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 索引专用词典：分词器/分析器配置了user_dictionary_paths时，在全局词典之上叠加这些词典。
+ * 使用同一组（顺序相同的）词典的索引共享一个叠加层。每次acquire都单独计数，持有者是使用叠加层的分析组件：
+ * 分析器关闭、索引从本节点移除，或者持有者不再可达（例如主节点上创建索引、校验mapping时的临时IndexService关闭后，
+ * 这些路径不会触发afterIndexRemoved）时减去对应的计数，没有计数的叠加层被释放。
+ */
+public class JiebaIndexDictionaries {
+    private static final Logger logger = LogManager.getLogger(JiebaIndexDictionaries.class);
+
+    public static final String USER_DICTIONARY_PATHS = "user_dictionary_paths";
+
+    private static final Map<String, Entry> overlays = new HashMap<>();
+
+    // 持有者被回收后，对应的计数在下一次访问时减去
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    private static class Entry {
+        final DictionaryOverlay overlay;
+        final List<Holder> holders = new ArrayList<>();
+
+        Entry(DictionaryOverlay overlay) {
+            this.overlay = overlay;
+        }
+    }
+
+    // 一次acquire，不阻止持有者被回收
+    private static class Holder extends WeakReference<Object> {
+        final Index index;
+
+        Holder(Object holder, Index index) {
+            super(holder, collected);
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param holder 使用返回的叠加层的分析组件，它关闭或不再可达时计数被释放
+     * @return 没有配置user_dictionary_paths时返回null，使用全局词典
+     */
+    public static DictionaryOverlay acquire(Object holder, Index index, Environment environment, Settings settings) {
+        List<String> paths = settings.getAsList(USER_DICTIONARY_PATHS);
+        if (paths.isEmpty()) {
+            return null;
+        }
+        Path dictDir = environment.pluginsFile().resolve("jieba/dic").toAbsolutePath().normalize();
+        // 后面的词典覆盖前面的，保持配置的顺序；按顺序拼接作为共享的key，重复的路径只保留第一次出现
+        LinkedHashSet<String> resolved = new LinkedHashSet<>();
+        for (String path : paths) {
+            Path file = dictDir.resolve(path).normalize();
+            if (!file.startsWith(dictDir)) {
+                throw new IllegalArgumentException("[" + USER_DICTIONARY_PATHS + "] must be inside " + dictDir
+                        + " but was [" + path + "]");
+            }
+            resolved.add(file.toString());
+        }
+        return acquire(holder, index, resolved);
+    }
+
+    private static synchronized DictionaryOverlay acquire(Object holder, Index index, LinkedHashSet<String> paths) {
+        expunge();
+        String key = String.join("\n", paths);
+        Entry entry = overlays.get(key);
+        if (entry == null) {
+            List<File> files = new ArrayList<>();
+            for (String path : paths) {
+                files.add(new File(path));
+            }
+            entry = new Entry(DictionaryOverlay.load(files));
+            overlays.put(key, entry);
+            logger.info("index dictionary {} loaded, {} words", paths, entry.overlay.size());
+        }
+        entry.holders.add(new Holder(holder, index));
+        return entry.overlay;
+    }
+
+    /**
+     * 分析组件关闭时调用，释放它的所有acquire
+     */
+    public static synchronized void release(Object holder) {
+        expunge();
+        removeHolders(h -> h.get() == holder);
+    }
+
+    /**
+     * 索引从本节点移除后调用，释放这个索引的所有acquire
+     */
+    public static synchronized void release(Index index) {
+        expunge();
+        removeHolders(h -> h.index.equals(index));
+    }
+
+    /**
+     * 释放已被回收的持有者的acquire
+     */
+    private static void expunge() {
+        boolean cleared = false;
+        while (collected.poll() != null) {
+            cleared = true;
+        }
+        if (cleared) {
+            removeHolders(h -> h.get() == null);
+        }
+    }
+
+    private static void removeHolders(Predicate<Holder> released) {
+        Iterator<Map.Entry<String, Entry>> it = overlays.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (entry.getValue().holders.removeIf(released) && entry.getValue().holders.isEmpty()) {
+                it.remove();
+                entry.getValue().overlay.close();
+                logger.info("index dictionary {} released", entry.getKey().replace('\n', ','));
+            }
+        }
+    }
+
+    public static synchronized int size() {
+        expunge();
+        return overlays.size();
+    }
+
+    public static synchronized long ramBytesUsed() {
+        expunge();
+        long size = 0;
+        for (Entry entry : overlays.values()) {
+            size += entry.overlay.ramBytesUsed();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,196 @@
+package org.elasticsearch.index.analysis;
+
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 节点级的查询分词缓存：同一段（较短的）文本用同样的配置和同一版本的词典分词，结果总是相同的，
+ * 配置了query_cache的分词器直接回放缓存的词，不再走DAG、路径计算和HMM。
+ * 按词典快照的版本号区分，词典更新后旧的条目不再命中，随后被淘汰。
+ */
+public final class JiebaQueryCache {
+
+    private static volatile Cache<Key, Entry> cache;
+    private static volatile int maxTextLength;
+
+
+    private JiebaQueryCache() {
+    }
+
+
+    /**
+     * @param maxBytes      缓存占用的上限，0表示不缓存
+     * @param maxTextLength 只缓存不超过这个长度的文本
+     */
+    public static synchronized void configure(long maxBytes, int maxTextLength) {
+        JiebaQueryCache.maxTextLength = maxTextLength;
+        cache = maxBytes <= 0 || maxTextLength <= 0 ? null : CacheBuilder.<Key, Entry>builder()
+                .setMaximumWeight(maxBytes)
+                .weigher((key, entry) -> key.ramBytesUsed() + entry.ramBytesUsed())
+                .build();
+    }
+
+
+    public static synchronized void close() {
+        cache = null;
+    }
+
+
+    /**
+     * 这个长度的文本是否会被缓存
+     */
+    static boolean accepts(int textLength) {
+        return cache != null && textLength <= maxTextLength;
+    }
+
+
+    static Entry get(Key key) {
+        Cache<Key, Entry> current = cache;
+        return current == null ? null : current.get(key);
+    }
+
+
+    static void put(Key key, Entry entry) {
+        Cache<Key, Entry> current = cache;
+        if (current != null) {
+            current.put(key, entry);
+        }
+    }
+
+
+    /**
+     * 依次为条目数、占用的字节数、命中、未命中、淘汰次数；没有启用时返回null
+     */
+    public static long[] stats() {
+        Cache<Key, Entry> current = cache;
+        if (current == null) {
+            return null;
+        }
+        Cache.CacheStats stats = current.stats();
+        return new long[]{current.count(), current.weight(), stats.getHits(), stats.getMisses(), stats.getEvictions()};
+    }
+
+
+    /**
+     * 分词配置（词典、模式、路径数、停用词的处理方式、是否转简体）、词典版本和文本
+     */
+    static final class Key {
+        final long dictionary;
+        final String mode;
+        final int kBest;
+        final int stopwords;
+        final boolean t2s;
+        final long version;
+        final String text;
+        private final int hash;
+
+        Key(long dictionary, String mode, int kBest, int stopwords, boolean t2s, long version, String text) {
+            this.dictionary = dictionary;
+            this.mode = mode;
+            this.kBest = kBest;
+            this.stopwords = stopwords;
+            this.t2s = t2s;
+            this.version = version;
+            this.text = text;
+            this.hash = Objects.hash(dictionary, mode, kBest, stopwords, t2s, version, text);
+        }
+
+        long ramBytesUsed() {
+            return 64 + 2L * text.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return dictionary == key.dictionary && kBest == key.kBest && stopwords == key.stopwords
+                    && t2s == key.t2s && version == key.version
+                    && mode.equals(key.mode) && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    /**
+     * 一段文本的分词结果：第i个词为chars[termEnds[i-1], termEnds[i])，偏移量是校正（correctOffset）之前、
+     * 相对于去掉首尾空白后的文本的
+     */
+    static final class Entry {
+        final char[] chars;
+        final int[] termEnds;
+        final int[] starts;
+        final int[] ends;
+        final int[] posIncrs;
+        final int[] posLengths;
+        final int size;
+
+        private Entry(char[] chars, int[] termEnds, int[] starts, int[] ends, int[] posIncrs, int[] posLengths, int size) {
+            this.chars = chars;
+            this.termEnds = termEnds;
+            this.starts = starts;
+            this.ends = ends;
+            this.posIncrs = posIncrs;
+            this.posLengths = posLengths;
+            this.size = size;
+        }
+
+        int termStart(int i) {
+            return i == 0 ? 0 : termEnds[i - 1];
+        }
+
+        long ramBytesUsed() {
+            return 96 + 2L * chars.length + 4L * 5 * size;
+        }
+    }
+
+
+    static final class EntryBuilder {
+        private char[] chars = new char[32];
+        private int charCount;
+        private int[] termEnds = new int[8];
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private int[] posIncrs = new int[8];
+        private int[] posLengths = new int[8];
+        private int size;
+
+        void add(char[] buffer, int offset, int length, int start, int end, int posIncr, int posLength) {
+            if (charCount + length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(charCount + length, chars.length * 2));
+            }
+            System.arraycopy(buffer, offset, chars, charCount, length);
+            charCount += length;
+            if (size == termEnds.length) {
+                int capacity = size * 2;
+                termEnds = Arrays.copyOf(termEnds, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                posIncrs = Arrays.copyOf(posIncrs, capacity);
+                posLengths = Arrays.copyOf(posLengths, capacity);
+            }
+            termEnds[size] = charCount;
+            starts[size] = start;
+            ends[size] = end;
+            posIncrs[size] = posIncr;
+            posLengths[size] = posLength;
+            size++;
+        }
+
+        Entry build() {
+            return new Entry(Arrays.copyOf(chars, charCount), Arrays.copyOf(termEnds, size), Arrays.copyOf(starts, size),
+                    Arrays.copyOf(ends, size), Arrays.copyOf(posIncrs, size), Arrays.copyOf(posLengths, size), size);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.SegmentationListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢文档日志：分词耗时超过阈值的文档按阶段（规范化、DAG、路径、HMM）输出耗时和大小，
+ * 用来判断时间花在哪一步。阈值为负数时不注册回调，分词没有额外开销。
+ */
+public class JiebaSlowLog implements SegmentationListener {
+    private static final Logger logger = LogManager.getLogger(JiebaSlowLog.class);
+    private static final Phase[] PHASES = Phase.values();
+
+    /**
+     * 每个分词线程上当前文档的累计值，阶段内可能多次调用（每个句子一次DAG、每段未登录字一次HMM）
+     */
+    private static final class Trace {
+        int chars;
+        final long[] nanos = new long[PHASES.length];
+        final int[] calls = new int[PHASES.length];
+        final long[] sizes = new long[PHASES.length];
+    }
+
+    private final long thresholdNanos;
+    private final ThreadLocal<Trace> traces = ThreadLocal.withInitial(Trace::new);
+
+    JiebaSlowLog(TimeValue threshold) {
+        this.thresholdNanos = threshold.nanos();
+    }
+
+    /**
+     * 按阈值注册或取消慢文档日志
+     */
+    public static synchronized void configure(TimeValue threshold) {
+        if (threshold.nanos() < 0) {
+            JiebaSegmenter.setListener(null);
+        } else {
+            JiebaSegmenter.setListener(new JiebaSlowLog(threshold));
+            logger.info("jieba slow log enabled, threshold [{}]", threshold);
+        }
+    }
+
+    @Override
+    public void begin(Phase phase, int size) {
+        if (phase == Phase.DOCUMENT) {
+            Trace trace = traces.get();
+            trace.chars = size;
+            for (int i = 0; i < PHASES.length; i++) {
+                trace.nanos[i] = 0;
+                trace.calls[i] = 0;
+                trace.sizes[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void end(Phase phase, int size, long nanos) {
+        Trace trace = traces.get();
+        trace.nanos[phase.ordinal()] += nanos;
+        trace.calls[phase.ordinal()]++;
+        trace.sizes[phase.ordinal()] += size;
+        if (phase == Phase.DOCUMENT && nanos >= thresholdNanos) {
+            logger.warn("took[{}ms], chars[{}], tokens[{}], normalize[{}ms], dag[{}ms] sentences[{}], route[{}ms], "
+                            + "hmm[{}ms] runs[{}] tokens[{}]",
+                    millis(nanos), trace.chars, size, millis(trace.nanos[Phase.NORMALIZE.ordinal()]),
+                    millis(trace.nanos[Phase.DAG.ordinal()]), trace.calls[Phase.DAG.ordinal()],
+                    millis(trace.nanos[Phase.ROUTE.ordinal()]), millis(trace.nanos[Phase.HMM.ordinal()]),
+                    trace.calls[Phase.HMM.ordinal()], trace.sizes[Phase.HMM.ordinal()]);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,80 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.CharacterUtil;
+import com.huaban.analysis.jieba.DictionarySnapshot;
+import org.apache.lucene.util.CharsRef;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+
+import java.util.function.Supplier;
+
+/**
+ * 把一个词拆成词典中的子词。高频词反复出现，按词缓存拆分结果，拆分的开销只和不同词的数量有关；
+ * 缓存的结果记录了词典快照的版本，词典更新后重新拆分。查询缓存用调用方复用的CharsRef指向词的字符，
+ * 只有没有命中、放入缓存时才复制一份作为key。
+ */
+public class JiebaSubwords {
+
+  private final Supplier<DictionarySnapshot> dictionary;
+
+  private final int minLength;
+
+  private final int maxLength;
+
+  // 为null时不缓存
+  private final Cache<CharsRef, Entry> cache;
+
+  private static final class Entry {
+    final long version;
+    final long[] subwords;
+
+    Entry(long version, long[] subwords) {
+      this.version = version;
+      this.subwords = subwords;
+    }
+  }
+
+  /**
+   * @param cacheSize 缓存的词数，0表示不缓存
+   */
+  public JiebaSubwords(Supplier<DictionarySnapshot> dictionary, int minLength, int maxLength, int cacheSize) {
+    this.dictionary = dictionary;
+    this.minLength = minLength;
+    this.maxLength = maxLength;
+    this.cache = cacheSize > 0 ? CacheBuilder.<CharsRef, Entry>builder().setMaximumWeight(cacheSize).build() : null;
+  }
+
+  /**
+   * 拆分term[0, length)，词按词典的规则规范化（全角转半角、大写转小写、繁体转简体）后再匹配，结果写回term
+   *
+   * @return 按起始、结束位置排序，每个子词为 起始 << 32 | 结束
+   */
+  public long[] decompose(char[] term, int length) {
+    return decompose(term, length, new CharsRef());
+  }
+
+  /**
+   * @param key 调用方复用的查询key，不为每个词分配；调用之后指向term[0, length)
+   */
+  public long[] decompose(char[] term, int length, CharsRef key) {
+    for (int i = 0; i < length; i++) {
+      char ch = CharacterUtil.regularize(term[i]);
+      if (CharacterUtil.ccFind(ch)) {
+        term[i] = ch;
+      }
+    }
+    DictionarySnapshot dict = dictionary.get();
+    if (cache == null) {
+      return dict.subwords(term, 0, length, minLength, maxLength);
+    }
+    key.chars = term;
+    key.offset = 0;
+    key.length = length;
+    Entry entry = cache.get(key);
+    if (entry == null || entry.version != dict.getVersion()) {
+      entry = new Entry(dict.getVersion(), dict.subwords(term, 0, length, minLength, maxLength));
+      cache.put(CharsRef.deepCopyOf(key), entry);
+    }
+    return entry.subwords;
+  }
+}
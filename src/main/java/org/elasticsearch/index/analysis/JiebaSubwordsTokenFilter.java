@@ -0,0 +1,106 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.CharacterUtil;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRef;
+
+import java.io.IOException;
+
+/**
+ * 在每个词之后输出它在词典中的子词，子词和原词在同一个位置，相当于INDEX模式对长词的拆分，
+ * 但可以用在任意分词器之后
+ */
+public class JiebaSubwordsTokenFilter extends TokenFilter {
+
+  private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+  private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+  private final PositionIncrementAttribute positionIncrementAttribute = addAttribute(PositionIncrementAttribute.class);
+
+  private final JiebaSubwords subwords;
+
+  // 子词是否转成简体，与分词器的t2s一致
+  private final boolean t2s;
+
+  // 当前词（规范化后）和它的子词
+  private char[] term = new char[16];
+  // 查询子词缓存的key，指向term
+  private final CharsRef key = new CharsRef();
+  private long[] spans;
+  private int next;
+  private int startOffset;
+  private boolean offsetsMatchTerm;
+  private State state;
+
+  public JiebaSubwordsTokenFilter(TokenStream input, JiebaSubwords subwords) {
+    this(input, subwords, true);
+  }
+
+  /**
+   * @param t2s 为false时子词只做全角转半角、英文大写转小写，繁体保持原样
+   */
+  public JiebaSubwordsTokenFilter(TokenStream input, JiebaSubwords subwords, boolean t2s) {
+    super(input);
+    this.subwords = subwords;
+    this.t2s = t2s;
+  }
+
+  @Override
+  public boolean incrementToken() throws IOException {
+    if (spans != null) {
+      long span = spans[next++];
+      int start = (int) (span >>> 32);
+      int end = (int) span;
+      restoreState(state);
+      termAtt.copyBuffer(term, start, end - start);
+      if (offsetsMatchTerm) {
+        offsetAtt.setOffset(startOffset + start, startOffset + end);
+      }
+      positionIncrementAttribute.setPositionIncrement(0);
+      if (next == spans.length) {
+        spans = null;
+        state = null;
+      }
+      return true;
+    }
+    if (!input.incrementToken()) {
+      return false;
+    }
+    int length = termAtt.length();
+    if (term.length < length) {
+      term = new char[ArrayUtil.oversize(length, Character.BYTES)];
+    }
+    System.arraycopy(termAtt.buffer(), 0, term, 0, length);
+    long[] found = subwords.decompose(term, length, key);
+    if (found.length > 0) {
+      if (!t2s) {
+        // 按简体匹配，输出时换回原词中的字
+        char[] original = termAtt.buffer();
+        for (int i = 0; i < length; i++) {
+          char ch = CharacterUtil.regularizeCompat(original[i]);
+          if (CharacterUtil.ccFind(ch)) {
+            term[i] = ch;
+          }
+        }
+      }
+      spans = found;
+      next = 0;
+      startOffset = offsetAtt.startOffset();
+      // 经过同义词等改写的词，偏移量和词的长度对不上，子词只能沿用原词的偏移量
+      offsetsMatchTerm = offsetAtt.endOffset() - startOffset == length;
+      state = captureState();
+    }
+    return true;
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    spans = null;
+    state = null;
+  }
+}
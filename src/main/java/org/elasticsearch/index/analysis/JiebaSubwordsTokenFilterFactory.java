@@ -0,0 +1,48 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.DictionaryOverlay;
+import com.huaban.analysis.jieba.WordDictionary;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+
+public class JiebaSubwordsTokenFilterFactory extends AbstractTokenFilterFactory {
+
+  private final JiebaSubwords subwords;
+
+  private final boolean t2s;
+
+  public JiebaSubwordsTokenFilterFactory(IndexSettings indexSettings, Environment env, String name, Settings settings) {
+    super(indexSettings, name, settings);
+    int minLength = settings.getAsInt("min_subword_size", 2);
+    int maxLength = settings.getAsInt("max_subword_size", 3);
+    int cacheSize = settings.getAsInt("subword_cache_size", 10000);
+    t2s = settings.getAsBoolean(JiebaTokenizerFactory.T2S, true);
+    if (minLength < 1 || maxLength < minLength) {
+      throw new IllegalArgumentException("[min_subword_size] must be at least 1 and not greater than [max_subword_size], got ["
+          + minLength + ", " + maxLength + "]");
+    }
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("[subword_cache_size] must not be negative, got " + cacheSize);
+    }
+    JiebaDict.init(env);
+    JiebaDict.awaitReady();
+    DictionaryOverlay overlay = JiebaIndexDictionaries.acquire(this, indexSettings.getIndex(), env, settings);
+    subwords = new JiebaSubwords(null == overlay ? () -> WordDictionary.getInstance().snapshot() : overlay,
+        minLength, maxLength, cacheSize);
+  }
+
+  @Override
+  public TokenStream create(TokenStream tokenStream) {
+    return new JiebaSubwordsTokenFilter(tokenStream, subwords, t2s);
+  }
+
+  public static TokenFilterFactory getJiebaSubwordsTokenFilterFactory(IndexSettings indexSettings,
+                                                                     Environment environment,
+                                                                     String name,
+                                                                     Settings settings) {
+    return new JiebaSubwordsTokenFilterFactory(indexSettings, environment, name, settings);
+  }
+}
@@ -4,70 +4,161 @@ package org.elasticsearch.index.analysis;
  * Created by zhangcheng on 2017/1/17.
  */
 
-import com.huaban.analysis.jieba.SegToken;
+import com.huaban.analysis.jieba.DictionarySnapshot;
+import com.huaban.analysis.jieba.JiebaSegmenter;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class JiebaTokenizer extends Tokenizer {
 
+  /**
+   * 停用词的处理：保留；去掉并保留位置空缺（与stop过滤器相同）；去掉并且不留空缺。
+   * GRAPH模式下词图的节点不能合并，去掉停用词时总是保留空缺
+   */
+  public enum Stopwords {
+    KEEP, REMOVE, REMOVE_WITHOUT_GAPS
+  }
+
   private CharTermAttribute termAtt;
   private OffsetAttribute offsetAtt;
   private TypeAttribute typeAtt;
   private PositionIncrementAttribute positionIncrementAttribute;
-  private int endPosition;
-  private SegToken lastToken = null;
-  private Map<Integer, Integer> endOffset2PosIncr = new HashMap<>();
+  private PositionLengthAttribute positionLengthAttribute;
+  private int lastStart = -1;
+  private int lastStartNode = -1;
+  // endMarks[offset] == generation 表示当前文档中已经有词在offset处结束，换文档时只需要递增generation
+  private int[] endMarks = new int[1024];
+  private int generation = 0;
+  // 当前词的位置增量和跨度
+  private int posIncr;
+  private int posLength;
 
   private JiebaAdapter jieba;
 
+  // 启用查询缓存时，文本的分词结果从缓存回放
+  private final boolean queryCache;
+  private final Stopwords stopwords;
+  private JiebaQueryCache.Entry replay;
+  private int replayIndex;
+
   protected JiebaTokenizer(String segModeName) {
+    this(segModeName, null);
+  }
+
+  protected JiebaTokenizer(String segModeName, JiebaSegmenter segmenter) {
+    this(segModeName, segmenter, JiebaSegmenter.DEFAULT_K_BEST);
+  }
+
+  /**
+   * @param kBest GRAPH模式保留的切分路径数
+   */
+  protected JiebaTokenizer(String segModeName, JiebaSegmenter segmenter, int kBest) {
+    this(segModeName, segmenter, kBest, false);
+  }
+
+  /**
+   * @param queryCache 是否使用节点级的查询分词缓存，只适合查询时分词的短文本
+   */
+  protected JiebaTokenizer(String segModeName, JiebaSegmenter segmenter, int kBest, boolean queryCache) {
+    this(segModeName, segmenter, kBest, queryCache, Stopwords.KEEP);
+  }
+
+  /**
+   * @param stopwords 是否在输出时去掉词典中的停用词，代替后面的stop过滤器
+   */
+  protected JiebaTokenizer(String segModeName, JiebaSegmenter segmenter, int kBest, boolean queryCache,
+                           Stopwords stopwords) {
+    this(segModeName, segmenter, kBest, queryCache, stopwords, true);
+  }
+
+  /**
+   * @param t2s 输出的词是否转成简体，为false时与早期版本一致，繁体保持原样
+   */
+  protected JiebaTokenizer(String segModeName, JiebaSegmenter segmenter, int kBest, boolean queryCache,
+                           Stopwords stopwords, boolean t2s) {
 
     this.offsetAtt = addAttribute(OffsetAttribute.class);
     this.termAtt = addAttribute(CharTermAttribute.class);
     this.typeAtt = addAttribute(TypeAttribute.class);
     this.positionIncrementAttribute = addAttribute(PositionIncrementAttribute.class);
+    this.positionLengthAttribute = addAttribute(PositionLengthAttribute.class);
 
-    jieba = new JiebaAdapter(segModeName);
+    jieba = new JiebaAdapter(segModeName, segmenter, kBest, t2s);
+    this.queryCache = queryCache;
+    this.stopwords = stopwords;
   }
 
   @Override
   public boolean incrementToken() throws IOException {
     clearAttributes();
-    if (jieba.hasNext()) {
-      SegToken token = jieba.next();
-      termAtt.append(token.word);
-      termAtt.setLength(token.word.length());
-      offsetAtt.setOffset(token.startOffset, token.endOffset);
-      Integer posIncr = 0;
-      if (null == lastToken) {
+    if (replay != null) {
+      if (replayIndex == replay.size) {
+        return false;
+      }
+      int i = replayIndex++;
+      int termStart = replay.termStart(i);
+      // 缓存的偏移量相对于去掉首尾空白后的文本，同样的文本前面的空白可以不同
+      int base = jieba.textStart();
+      termAtt.copyBuffer(replay.chars, termStart, replay.termEnds[i] - termStart);
+      offsetAtt.setOffset(correctOffset(base + replay.starts[i]), correctOffset(base + replay.ends[i]));
+      positionIncrementAttribute.setPositionIncrement(replay.posIncrs[i]);
+      positionLengthAttribute.setPositionLength(replay.posLengths[i]);
+      return true;
+    }
+    if (!nextToken()) {
+      return false;
+    }
+    int start = jieba.startOffset();
+    int end = jieba.endOffset();
+    termAtt.copyBuffer(jieba.termBuffer(), jieba.termStart(), end - start);
+    offsetAtt.setOffset(correctOffset(jieba.textStart() + start), correctOffset(jieba.textStart() + end));
+    positionIncrementAttribute.setPositionIncrement(posIncr);
+    positionLengthAttribute.setPositionLength(posLength);
+    return true;
+  }
+
+  /**
+   * 词按起始、结束位置排序输出：第一个词位置加1；与上一个词起始位置相同（更长的词）时位置不变；
+   * 起始位置恰好是前面某个词的结束位置时是新的切分，位置加1；其余（被更长的词覆盖的子词）位置不变。
+   * GRAPH模式输出词图：位置是词的起点在词图中的节点，PositionLength是跨过的节点数。
+   * 去掉的停用词照常参与位置的计算，它们的位置增量累加到下一个输出的词上
+   */
+  private boolean nextToken() {
+    int skipped = 0;
+    while (jieba.advance()) {
+      int start = jieba.startOffset();
+      int end = jieba.endOffset();
+      posLength = 1;
+      if (jieba.isGraph()) {
+        int startNode = jieba.startNode();
+        posIncr = startNode - lastStartNode;
+        posLength = jieba.endNode() - startNode;
+        lastStartNode = startNode;
+      } else if (lastStart < 0) {
         posIncr = 1;
+      } else if (start == lastStart) {
+        posIncr = 0;
       } else {
-        if (token.word.startsWith(lastToken.word)) {
-          posIncr = 0;
-        } else {
-          // 判断是否是新的切分
-          if (endOffset2PosIncr.containsKey(token.startOffset)){
-            posIncr = 1;
-          } else {
-            if (token.endOffset <= lastToken.endOffset) {
-              posIncr = 0;
-            } else {
-              posIncr = 0;
-            }
-          }
-        }
+        posIncr = endMarks[start] == generation ? 1 : 0;
+      }
+      endMarks[end] = generation;
+      lastStart = start;
+      if (stopwords != Stopwords.KEEP && jieba.isStopword()) {
+        skipped += posIncr;
+        continue;
+      }
+      if (stopwords == Stopwords.REMOVE_WITHOUT_GAPS && !jieba.isGraph()) {
+        posIncr = Math.min(1, posIncr + skipped);
+      } else {
+        posIncr += skipped;
       }
-      positionIncrementAttribute.setPositionIncrement(posIncr);
-      endOffset2PosIncr.put(token.endOffset, posIncr);
-      endPosition = token.endOffset;
-      lastToken = token;
       return true;
     }
     return false;
@@ -75,15 +166,45 @@ public class JiebaTokenizer extends Tokenizer {
 
   @Override
   public void end() throws IOException {
-    int finalOffset = correctOffset(this.endPosition);
+    super.end();
+    // 最终偏移量是读入的全部字符数，包括首尾空白
+    int finalOffset = correctOffset(jieba.inputLength());
     offsetAtt.setOffset(finalOffset, finalOffset);
   }
 
   @Override
   public void reset() throws IOException {
     super.reset();
-    jieba.reset(this.input);
-    lastToken = null;
-    endOffset2PosIncr = new HashMap<>();
+    jieba.read(this.input);
+    replay = null;
+    lastStart = -1;
+    lastStartNode = -1;
+    if (endMarks.length <= jieba.length()) {
+      endMarks = new int[Math.max(jieba.length() + 1, endMarks.length * 2)];
+      generation = 0;
+    }
+    if (++generation == Integer.MAX_VALUE) {
+      Arrays.fill(endMarks, 0);
+      generation = 1;
+    }
+    DictionarySnapshot dict = jieba.snapshot();
+    if (!queryCache || !JiebaQueryCache.accepts(jieba.length())) {
+      jieba.segment(dict);
+      return;
+    }
+    JiebaQueryCache.Key key = jieba.cacheKey(dict, stopwords);
+    JiebaQueryCache.Entry entry = JiebaQueryCache.get(key);
+    if (entry == null) {
+      jieba.segment(dict);
+      JiebaQueryCache.EntryBuilder builder = new JiebaQueryCache.EntryBuilder();
+      while (nextToken()) {
+        builder.add(jieba.termBuffer(), jieba.termStart(), jieba.endOffset() - jieba.startOffset(),
+            jieba.startOffset(), jieba.endOffset(), posIncr, posLength);
+      }
+      entry = builder.build();
+      JiebaQueryCache.put(key, entry);
+    }
+    replay = entry;
+    replayIndex = 0;
   }
 }
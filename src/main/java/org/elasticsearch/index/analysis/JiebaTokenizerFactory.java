@@ -1,5 +1,6 @@
 package org.elasticsearch.index.analysis;
 
+import com.huaban.analysis.jieba.DictionaryOverlay;
 import com.huaban.analysis.jieba.JiebaSegmenter;
 import org.apache.lucene.analysis.Tokenizer;
 import org.elasticsearch.common.settings.Settings;
@@ -11,16 +12,62 @@ public class JiebaTokenizerFactory extends AbstractTokenizerFactory {
 
   public static final String TokenizerName = "JiebaTokenizer";
 
+  // 查询时使用的分词器可以打开，重复的查询文本直接使用节点级缓存中的分词结果
+  public static final String QUERY_CACHE = "query_cache";
+
+  // 输出的词是否转成简体，已有索引中存的是繁体时设为false，否则需要重建索引
+  public static final String T2S = "t2s";
+
   private String segMode;
 
+  private final JiebaSegmenter segmenter;
+
+  private final int kBest;
+
+  private final boolean queryCache;
+
+  private final JiebaTokenizer.Stopwords stopwords;
+
+  private final boolean t2s;
+
   public JiebaTokenizerFactory(IndexSettings indexSettings, Environment env, Settings settings) {
     super(indexSettings, settings, TokenizerName);
+    kBest = kBest(settings);
+    queryCache = settings.getAsBoolean(QUERY_CACHE, false);
+    stopwords = stopwords(settings);
+    t2s = settings.getAsBoolean(T2S, true);
     JiebaDict.init(env);
+    JiebaDict.awaitReady();
+    DictionaryOverlay overlay = JiebaIndexDictionaries.acquire(this, indexSettings.getIndex(), env, settings);
+    segmenter = null == overlay ? null : new JiebaSegmenter(overlay);
   }
 
   @Override
   public Tokenizer create() {
-    return new JiebaTokenizer(segMode);
+    return new JiebaTokenizer(segMode, segmenter, kBest, queryCache, stopwords, t2s);
+  }
+
+  /**
+   * jieba_graph保留的切分路径数
+   */
+  static int kBest(Settings settings) {
+    int kBest = settings.getAsInt("k_best", JiebaSegmenter.DEFAULT_K_BEST);
+    if (kBest < 1) {
+      throw new IllegalArgumentException("[k_best] must be at least 1, got " + kBest);
+    }
+    return kBest;
+  }
+
+  /**
+   * remove_stopwords：输出时去掉词典目录中stopwords.txt里的词；
+   * stopword_position_gaps：去掉的停用词是否保留位置空缺，默认保留
+   */
+  static JiebaTokenizer.Stopwords stopwords(Settings settings) {
+    if (!settings.getAsBoolean("remove_stopwords", false)) {
+      return JiebaTokenizer.Stopwords.KEEP;
+    }
+    return settings.getAsBoolean("stopword_position_gaps", true)
+        ? JiebaTokenizer.Stopwords.REMOVE : JiebaTokenizer.Stopwords.REMOVE_WITHOUT_GAPS;
   }
 
   public String getSegMode() {
@@ -52,4 +99,15 @@ public class JiebaTokenizerFactory extends AbstractTokenizerFactory {
     jiebaTokenizerFactory.setSegMode(JiebaSegmenter.SegMode.INDEX.name());
     return jiebaTokenizerFactory;
   }
+
+  public static TokenizerFactory getJiebaGraphTokenizerFactory(IndexSettings indexSettings,
+                                                              Environment environment,
+                                                              String s,
+                                                              Settings settings) {
+    JiebaTokenizerFactory jiebaTokenizerFactory = new JiebaTokenizerFactory(indexSettings,
+        environment,
+        settings);
+    jiebaTokenizerFactory.setSegMode(JiebaSegmenter.SegMode.GRAPH.name());
+    return jiebaTokenizerFactory;
+  }
 }
@@ -0,0 +1,237 @@
+package org.elasticsearch.index.analysis;
+
+
+import com.huaban.analysis.jieba.JiebaEvents;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 远程词典的条件请求：带上次的ETag/Last-Modified发送If-None-Match/If-Modified-Since，
+ * 304或者校验值没有变化时不读取响应体；有变化时把（必要时解压后的）响应流直接交给调用方解析，
+ * 不在内存中缓存整个词典。
+ */
+public class RemoteDictFetcher {
+    private static final Logger logger = LogManager.getLogger(RemoteDictFetcher.class);
+
+    // 所有远程请求的结果：有变化并处理成功、没有变化、失败（非200响应或者异常）
+    private static final LongAdder changed = new LongAdder();
+    private static final LongAdder notModified = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+
+    /**
+     * 响应体的处理方，只能在fetch调用期间读取
+     */
+    public interface BodyConsumer {
+        void accept(InputStream body) throws IOException;
+    }
+
+    private final String remoteUrl;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private String etag;
+    private String lastModified;
+
+
+    public RemoteDictFetcher(String remoteUrl, int connectTimeout, int readTimeout) {
+        this.remoteUrl = remoteUrl;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+
+    /**
+     * @return 远程词典有变化并且已经交给consumer处理时返回true
+     */
+    public synchronized boolean fetch(BodyConsumer consumer) throws IOException {
+        Object event = JiebaEvents.beginRemoteFetch();
+        Exchange exchange = new Exchange();
+        try {
+            return fetchOnce(consumer, exchange);
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            throw e;
+        } finally {
+            JiebaEvents.endRemoteFetch(event, remoteUrl, exchange.status, exchange.bytes);
+        }
+    }
+
+
+    private boolean fetchOnce(BodyConsumer consumer, Exchange exchange) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(remoteUrl).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        int code = connection.getResponseCode();
+        exchange.status = code;
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            logger.debug("remote dic not modified");
+            release(connection);
+            notModified.increment();
+            return false;
+        }
+        if (code != HttpURLConnection.HTTP_OK) {
+            logger.warn("remote dic response code:{}", code);
+            release(connection);
+            failed.increment();
+            return false;
+        }
+        String remoteEtag = connection.getHeaderField("ETag");
+        String remoteLastModified = connection.getHeaderField("Last-Modified");
+        if (remoteEtag == null && remoteLastModified == null) {
+            logger.info("remote dic header not ETag or Last-Modified");
+            connection.disconnect();
+            failed.increment();
+            return false;
+        }
+        // 不支持条件请求的服务器仍会返回200，校验值没变就不再读取响应体
+        if (Objects.equals(etag, remoteEtag) && Objects.equals(lastModified, remoteLastModified)) {
+            connection.disconnect();
+            notModified.increment();
+            return false;
+        }
+
+        InputStream body = exchange.count(connection.getInputStream());
+        try {
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                body = new GZIPInputStream(body, 64 * 1024);
+            }
+            consumer.accept(body);
+        } finally {
+            body.close();
+        }
+        // 处理成功后才记录校验值，失败时下次会重新拉取
+        etag = remoteEtag;
+        lastModified = remoteLastModified;
+        changed.increment();
+        return true;
+    }
+
+
+    /**
+     * 普通GET请求，用于每次地址都不同的增量请求；200以外（如204/304）视为没有变化
+     */
+    public static boolean get(String remoteUrl, int connectTimeout, int readTimeout, BodyConsumer consumer)
+            throws IOException {
+        Object event = JiebaEvents.beginRemoteFetch();
+        Exchange exchange = new Exchange();
+        try {
+            return getOnce(remoteUrl, connectTimeout, readTimeout, consumer, exchange);
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            throw e;
+        } finally {
+            JiebaEvents.endRemoteFetch(event, remoteUrl, exchange.status, exchange.bytes);
+        }
+    }
+
+
+    private static boolean getOnce(String remoteUrl, int connectTimeout, int readTimeout, BodyConsumer consumer,
+                                   Exchange exchange) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(remoteUrl).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        int code = connection.getResponseCode();
+        exchange.status = code;
+        if (code != HttpURLConnection.HTTP_OK) {
+            release(connection);
+            (code >= HttpURLConnection.HTTP_BAD_REQUEST ? failed : notModified).increment();
+            return false;
+        }
+        InputStream body = exchange.count(connection.getInputStream());
+        try {
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                body = new GZIPInputStream(body, 64 * 1024);
+            }
+            consumer.accept(body);
+        } finally {
+            body.close();
+        }
+        changed.increment();
+        return true;
+    }
+
+
+    /**
+     * 一次请求的状态码（异常时为-1）和读取的响应体字节数，记入JFR事件
+     */
+    private static final class Exchange {
+        int status = -1;
+        long bytes;
+
+        InputStream count(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        bytes++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buf, int off, int len) throws IOException {
+                    int n = super.read(buf, off, len);
+                    if (n > 0) {
+                        bytes += n;
+                    }
+                    return n;
+                }
+            };
+        }
+    }
+
+
+    /**
+     * 依次为有变化、没有变化、失败的请求数
+     */
+    public static long[] stats() {
+        return new long[]{changed.sum(), notModified.sum(), failed.sum()};
+    }
+
+
+    /**
+     * 读完并关闭响应流，底层连接可以留给下一次轮询复用
+     */
+    private static void release(HttpURLConnection connection) {
+        InputStream stream = null;
+        try {
+            stream = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (stream != null) {
+                byte[] buf = new byte[4096];
+                while (stream.read(buf) != -1) {
+                    // 丢弃
+                }
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+}
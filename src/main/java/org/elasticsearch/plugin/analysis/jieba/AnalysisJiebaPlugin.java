@@ -1,41 +1,219 @@
 package org.elasticsearch.plugin.analysis.jieba;
 
+import com.huaban.analysis.jieba.WordDictionary;
 import org.apache.lucene.analysis.Analyzer;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
 import org.elasticsearch.index.analysis.JiebaAnalyzerProvider;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.JiebaDict;
+import org.elasticsearch.index.analysis.JiebaIndexDictionaries;
+import org.elasticsearch.index.analysis.JiebaQueryCache;
+import org.elasticsearch.index.analysis.JiebaSlowLog;
+import org.elasticsearch.index.analysis.JiebaSubwordsTokenFilterFactory;
 import org.elasticsearch.index.analysis.JiebaTokenizerFactory;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
+import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.indices.breaker.BreakerSettings;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaDictPushAction;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaDictReloadAction;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaDictVersionAction;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaDictWordsAction;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaSegmentAction;
+import org.elasticsearch.plugin.analysis.jieba.action.JiebaStatsAction;
+import org.elasticsearch.plugin.analysis.jieba.action.RestJiebaDictAction;
+import org.elasticsearch.plugin.analysis.jieba.action.RestJiebaDictReloadAction;
+import org.elasticsearch.plugin.analysis.jieba.action.RestJiebaDictWordsAction;
+import org.elasticsearch.plugin.analysis.jieba.action.RestJiebaSegmentAction;
+import org.elasticsearch.plugin.analysis.jieba.action.RestJiebaStatsAction;
+import org.elasticsearch.plugin.analysis.jieba.action.TransportJiebaDictPushAction;
+import org.elasticsearch.plugin.analysis.jieba.action.TransportJiebaDictReloadAction;
+import org.elasticsearch.plugin.analysis.jieba.action.TransportJiebaDictVersionAction;
+import org.elasticsearch.plugin.analysis.jieba.action.TransportJiebaDictWordsAction;
+import org.elasticsearch.plugin.analysis.jieba.action.TransportJiebaSegmentAction;
+import org.elasticsearch.plugin.analysis.jieba.action.TransportJiebaStatsAction;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
+import org.elasticsearch.plugins.CircuitBreakerPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Created by zhangcheng on 2017/1/17.
  */
-public class AnalysisJiebaPlugin extends Plugin implements AnalysisPlugin {
+public class AnalysisJiebaPlugin extends Plugin implements AnalysisPlugin, ActionPlugin, CircuitBreakerPlugin {
 
   public static String PLUGIN_NAME = "analysis-jieba";
 
+  public static final String BREAKER_NAME = "jieba_dictionary";
+
+  // 词典（主词典、用户词典、远程词典、索引专用词典）占用内存的上限，超出时拒绝加载新的词典
+  public static final Setting<ByteSizeValue> BREAKER_LIMIT_SETTING =
+      Setting.memorySizeSetting("jieba.breaker.dictionary.limit", "10%", Setting.Property.NodeScope);
+
+  // 节点级查询分词缓存的上限，0表示不缓存；分词器/分析器配置了query_cache时才使用
+  public static final Setting<ByteSizeValue> QUERY_CACHE_SIZE_SETTING =
+      Setting.memorySizeSetting("jieba.query_cache.size", "1%", Setting.Property.NodeScope);
+
+  // 只缓存不超过这个长度（字符数）的文本
+  public static final Setting<Integer> QUERY_CACHE_MAX_TEXT_LENGTH_SETTING =
+      Setting.intSetting("jieba.query_cache.max_text_length", 64, 0, Setting.Property.NodeScope);
+
+  // 批量分词（_jieba/segment）专用的线程池，不占用search和analyze线程池
+  public static final String SEGMENT_THREAD_POOL_NAME = "jieba_segment";
+
+  // 一次批量分词请求最多的文本数
+  public static final Setting<Integer> SEGMENT_MAX_BATCH_SIZE_SETTING =
+      Setting.intSetting("jieba.segment.max_batch_size", 10000, 1, Setting.Property.NodeScope);
+
+  // 分词耗时超过阈值的文档按阶段输出到日志，-1表示关闭
+  public static final Setting<TimeValue> SLOWLOG_THRESHOLD_SETTING =
+      Setting.timeSetting("jieba.slowlog.threshold", TimeValue.MINUS_ONE, TimeValue.MINUS_ONE,
+          Setting.Property.Dynamic, Setting.Property.NodeScope);
+
+  @Override
+  public List<Setting<?>> getSettings() {
+    return Arrays.asList(BREAKER_LIMIT_SETTING, QUERY_CACHE_SIZE_SETTING, QUERY_CACHE_MAX_TEXT_LENGTH_SETTING,
+        SEGMENT_MAX_BATCH_SIZE_SETTING, SLOWLOG_THRESHOLD_SETTING);
+  }
+
+  @Override
+  public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+    // 每个请求最多拆成线程数那么多组，队列按几十个并发请求估算
+    return Collections.singletonList(new FixedExecutorBuilder(settings, SEGMENT_THREAD_POOL_NAME,
+        EsExecutors.allocatedProcessors(settings), 1000, "thread_pool." + SEGMENT_THREAD_POOL_NAME));
+  }
+
+  @Override
+  public BreakerSettings getCircuitBreaker(Settings settings) {
+    return new BreakerSettings(BREAKER_NAME, BREAKER_LIMIT_SETTING.get(settings).getBytes(), 1.0,
+        CircuitBreaker.Type.MEMORY, CircuitBreaker.Durability.PERMANENT);
+  }
+
+  @Override
+  public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    WordDictionary.setMemoryAccounting(new BreakerMemoryAccounting(circuitBreaker));
+  }
+
+  @Override
+  public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+                                             ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+                                             NamedXContentRegistry xContentRegistry, Environment environment,
+                                             NodeEnvironment nodeEnvironment, NamedWriteableRegistry namedWriteableRegistry,
+                                             IndexNameExpressionResolver indexNameExpressionResolver,
+                                             Supplier<RepositoriesService> repositoriesServiceSupplier) {
+    JiebaDict.bindCluster(environment, clusterService, client);
+    JiebaQueryCache.configure(QUERY_CACHE_SIZE_SETTING.get(environment.settings()).getBytes(),
+        QUERY_CACHE_MAX_TEXT_LENGTH_SETTING.get(environment.settings()));
+    JiebaSlowLog.configure(SLOWLOG_THRESHOLD_SETTING.get(environment.settings()));
+    clusterService.getClusterSettings().addSettingsUpdateConsumer(SLOWLOG_THRESHOLD_SETTING, JiebaSlowLog::configure);
+    // 不等第一个索引用到分词器，节点启动时就在后台加载词典并预热
+    JiebaDict.warmUp(environment);
+    return Collections.emptyList();
+  }
+
+  @Override
+  public void onIndexModule(IndexModule indexModule) {
+    // 索引从本节点移除后释放它使用的索引专用词典
+    indexModule.addIndexEventListener(new IndexEventListener() {
+      @Override
+      public void afterIndexRemoved(Index index, IndexSettings indexSettings, IndexRemovalReason reason) {
+        JiebaIndexDictionaries.release(index);
+      }
+    });
+  }
+
+  @Override
+  public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+    return Arrays.asList(
+        new ActionHandler<>(JiebaDictPushAction.INSTANCE, TransportJiebaDictPushAction.class),
+        new ActionHandler<>(JiebaDictVersionAction.INSTANCE, TransportJiebaDictVersionAction.class),
+        new ActionHandler<>(JiebaDictWordsAction.INSTANCE, TransportJiebaDictWordsAction.class),
+        new ActionHandler<>(JiebaDictReloadAction.INSTANCE, TransportJiebaDictReloadAction.class),
+        new ActionHandler<>(JiebaStatsAction.INSTANCE, TransportJiebaStatsAction.class),
+        new ActionHandler<>(JiebaSegmentAction.INSTANCE, TransportJiebaSegmentAction.class));
+  }
+
+  @Override
+  public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
+                                           ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings,
+                                           SettingsFilter settingsFilter,
+                                           IndexNameExpressionResolver indexNameExpressionResolver,
+                                           Supplier<DiscoveryNodes> nodesInCluster) {
+    return Arrays.asList(new RestJiebaDictAction(), new RestJiebaDictWordsAction(), new RestJiebaDictReloadAction(),
+        new RestJiebaStatsAction(), new RestJiebaSegmentAction());
+  }
+
   @Override
   public Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> getTokenizers() {
     Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> extra = new HashMap<>();
 
     extra.put("jieba_search", JiebaTokenizerFactory::getJiebaSearchTokenizerFactory);
     extra.put("jieba_index", JiebaTokenizerFactory::getJiebaIndexTokenizerFactory);
+    extra.put("jieba_graph", JiebaTokenizerFactory::getJiebaGraphTokenizerFactory);
 
     return extra;
   }
 
+  @Override
+  public Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
+    return Collections.singletonMap("jieba_subwords", JiebaSubwordsTokenFilterFactory::getJiebaSubwordsTokenFilterFactory);
+  }
+
   @Override
   public Map<String, AnalysisModule.AnalysisProvider<AnalyzerProvider<? extends Analyzer>>> getAnalyzers() {
     Map<String, AnalysisModule.AnalysisProvider<AnalyzerProvider<? extends Analyzer>>> extra = new HashMap<>();
 
     extra.put("jieba_search", JiebaAnalyzerProvider::getJiebaSearchAnalyzerProvider);
     extra.put("jieba_index", JiebaAnalyzerProvider::getJiebaIndexAnalyzerProvider);
+    extra.put("jieba_graph", JiebaAnalyzerProvider::getJiebaGraphAnalyzerProvider);
 
     return extra;
   }
+
+  @Override
+  public void close() throws IOException {
+    JiebaDict.close();
+    JiebaQueryCache.close();
+    JiebaSlowLog.configure(TimeValue.MINUS_ONE);
+  }
 }
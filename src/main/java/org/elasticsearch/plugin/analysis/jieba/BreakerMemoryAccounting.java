@@ -0,0 +1,25 @@
+package org.elasticsearch.plugin.analysis.jieba;
+
+import com.huaban.analysis.jieba.DictMemoryAccounting;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+
+/**
+ * 把词典的内存记账交给ES的断路器，超出限制时抛出CircuitBreakingException拒绝这次加载
+ */
+public class BreakerMemoryAccounting implements DictMemoryAccounting {
+  private final CircuitBreaker breaker;
+
+  public BreakerMemoryAccounting(CircuitBreaker breaker) {
+    this.breaker = breaker;
+  }
+
+  @Override
+  public void reserve(long bytes, String source) {
+    breaker.addEstimateBytesAndMaybeBreak(bytes, "jieba dictionary [" + source + "]");
+  }
+
+  @Override
+  public void adjust(long bytes) {
+    breaker.addWithoutBreaking(bytes);
+  }
+}
@@ -0,0 +1,30 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+public class JiebaDictNodeRequest extends BaseNodeRequest {
+    private final JiebaDictNodesRequest request;
+
+    public JiebaDictNodeRequest(JiebaDictNodesRequest request) {
+        this.request = request;
+    }
+
+    public JiebaDictNodeRequest(StreamInput in) throws IOException {
+        super(in);
+        request = new JiebaDictNodesRequest(in);
+    }
+
+    public JiebaDictNodesRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        request.writeTo(out);
+    }
+}
@@ -0,0 +1,126 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.DictionaryStats;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.analysis.JiebaDict;
+
+import java.io.IOException;
+
+/**
+ * 节点当前使用的词典版本、词数、通过REST增删的词数和最近一次加载
+ */
+public class JiebaDictNodeResponse extends BaseNodeResponse implements ToXContentFragment {
+    private final long remoteVersion;
+    private final String remoteSha256;
+    private final long dictVersion;
+    private final long deltaVersion;
+    private final boolean applied;
+    private final long words;
+    private final int editedWords;
+    private final int removedWords;
+    private final String lastLoadSource;
+    private final long lastLoadMillis;
+
+    public JiebaDictNodeResponse(DiscoveryNode node, long remoteVersion, String remoteSha256, long dictVersion,
+                                 long deltaVersion, boolean applied, long words, int editedWords, int removedWords,
+                                 String lastLoadSource, long lastLoadMillis) {
+        super(node);
+        this.remoteVersion = remoteVersion;
+        this.remoteSha256 = remoteSha256;
+        this.dictVersion = dictVersion;
+        this.deltaVersion = deltaVersion;
+        this.applied = applied;
+        this.words = words;
+        this.editedWords = editedWords;
+        this.removedWords = removedWords;
+        this.lastLoadSource = lastLoadSource;
+        this.lastLoadMillis = lastLoadMillis;
+    }
+
+    /**
+     * 本节点当前的词典状态
+     *
+     * @param applied 本次请求是否修改了本节点的词典
+     */
+    static JiebaDictNodeResponse local(DiscoveryNode node, boolean applied) {
+        DictionaryStats stats = JiebaDict.stats();
+        return new JiebaDictNodeResponse(node, JiebaDict.remoteVersion(), JiebaDict.remoteSha256(),
+                JiebaDict.dictVersion(), JiebaDict.deltaVersion(), applied, stats == null ? 0 : stats.totalWords(),
+                JiebaDict.editedWords().size(), JiebaDict.removedWords().size(), stats == null ? null : stats.lastLoadSource, stats == null ? 0 : stats.lastLoadMillis);
+    }
+
+    public JiebaDictNodeResponse(StreamInput in) throws IOException {
+        super(in);
+        remoteVersion = in.readVLong();
+        remoteSha256 = in.readOptionalString();
+        dictVersion = in.readVLong();
+        deltaVersion = in.readVLong();
+        applied = in.readBoolean();
+        words = in.readVLong();
+        editedWords = in.readVInt();
+        removedWords = in.readVInt();
+        lastLoadSource = in.readOptionalString();
+        lastLoadMillis = in.readVLong();
+    }
+
+    public long getRemoteVersion() {
+        return remoteVersion;
+    }
+
+    public String getRemoteSha256() {
+        return remoteSha256;
+    }
+
+    public long getDictVersion() {
+        return dictVersion;
+    }
+
+    public long getDeltaVersion() {
+        return deltaVersion;
+    }
+
+    /**
+     * 本次请求是否修改了该节点的词典（替换远程词典、增删词）
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(remoteVersion);
+        out.writeOptionalString(remoteSha256);
+        out.writeVLong(dictVersion);
+        out.writeVLong(deltaVersion);
+        out.writeBoolean(applied);
+        out.writeVLong(words);
+        out.writeVInt(editedWords);
+        out.writeVInt(removedWords);
+        out.writeOptionalString(lastLoadSource);
+        out.writeVLong(lastLoadMillis);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(getNode().getId());
+        builder.field("name", getNode().getName());
+        builder.field("remote_version", remoteVersion);
+        builder.field("remote_sha256", remoteSha256);
+        builder.field("dict_version", dictVersion);
+        builder.field("delta_version", deltaVersion);
+        builder.field("applied", applied);
+        builder.field("words", words);
+        builder.field("edited_words", editedWords);
+        builder.field("removed_words", removedWords);
+        builder.field("last_load_source", lastLoadSource);
+        builder.field("last_load_time_in_millis", lastLoadMillis);
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,56 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * 远程词典的分发请求：content为gzip压缩的词典内容，sha256为content的摘要；
+ * 只查询各节点词典版本时content为空
+ */
+public class JiebaDictNodesRequest extends BaseNodesRequest<JiebaDictNodesRequest> {
+    private long version;
+    private String sha256;
+    private BytesReference content;
+
+    public JiebaDictNodesRequest(String... nodesIds) {
+        super(nodesIds);
+    }
+
+    public JiebaDictNodesRequest(long version, String sha256, BytesReference content, String... nodesIds) {
+        super(nodesIds);
+        this.version = version;
+        this.sha256 = sha256;
+        this.content = content;
+    }
+
+    public JiebaDictNodesRequest(StreamInput in) throws IOException {
+        super(in);
+        version = in.readVLong();
+        sha256 = in.readOptionalString();
+        content = in.readOptionalBytesReference();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public BytesReference getContent() {
+        return content;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(version);
+        out.writeOptionalString(sha256);
+        out.writeOptionalBytesReference(content);
+    }
+}
@@ -0,0 +1,44 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+public class JiebaDictNodesResponse extends BaseNodesResponse<JiebaDictNodeResponse> implements ToXContentFragment {
+
+    public JiebaDictNodesResponse(ClusterName clusterName, List<JiebaDictNodeResponse> nodes,
+                                  List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    public JiebaDictNodesResponse(StreamInput in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected List<JiebaDictNodeResponse> readNodesFrom(StreamInput in) throws IOException {
+        return in.readList(JiebaDictNodeResponse::new);
+    }
+
+    @Override
+    protected void writeNodesTo(StreamOutput out, List<JiebaDictNodeResponse> nodes) throws IOException {
+        out.writeList(nodes);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject("nodes");
+        for (JiebaDictNodeResponse node : getNodes()) {
+            node.toXContent(builder, params);
+        }
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,98 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.hash.MessageDigests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只有主节点拉取远程词典，然后把压缩后的词典和摘要推送到所有节点（包括自己），
+ * 各节点校验摘要后整体替换远程词典层；新加入的节点会收到最近一次推送的词典
+ */
+public class JiebaDictPublisher implements ClusterStateListener {
+    private static final Logger logger = LogManager.getLogger(JiebaDictPublisher.class);
+
+    private final ClusterService clusterService;
+    private final Client client;
+    private volatile JiebaDictNodesRequest lastPush;
+    // 最近一次推送失败的节点，下次轮询时重试
+    private volatile String[] failedNodes = new String[0];
+
+    public JiebaDictPublisher(ClusterService clusterService, Client client) {
+        this.clusterService = clusterService;
+        this.client = client;
+    }
+
+    public boolean isLocalNodeElectedMaster() {
+        return clusterService.state().nodes().isLocalNodeElectedMaster();
+    }
+
+    /**
+     * @param content gzip压缩的词典内容
+     * @param version 新版本号，必须大于各节点当前的版本
+     */
+    public void publish(byte[] content, long version) {
+        String sha256 = MessageDigests.toHexString(MessageDigests.sha256().digest(content));
+        JiebaDictNodesRequest request = new JiebaDictNodesRequest(version, sha256, new BytesArray(content));
+        lastPush = request;
+        push(request);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        JiebaDictNodesRequest last = lastPush;
+        if (last == null || !event.localNodeMaster() || !event.nodesAdded()) {
+            return;
+        }
+        List<DiscoveryNode> added = event.nodesDelta().addedNodes();
+        String[] nodesIds = new String[added.size()];
+        for (int i = 0; i < nodesIds.length; i++) {
+            nodesIds[i] = added.get(i).getId();
+        }
+        push(new JiebaDictNodesRequest(last.getVersion(), last.getSha256(), last.getContent(), nodesIds));
+    }
+
+    /**
+     * 把最近一次推送的词典重新推送给上次失败的节点
+     */
+    public void retryFailed() {
+        JiebaDictNodesRequest last = lastPush;
+        String[] nodesIds = failedNodes;
+        if (last == null || nodesIds.length == 0 || !isLocalNodeElectedMaster()) {
+            return;
+        }
+        failedNodes = new String[0];
+        push(new JiebaDictNodesRequest(last.getVersion(), last.getSha256(), last.getContent(), nodesIds));
+    }
+
+    private void push(JiebaDictNodesRequest request) {
+        client.execute(JiebaDictPushAction.INSTANCE, request, ActionListener.wrap(response -> {
+            int applied = 0;
+            for (JiebaDictNodeResponse node : response.getNodes()) {
+                if (node.isApplied()) {
+                    applied++;
+                }
+            }
+            logger.info("remote dict {} ({}) pushed, applied on {} of {} nodes, {} failures", request.getVersion(),
+                    request.getSha256(), applied, response.getNodes().size(), response.failures().size());
+            List<String> failed = new ArrayList<>();
+            for (FailedNodeException failure : response.failures()) {
+                logger.warn("push remote dict failed", failure);
+                failed.add(failure.nodeId());
+            }
+            if (!failed.isEmpty()) {
+                failedNodes = failed.toArray(new String[0]);
+            }
+        }, e -> logger.error("push remote dict err", e)));
+    }
+}
@@ -0,0 +1,15 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionType;
+
+/**
+ * 由主节点把远程词典推送到所有节点
+ */
+public class JiebaDictPushAction extends ActionType<JiebaDictNodesResponse> {
+    public static final JiebaDictPushAction INSTANCE = new JiebaDictPushAction();
+    public static final String NAME = "cluster:admin/jieba/dict/push";
+
+    private JiebaDictPushAction() {
+        super(NAME, JiebaDictNodesResponse::new);
+    }
+}
@@ -0,0 +1,15 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionType;
+
+/**
+ * 让所有节点立即重新加载词典，不等待定时任务
+ */
+public class JiebaDictReloadAction extends ActionType<JiebaDictNodesResponse> {
+    public static final JiebaDictReloadAction INSTANCE = new JiebaDictReloadAction();
+    public static final String NAME = "cluster:admin/jieba/dict/reload";
+
+    private JiebaDictReloadAction() {
+        super(NAME, JiebaDictNodesResponse::new);
+    }
+}
@@ -0,0 +1,15 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionType;
+
+/**
+ * 查询各节点使用的词典版本
+ */
+public class JiebaDictVersionAction extends ActionType<JiebaDictNodesResponse> {
+    public static final JiebaDictVersionAction INSTANCE = new JiebaDictVersionAction();
+    public static final String NAME = "cluster:monitor/jieba/dict/version";
+
+    private JiebaDictVersionAction() {
+        super(NAME, JiebaDictNodesResponse::new);
+    }
+}
@@ -0,0 +1,15 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionType;
+
+/**
+ * 在所有节点上直接增删词
+ */
+public class JiebaDictWordsAction extends ActionType<JiebaDictNodesResponse> {
+    public static final JiebaDictWordsAction INSTANCE = new JiebaDictWordsAction();
+    public static final String NAME = "cluster:admin/jieba/dict/words";
+
+    private JiebaDictWordsAction() {
+        super(NAME, JiebaDictNodesResponse::new);
+    }
+}
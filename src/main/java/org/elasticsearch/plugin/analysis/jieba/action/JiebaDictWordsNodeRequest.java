@@ -0,0 +1,30 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+public class JiebaDictWordsNodeRequest extends BaseNodeRequest {
+    private final JiebaDictWordsNodesRequest request;
+
+    public JiebaDictWordsNodeRequest(JiebaDictWordsNodesRequest request) {
+        this.request = request;
+    }
+
+    public JiebaDictWordsNodeRequest(StreamInput in) throws IOException {
+        super(in);
+        request = new JiebaDictWordsNodesRequest(in);
+    }
+
+    public JiebaDictWordsNodesRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        request.writeTo(out);
+    }
+}
@@ -0,0 +1,46 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增删词的请求：add为新增或修改的词和词频，remove为删除的词
+ */
+public class JiebaDictWordsNodesRequest extends BaseNodesRequest<JiebaDictWordsNodesRequest> {
+    private final Map<String, Double> add;
+    private final List<String> remove;
+
+    public JiebaDictWordsNodesRequest(Map<String, Double> add, List<String> remove, String... nodesIds) {
+        super(nodesIds);
+        this.add = add;
+        this.remove = remove;
+    }
+
+    public JiebaDictWordsNodesRequest(StreamInput in) throws IOException {
+        super(in);
+        add = in.readMap(StreamInput::readString, StreamInput::readDouble);
+        remove = in.readStringList();
+    }
+
+    public Map<String, Double> getAdd() {
+        return add;
+    }
+
+    public List<String> getRemove() {
+        return remove;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeMap(add instanceof LinkedHashMap ? add : new LinkedHashMap<>(add), StreamOutput::writeString,
+                StreamOutput::writeDouble);
+        out.writeStringCollection(remove);
+    }
+}
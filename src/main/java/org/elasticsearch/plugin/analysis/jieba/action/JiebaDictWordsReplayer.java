@@ -0,0 +1,79 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.index.analysis.JiebaDict;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 通过_jieba/dict/words增删的词只保存在各节点的内存中。每个节点都记录了累计的修改，
+ * 主节点把自己的记录补发给新加入（包括重启后重新加入）的节点，失败的节点在下一次集群状态变化时重试
+ */
+public class JiebaDictWordsReplayer implements ClusterStateListener {
+    private static final Logger logger = LogManager.getLogger(JiebaDictWordsReplayer.class);
+
+    private final Client client;
+    // 上次补发失败的节点
+    private final Set<String> failedNodes = new LinkedHashSet<>();
+
+    public JiebaDictWordsReplayer(Client client) {
+        this.client = client;
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (!event.localNodeMaster()) {
+            return;
+        }
+        List<String> nodesIds = new ArrayList<>();
+        synchronized (failedNodes) {
+            for (String nodeId : failedNodes) {
+                if (event.state().nodes().nodeExists(nodeId)) {
+                    nodesIds.add(nodeId);
+                }
+            }
+            failedNodes.clear();
+        }
+        if (event.nodesAdded()) {
+            for (DiscoveryNode node : event.nodesDelta().addedNodes()) {
+                nodesIds.add(node.getId());
+            }
+        }
+        if (nodesIds.isEmpty()) {
+            return;
+        }
+        Map<String, Double> add = JiebaDict.editedWords();
+        List<String> remove = JiebaDict.removedWords();
+        if (add.isEmpty() && remove.isEmpty()) {
+            return;
+        }
+        JiebaDictWordsNodesRequest request = new JiebaDictWordsNodesRequest(add, remove,
+                nodesIds.toArray(new String[0]));
+        client.execute(JiebaDictWordsAction.INSTANCE, request, ActionListener.wrap(response -> {
+            logger.info("replayed {} added and {} removed words to {} nodes, {} failures", add.size(), remove.size(),
+                    response.getNodes().size(), response.failures().size());
+            for (FailedNodeException failure : response.failures()) {
+                logger.warn("replay words failed", failure);
+                synchronized (failedNodes) {
+                    failedNodes.add(failure.nodeId());
+                }
+            }
+        }, e -> {
+            logger.error("replay words err", e);
+            synchronized (failedNodes) {
+                failedNodes.addAll(nodesIds);
+            }
+        }));
+    }
+}
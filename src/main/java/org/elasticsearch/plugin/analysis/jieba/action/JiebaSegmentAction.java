@@ -0,0 +1,15 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionType;
+
+/**
+ * 批量分词，不经过分析器，直接用JiebaSegmenter在本节点的jieba_segment线程池上并行切分
+ */
+public class JiebaSegmentAction extends ActionType<JiebaSegmentResponse> {
+    public static final JiebaSegmentAction INSTANCE = new JiebaSegmentAction();
+    public static final String NAME = "indices:data/read/jieba/segment";
+
+    private JiebaSegmentAction() {
+        super(NAME, JiebaSegmentResponse::new);
+    }
+}
@@ -0,0 +1,95 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * 批量分词的请求：一批文本、切分模式、GRAPH模式的路径数和返回格式
+ */
+public class JiebaSegmentRequest extends ActionRequest {
+
+    /**
+     * 返回词本身，或者每个词的起止位置（[起始, 结束, 起始, 结束, ...]）
+     */
+    public enum Format {
+        TOKENS,
+        OFFSETS;
+
+        public static Format fromString(String format) {
+            return valueOf(format.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final List<String> texts;
+    private final SegMode mode;
+    private final int kBest;
+    private final Format format;
+
+    public JiebaSegmentRequest(List<String> texts, SegMode mode, int kBest, Format format) {
+        this.texts = texts;
+        this.mode = mode;
+        this.kBest = kBest;
+        this.format = format;
+    }
+
+    public JiebaSegmentRequest(List<String> texts) {
+        this(texts, SegMode.SEARCH, JiebaSegmenter.DEFAULT_K_BEST, Format.TOKENS);
+    }
+
+    public JiebaSegmentRequest(StreamInput in) throws IOException {
+        super(in);
+        texts = in.readStringList();
+        mode = in.readEnum(SegMode.class);
+        kBest = in.readVInt();
+        format = in.readEnum(Format.class);
+    }
+
+    public List<String> getTexts() {
+        return texts;
+    }
+
+    public SegMode getMode() {
+        return mode;
+    }
+
+    public int getKBest() {
+        return kBest;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (texts == null || texts.isEmpty()) {
+            validationException = addValidationError("[texts] must not be empty", validationException);
+        } else if (texts.contains(null)) {
+            validationException = addValidationError("[texts] must not contain null", validationException);
+        }
+        if (kBest < 1) {
+            validationException = addValidationError("[k_best] must be at least 1", validationException);
+        }
+        return validationException;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeStringCollection(texts);
+        out.writeEnum(mode);
+        out.writeVInt(kBest);
+        out.writeEnum(format);
+    }
+}
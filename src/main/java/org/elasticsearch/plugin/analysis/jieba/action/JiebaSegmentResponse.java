@@ -0,0 +1,99 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * 批量分词的结果，和请求中的文本一一对应；每个文本只是一个词的数组或者位置的数组，不为每个词生成对象
+ */
+public class JiebaSegmentResponse extends ActionResponse implements ToXContentObject {
+    private final long tookMillis;
+    // 两者只有一个不为null，取决于请求的格式
+    private final String[][] tokens;
+    private final int[][] offsets;
+
+    public JiebaSegmentResponse(long tookMillis, String[][] tokens, int[][] offsets) {
+        this.tookMillis = tookMillis;
+        this.tokens = tokens;
+        this.offsets = offsets;
+    }
+
+    public JiebaSegmentResponse(StreamInput in) throws IOException {
+        super(in);
+        tookMillis = in.readVLong();
+        if (in.readBoolean()) {
+            tokens = new String[in.readVInt()][];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = in.readStringArray();
+            }
+            offsets = null;
+        } else {
+            offsets = new int[in.readVInt()][];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readVIntArray();
+            }
+            tokens = null;
+        }
+    }
+
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    public String[][] getTokens() {
+        return tokens;
+    }
+
+    public int[][] getOffsets() {
+        return offsets;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(tookMillis);
+        out.writeBoolean(tokens != null);
+        if (tokens != null) {
+            out.writeVInt(tokens.length);
+            for (String[] result : tokens) {
+                out.writeStringArray(result);
+            }
+        } else {
+            out.writeVInt(offsets.length);
+            for (int[] result : offsets) {
+                out.writeVIntArray(result);
+            }
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field("took", tookMillis);
+        builder.startArray("results");
+        if (tokens != null) {
+            for (String[] result : tokens) {
+                builder.startArray();
+                for (String token : result) {
+                    builder.value(token);
+                }
+                builder.endArray();
+            }
+        } else {
+            for (int[] result : offsets) {
+                builder.startArray();
+                for (int offset : result) {
+                    builder.value(offset);
+                }
+                builder.endArray();
+            }
+        }
+        builder.endArray();
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,15 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.ActionType;
+
+/**
+ * 各节点的词典统计
+ */
+public class JiebaStatsAction extends ActionType<JiebaStatsNodesResponse> {
+    public static final JiebaStatsAction INSTANCE = new JiebaStatsAction();
+    public static final String NAME = "cluster:monitor/jieba/stats";
+
+    private JiebaStatsAction() {
+        super(NAME, JiebaStatsNodesResponse::new);
+    }
+}
@@ -0,0 +1,30 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+public class JiebaStatsNodeRequest extends BaseNodeRequest {
+    private final JiebaStatsNodesRequest request;
+
+    public JiebaStatsNodeRequest(JiebaStatsNodesRequest request) {
+        this.request = request;
+    }
+
+    public JiebaStatsNodeRequest(StreamInput in) throws IOException {
+        super(in);
+        request = new JiebaStatsNodesRequest(in);
+    }
+
+    public JiebaStatsNodesRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        request.writeTo(out);
+    }
+}
@@ -0,0 +1,286 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.DictionaryStats;
+import com.huaban.analysis.jieba.SegmentationStats;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 节点的词典统计：各来源的词数、估算的内存占用、加载耗时，断路器的使用情况，以及分词的计数和耗时分布
+ */
+public class JiebaStatsNodeResponse extends BaseNodeResponse implements ToXContentFragment {
+    private final boolean initialized;
+    private final boolean ready;
+    private final long warmupMillis;
+    private final long version;
+    private final long deltaVersion;
+    private final List<String> sourceNames = new ArrayList<>();
+    private final List<long[]> sourceValues = new ArrayList<>();
+    private final long finalSegBytes;
+    private final long accountedBytes;
+    private final String lastLoadSource;
+    private final long lastLoadMillis;
+    private final long loads;
+    private final long loadFailures;
+    private final int indexDictionaries;
+    private final long indexDictionariesBytes;
+    private final long breakerLimit;
+    private final long breakerUsed;
+    private final long breakerTripped;
+    // 查询分词缓存：条目数、字节数、命中、未命中、淘汰，没有启用时为null
+    private final long[] queryCache;
+    private final SegmentationStats segmentation;
+    // 远程词典请求：有变化、没有变化、失败
+    private final long[] remoteFetch;
+
+    public JiebaStatsNodeResponse(DiscoveryNode node, DictionaryStats stats, boolean ready, long warmupMillis,
+                                  int indexDictionaries, long indexDictionariesBytes, CircuitBreaker breaker,
+                                  long[] queryCache, SegmentationStats segmentation, long[] remoteFetch) {
+        super(node);
+        this.initialized = stats != null;
+        this.ready = ready;
+        this.warmupMillis = warmupMillis;
+        this.version = initialized ? stats.version : -1;
+        this.deltaVersion = initialized ? stats.deltaVersion : -1;
+        if (initialized) {
+            for (DictionaryStats.Source source : stats.sources) {
+                sourceNames.add(source.name);
+                sourceValues.add(new long[]{source.words, source.ramBytes, source.loadMillis});
+            }
+        }
+        this.finalSegBytes = initialized ? stats.finalSegRamBytes : 0;
+        this.accountedBytes = initialized ? stats.accountedBytes : 0;
+        this.lastLoadSource = initialized ? stats.lastLoadSource : null;
+        this.lastLoadMillis = initialized ? stats.lastLoadMillis : 0;
+        this.loads = initialized ? stats.loads : 0;
+        this.loadFailures = initialized ? stats.loadFailures : 0;
+        this.indexDictionaries = indexDictionaries;
+        this.indexDictionariesBytes = indexDictionariesBytes;
+        this.breakerLimit = breaker == null ? -1 : breaker.getLimit();
+        this.breakerUsed = breaker == null ? 0 : breaker.getUsed();
+        this.breakerTripped = breaker == null ? 0 : breaker.getTrippedCount();
+        this.queryCache = queryCache;
+        this.segmentation = segmentation;
+        this.remoteFetch = remoteFetch;
+    }
+
+    public JiebaStatsNodeResponse(StreamInput in) throws IOException {
+        super(in);
+        initialized = in.readBoolean();
+        ready = in.readBoolean();
+        warmupMillis = in.readLong();
+        version = in.readLong();
+        deltaVersion = in.readLong();
+        int sources = in.readVInt();
+        for (int i = 0; i < sources; i++) {
+            sourceNames.add(in.readString());
+            sourceValues.add(new long[]{in.readVLong(), in.readVLong(), in.readVLong()});
+        }
+        finalSegBytes = in.readVLong();
+        accountedBytes = in.readLong();
+        lastLoadSource = in.readOptionalString();
+        lastLoadMillis = in.readVLong();
+        loads = in.readVLong();
+        loadFailures = in.readVLong();
+        indexDictionaries = in.readVInt();
+        indexDictionariesBytes = in.readVLong();
+        breakerLimit = in.readLong();
+        breakerUsed = in.readLong();
+        breakerTripped = in.readVLong();
+        queryCache = in.readBoolean() ? in.readVLongArray() : null;
+        segmentation = readSegmentation(in);
+        remoteFetch = in.readVLongArray();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(initialized);
+        out.writeBoolean(ready);
+        out.writeLong(warmupMillis);
+        out.writeLong(version);
+        out.writeLong(deltaVersion);
+        out.writeVInt(sourceNames.size());
+        for (int i = 0; i < sourceNames.size(); i++) {
+            out.writeString(sourceNames.get(i));
+            long[] values = sourceValues.get(i);
+            out.writeVLong(values[0]);
+            out.writeVLong(values[1]);
+            out.writeVLong(values[2]);
+        }
+        out.writeVLong(finalSegBytes);
+        out.writeLong(accountedBytes);
+        out.writeOptionalString(lastLoadSource);
+        out.writeVLong(lastLoadMillis);
+        out.writeVLong(loads);
+        out.writeVLong(loadFailures);
+        out.writeVInt(indexDictionaries);
+        out.writeVLong(indexDictionariesBytes);
+        out.writeLong(breakerLimit);
+        out.writeLong(breakerUsed);
+        out.writeVLong(breakerTripped);
+        out.writeBoolean(queryCache != null);
+        if (queryCache != null) {
+            out.writeVLongArray(queryCache);
+        }
+        writeSegmentation(out, segmentation);
+        out.writeVLongArray(remoteFetch);
+    }
+
+    SegmentationStats getSegmentation() {
+        return segmentation;
+    }
+
+    long[] getRemoteFetch() {
+        return remoteFetch;
+    }
+
+    long getLoads() {
+        return loads;
+    }
+
+    long getLoadFailures() {
+        return loadFailures;
+    }
+
+    private static SegmentationStats readSegmentation(StreamInput in) throws IOException {
+        return new SegmentationStats(in.readVLong(), in.readVLong(), in.readVLong(), in.readVLong(), in.readVLong(),
+                in.readVLong(), in.readVLong(), readHistogram(in), readHistogram(in), readHistogram(in), readHistogram(in));
+    }
+
+    private static SegmentationStats.Histogram readHistogram(StreamInput in) throws IOException {
+        return new SegmentationStats.Histogram(in.readVLongArray(), in.readVLong());
+    }
+
+    private static void writeSegmentation(StreamOutput out, SegmentationStats stats) throws IOException {
+        out.writeVLong(stats.texts);
+        out.writeVLong(stats.sentences);
+        out.writeVLong(stats.chars);
+        out.writeVLong(stats.tokens);
+        out.writeVLong(stats.dagEdges);
+        out.writeVLong(stats.hmmCuts);
+        out.writeVLong(stats.hmmChars);
+        for (SegmentationStats.Histogram histogram : new SegmentationStats.Histogram[]{stats.textNanos, stats.dagNanos,
+                stats.routeNanos, stats.hmmNanos}) {
+            out.writeVLongArray(histogram.counts);
+            out.writeVLong(histogram.sumNanos);
+        }
+    }
+
+    /**
+     * 分词计数和各阶段的耗时，节点和整个集群的汇总共用
+     */
+    static void segmentationToXContent(XContentBuilder builder, SegmentationStats stats) throws IOException {
+        builder.startObject("segmentation");
+        builder.field("texts", stats.texts);
+        builder.field("sentences", stats.sentences);
+        builder.field("chars", stats.chars);
+        builder.field("tokens", stats.tokens);
+        builder.field("dag_edges", stats.dagEdges);
+        builder.startObject("hmm");
+        builder.field("cuts", stats.hmmCuts);
+        builder.field("chars", stats.hmmChars);
+        builder.field("rate", stats.hmmRate());
+        builder.endObject();
+        builder.startObject("time");
+        histogramToXContent(builder, "text", stats.textNanos);
+        histogramToXContent(builder, "dag", stats.dagNanos);
+        histogramToXContent(builder, "route", stats.routeNanos);
+        histogramToXContent(builder, "hmm", stats.hmmNanos);
+        builder.endObject();
+        builder.endObject();
+    }
+
+    private static void histogramToXContent(XContentBuilder builder, String name, SegmentationStats.Histogram histogram)
+            throws IOException {
+        builder.startObject(name);
+        builder.field("count", histogram.count());
+        builder.field("total_in_nanos", histogram.sumNanos);
+        builder.field("mean_in_nanos", histogram.meanNanos());
+        builder.field("p50_in_nanos", histogram.percentileNanos(0.5));
+        builder.field("p90_in_nanos", histogram.percentileNanos(0.9));
+        builder.field("p99_in_nanos", histogram.percentileNanos(0.99));
+        builder.endObject();
+    }
+
+    static void remoteFetchToXContent(XContentBuilder builder, long[] remoteFetch) throws IOException {
+        builder.startObject("remote_fetch");
+        builder.field("changed", remoteFetch[0]);
+        builder.field("not_modified", remoteFetch[1]);
+        builder.field("failed", remoteFetch[2]);
+        builder.endObject();
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(getNode().getId());
+        builder.field("name", getNode().getName());
+        builder.field("initialized", initialized);
+        builder.field("ready", ready);
+        builder.field("warmup_time_in_millis", warmupMillis);
+        builder.startObject("dictionary");
+        builder.field("version", version);
+        builder.field("delta_version", deltaVersion);
+        long words = 0;
+        long bytes = finalSegBytes;
+        for (long[] values : sourceValues) {
+            words += values[0];
+            bytes += values[1];
+        }
+        builder.field("words", words);
+        builder.humanReadableField("memory_size_in_bytes", "memory_size", new ByteSizeValue(bytes));
+        builder.humanReadableField("hmm_memory_size_in_bytes", "hmm_memory_size", new ByteSizeValue(finalSegBytes));
+        builder.field("last_load_source", lastLoadSource);
+        builder.field("last_load_time_in_millis", lastLoadMillis);
+        builder.field("loads", loads);
+        builder.field("load_failures", loadFailures);
+        builder.startArray("sources");
+        for (int i = 0; i < sourceNames.size(); i++) {
+            long[] values = sourceValues.get(i);
+            builder.startObject();
+            builder.field("source", sourceNames.get(i));
+            builder.field("words", values[0]);
+            builder.humanReadableField("memory_size_in_bytes", "memory_size", new ByteSizeValue(values[1]));
+            builder.field("load_time_in_millis", values[2]);
+            builder.endObject();
+        }
+        builder.endArray();
+        builder.endObject();
+        builder.startObject("index_dictionaries");
+        builder.field("count", indexDictionaries);
+        builder.humanReadableField("memory_size_in_bytes", "memory_size", new ByteSizeValue(indexDictionariesBytes));
+        builder.endObject();
+        builder.startObject("breaker");
+        builder.humanReadableField("limit_size_in_bytes", "limit_size", new ByteSizeValue(breakerLimit));
+        builder.humanReadableField("estimated_size_in_bytes", "estimated_size", new ByteSizeValue(breakerUsed));
+        builder.humanReadableField("accounted_size_in_bytes", "accounted_size", new ByteSizeValue(accountedBytes));
+        builder.field("tripped", breakerTripped);
+        builder.endObject();
+        builder.startObject("query_cache");
+        builder.field("enabled", queryCache != null);
+        if (queryCache != null) {
+            long lookups = queryCache[2] + queryCache[3];
+            builder.field("count", queryCache[0]);
+            builder.humanReadableField("memory_size_in_bytes", "memory_size", new ByteSizeValue(queryCache[1]));
+            builder.field("hit_count", queryCache[2]);
+            builder.field("miss_count", queryCache[3]);
+            builder.field("evictions", queryCache[4]);
+            builder.field("hit_rate", lookups == 0 ? 0.0 : (double) queryCache[2] / lookups);
+        }
+        builder.endObject();
+        segmentationToXContent(builder, segmentation);
+        remoteFetchToXContent(builder, remoteFetch);
+        builder.endObject();
+        return builder;
+    }
+}
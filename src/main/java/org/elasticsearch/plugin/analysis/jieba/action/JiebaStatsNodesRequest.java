@@ -0,0 +1,17 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.IOException;
+
+public class JiebaStatsNodesRequest extends BaseNodesRequest<JiebaStatsNodesRequest> {
+
+    public JiebaStatsNodesRequest(String... nodesIds) {
+        super(nodesIds);
+    }
+
+    public JiebaStatsNodesRequest(StreamInput in) throws IOException {
+        super(in);
+    }
+}
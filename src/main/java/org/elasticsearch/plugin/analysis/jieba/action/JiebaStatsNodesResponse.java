@@ -0,0 +1,70 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.SegmentationStats;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+public class JiebaStatsNodesResponse extends BaseNodesResponse<JiebaStatsNodeResponse> implements ToXContentFragment {
+
+    public JiebaStatsNodesResponse(ClusterName clusterName, List<JiebaStatsNodeResponse> nodes,
+                                  List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    public JiebaStatsNodesResponse(StreamInput in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected List<JiebaStatsNodeResponse> readNodesFrom(StreamInput in) throws IOException {
+        return in.readList(JiebaStatsNodeResponse::new);
+    }
+
+    @Override
+    protected void writeNodesTo(StreamOutput out, List<JiebaStatsNodeResponse> nodes) throws IOException {
+        out.writeList(nodes);
+    }
+
+    /**
+     * 所有节点的分词计数、耗时分布、词典加载和远程请求次数相加
+     */
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        SegmentationStats segmentation = null;
+        long[] remoteFetch = new long[3];
+        long loads = 0;
+        long loadFailures = 0;
+        for (JiebaStatsNodeResponse node : getNodes()) {
+            segmentation = segmentation == null ? node.getSegmentation() : segmentation.merge(node.getSegmentation());
+            for (int i = 0; i < remoteFetch.length; i++) {
+                remoteFetch[i] += node.getRemoteFetch()[i];
+            }
+            loads += node.getLoads();
+            loadFailures += node.getLoadFailures();
+        }
+        builder.startObject("_all");
+        builder.startObject("dictionary");
+        builder.field("loads", loads);
+        builder.field("load_failures", loadFailures);
+        builder.endObject();
+        if (segmentation != null) {
+            JiebaStatsNodeResponse.segmentationToXContent(builder, segmentation);
+        }
+        JiebaStatsNodeResponse.remoteFetchToXContent(builder, remoteFetch);
+        builder.endObject();
+        builder.startObject("nodes");
+        for (JiebaStatsNodeResponse node : getNodes()) {
+            node.toXContent(builder, params);
+        }
+        builder.endObject();
+        return builder;
+    }
+}
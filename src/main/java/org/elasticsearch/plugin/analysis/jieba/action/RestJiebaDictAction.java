@@ -0,0 +1,39 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * GET /_jieba/dict 查看各节点使用的词典版本、词数和最近一次加载的耗时
+ */
+public class RestJiebaDictAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "jieba_dict_version_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Collections.unmodifiableList(Arrays.asList(
+                new Route(GET, "/_jieba/dict"),
+                new Route(GET, "/_jieba/dict/{nodeId}")));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        JiebaDictNodesRequest nodesRequest = new JiebaDictNodesRequest(nodesIds);
+        return channel -> client.execute(JiebaDictVersionAction.INSTANCE, nodesRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -0,0 +1,39 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * POST /_jieba/dict/_reload 让各节点立即重新加载词典
+ */
+public class RestJiebaDictReloadAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "jieba_dict_reload_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Collections.unmodifiableList(Arrays.asList(
+                new Route(POST, "/_jieba/dict/_reload"),
+                new Route(POST, "/_jieba/dict/_reload/{nodeId}")));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        JiebaDictNodesRequest nodesRequest = new JiebaDictNodesRequest(nodesIds);
+        return channel -> client.execute(JiebaDictReloadAction.INSTANCE, nodesRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -0,0 +1,71 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * POST /_jieba/dict/words 在所有节点上直接增删词：
+ * <pre>
+ * {"add": {"新词": 100, "旧词": 200}, "remove": ["不要的词"]}
+ * </pre>
+ */
+public class RestJiebaDictWordsAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "jieba_dict_words_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Collections.unmodifiableList(Arrays.asList(
+                new Route(POST, "/_jieba/dict/words"),
+                new Route(POST, "/_jieba/dict/words/{nodeId}")));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        Map<String, Double> add = new LinkedHashMap<>();
+        List<String> remove = new ArrayList<>();
+        try (XContentParser parser = request.contentParser()) {
+            for (Map.Entry<String, Object> entry : parser.map().entrySet()) {
+                if ("add".equals(entry.getKey()) && entry.getValue() instanceof Map) {
+                    for (Map.Entry<?, ?> word : ((Map<?, ?>) entry.getValue()).entrySet()) {
+                        if (!(word.getValue() instanceof Number) || !(((Number) word.getValue()).doubleValue() > 0)) {
+                            throw new IllegalArgumentException("[add] freq of [" + word.getKey() + "] must be a positive number");
+                        }
+                        add.put(word.getKey().toString(), ((Number) word.getValue()).doubleValue());
+                    }
+                } else if ("remove".equals(entry.getKey()) && entry.getValue() instanceof List) {
+                    for (Object word : (List<?>) entry.getValue()) {
+                        remove.add(word.toString());
+                    }
+                } else {
+                    throw new IllegalArgumentException("unknown or malformed field [" + entry.getKey()
+                            + "], expected an [add] object and a [remove] array");
+                }
+            }
+        }
+        if (add.isEmpty() && remove.isEmpty()) {
+            throw new IllegalArgumentException("nothing to add or remove");
+        }
+        JiebaDictWordsNodesRequest nodesRequest = new JiebaDictWordsNodesRequest(add, remove, nodesIds);
+        return channel -> client.execute(JiebaDictWordsAction.INSTANCE, nodesRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
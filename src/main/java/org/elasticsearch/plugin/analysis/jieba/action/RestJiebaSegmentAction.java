@@ -0,0 +1,96 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestToXContentListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * POST /_jieba/segment 批量分词，不实例化分析器，不为每个词生成JSON对象：
+ * <pre>
+ * {"texts": ["文本一", "文本二"], "mode": "search", "format": "tokens"}
+ * </pre>
+ * mode为search、index或graph（k_best指定路径数），format为tokens（词）或offsets（起止位置）；
+ * 也可以用同名的URL参数指定，请求体中的优先
+ */
+public class RestJiebaSegmentAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "jieba_segment_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Collections.unmodifiableList(Arrays.asList(
+                new Route(GET, "/_jieba/segment"),
+                new Route(POST, "/_jieba/segment")));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        String mode = request.param("mode", "search");
+        String format = request.param("format", "tokens");
+        int kBest = request.paramAsInt("k_best", JiebaSegmenter.DEFAULT_K_BEST);
+        JiebaSegmentRequest segmentRequest;
+        try (XContentParser parser = request.contentParser()) {
+            segmentRequest = parseRequest(parser, mode, format, kBest);
+        }
+        return channel -> client.execute(JiebaSegmentAction.INSTANCE, segmentRequest,
+                new RestToXContentListener<>(channel));
+    }
+
+    /**
+     * 解析请求体，mode、format和k_best为URL参数中的值，请求体中有同名字段时优先
+     */
+    static JiebaSegmentRequest parseRequest(XContentParser parser, String mode, String format, int kBest)
+            throws IOException {
+        List<String> texts = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : parser.map().entrySet()) {
+            Object value = entry.getValue();
+            if ("texts".equals(entry.getKey()) && value instanceof List) {
+                for (Object text : (List<?>) value) {
+                    if (!(text instanceof String)) {
+                        throw new IllegalArgumentException("[texts] must be an array of strings");
+                    }
+                    texts.add((String) text);
+                }
+            } else if ("mode".equals(entry.getKey()) && value instanceof String) {
+                mode = (String) value;
+            } else if ("format".equals(entry.getKey()) && value instanceof String) {
+                format = (String) value;
+            } else if ("k_best".equals(entry.getKey()) && value instanceof Number) {
+                kBest = ((Number) value).intValue();
+            } else {
+                throw new IllegalArgumentException("unknown or malformed field [" + entry.getKey() + "]");
+            }
+        }
+        SegMode segMode;
+        JiebaSegmentRequest.Format segFormat;
+        try {
+            segMode = SegMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown mode [" + mode + "], expected [search], [index] or [graph]");
+        }
+        try {
+            segFormat = JiebaSegmentRequest.Format.fromString(format);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown format [" + format + "], expected [tokens] or [offsets]");
+        }
+        return new JiebaSegmentRequest(texts, segMode, kBest, segFormat);
+    }
+}
@@ -0,0 +1,39 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * GET /_jieba/stats 查看各节点词典的内存占用和加载统计、分词计数和耗时分布，以及整个集群的汇总
+ */
+public class RestJiebaStatsAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "jieba_stats_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Collections.unmodifiableList(Arrays.asList(
+                new Route(GET, "/_jieba/stats"),
+                new Route(GET, "/_jieba/stats/{nodeId}")));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        JiebaStatsNodesRequest nodesRequest = new JiebaStatsNodesRequest(nodesIds);
+        return channel -> client.execute(JiebaStatsAction.INSTANCE, nodesRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
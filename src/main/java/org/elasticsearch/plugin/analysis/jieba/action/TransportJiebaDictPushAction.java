@@ -0,0 +1,56 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.analysis.JiebaDict;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+public class TransportJiebaDictPushAction extends TransportNodesAction<JiebaDictNodesRequest, JiebaDictNodesResponse,
+        JiebaDictNodeRequest, JiebaDictNodeResponse> {
+
+    @Inject
+    public TransportJiebaDictPushAction(ThreadPool threadPool, ClusterService clusterService,
+                                        TransportService transportService, ActionFilters actionFilters) {
+        // 解析词典可能较慢，不占用传输线程
+        super(JiebaDictPushAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                JiebaDictNodesRequest::new, JiebaDictNodeRequest::new, ThreadPool.Names.GENERIC,
+                JiebaDictNodeResponse.class);
+    }
+
+    @Override
+    protected JiebaDictNodesResponse newResponse(JiebaDictNodesRequest request, List<JiebaDictNodeResponse> nodes,
+                                                 List<FailedNodeException> failures) {
+        return new JiebaDictNodesResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected JiebaDictNodeRequest newNodeRequest(JiebaDictNodesRequest request) {
+        return new JiebaDictNodeRequest(request);
+    }
+
+    @Override
+    protected JiebaDictNodeResponse newNodeResponse(StreamInput in) throws IOException {
+        return new JiebaDictNodeResponse(in);
+    }
+
+    @Override
+    protected JiebaDictNodeResponse nodeOperation(JiebaDictNodeRequest nodeRequest) {
+        JiebaDictNodesRequest request = nodeRequest.getRequest();
+        boolean applied;
+        try {
+            applied = JiebaDict.applyRemoteSnapshot(request.getVersion(), request.getSha256(), request.getContent());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return JiebaDictNodeResponse.local(clusterService.localNode(), applied);
+    }
+}
@@ -0,0 +1,46 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TransportJiebaDictVersionAction extends TransportNodesAction<JiebaDictNodesRequest, JiebaDictNodesResponse,
+        JiebaDictNodeRequest, JiebaDictNodeResponse> {
+
+    @Inject
+    public TransportJiebaDictVersionAction(ThreadPool threadPool, ClusterService clusterService,
+                                           TransportService transportService, ActionFilters actionFilters) {
+        super(JiebaDictVersionAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                JiebaDictNodesRequest::new, JiebaDictNodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                JiebaDictNodeResponse.class);
+    }
+
+    @Override
+    protected JiebaDictNodesResponse newResponse(JiebaDictNodesRequest request, List<JiebaDictNodeResponse> nodes,
+                                                 List<FailedNodeException> failures) {
+        return new JiebaDictNodesResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected JiebaDictNodeRequest newNodeRequest(JiebaDictNodesRequest request) {
+        return new JiebaDictNodeRequest(request);
+    }
+
+    @Override
+    protected JiebaDictNodeResponse newNodeResponse(StreamInput in) throws IOException {
+        return new JiebaDictNodeResponse(in);
+    }
+
+    @Override
+    protected JiebaDictNodeResponse nodeOperation(JiebaDictNodeRequest nodeRequest) {
+        return JiebaDictNodeResponse.local(clusterService.localNode(), false);
+    }
+}
@@ -0,0 +1,50 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.analysis.JiebaDict;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TransportJiebaDictWordsAction extends TransportNodesAction<JiebaDictWordsNodesRequest,
+        JiebaDictNodesResponse, JiebaDictWordsNodeRequest, JiebaDictNodeResponse> {
+
+    @Inject
+    public TransportJiebaDictWordsAction(ThreadPool threadPool, ClusterService clusterService,
+                                         TransportService transportService, ActionFilters actionFilters) {
+        // 只复制增量词典树中的几条路径，很快，不需要GENERIC线程池
+        super(JiebaDictWordsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                JiebaDictWordsNodesRequest::new, JiebaDictWordsNodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                JiebaDictNodeResponse.class);
+    }
+
+    @Override
+    protected JiebaDictNodesResponse newResponse(JiebaDictWordsNodesRequest request, List<JiebaDictNodeResponse> nodes,
+                                                 List<FailedNodeException> failures) {
+        return new JiebaDictNodesResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected JiebaDictWordsNodeRequest newNodeRequest(JiebaDictWordsNodesRequest request) {
+        return new JiebaDictWordsNodeRequest(request);
+    }
+
+    @Override
+    protected JiebaDictNodeResponse newNodeResponse(StreamInput in) throws IOException {
+        return new JiebaDictNodeResponse(in);
+    }
+
+    @Override
+    protected JiebaDictNodeResponse nodeOperation(JiebaDictWordsNodeRequest nodeRequest) {
+        JiebaDictWordsNodesRequest request = nodeRequest.getRequest();
+        JiebaDict.updateWords(request.getAdd(), request.getRemove());
+        return JiebaDictNodeResponse.local(clusterService.localNode(), true);
+    }
+}
@@ -0,0 +1,146 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.DictionarySnapshot;
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.SegToken;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.index.analysis.JiebaDict;
+import org.elasticsearch.plugin.analysis.jieba.AnalysisJiebaPlugin;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在本节点上批量分词：把文本分成和线程池大小相当的几组，在jieba_segment线程池上并行切分，
+ * 整批使用同一个词典快照
+ */
+public class TransportJiebaSegmentAction extends HandledTransportAction<JiebaSegmentRequest, JiebaSegmentResponse> {
+    private final JiebaSegmenter segmenter = new JiebaSegmenter();
+    private final ThreadPool threadPool;
+    private final int maxBatchSize;
+
+    @Inject
+    public TransportJiebaSegmentAction(Settings settings, ThreadPool threadPool, TransportService transportService,
+                                       ActionFilters actionFilters) {
+        super(JiebaSegmentAction.NAME, transportService, actionFilters, JiebaSegmentRequest::new);
+        this.threadPool = threadPool;
+        this.maxBatchSize = AnalysisJiebaPlugin.SEGMENT_MAX_BATCH_SIZE_SETTING.get(settings);
+    }
+
+    @Override
+    protected void doExecute(Task task, JiebaSegmentRequest request, ActionListener<JiebaSegmentResponse> listener) {
+        try {
+            checkBatchSize(request.getTexts().size(), maxBatchSize);
+        } catch (IllegalArgumentException e) {
+            listener.onFailure(e);
+            return;
+        }
+        final long start = System.nanoTime();
+        final ExecutorService executor = threadPool.executor(AnalysisJiebaPlugin.SEGMENT_THREAD_POOL_NAME);
+        if (JiebaDict.isReady()) {
+            dispatch(executor, request, listener, start);
+            return;
+        }
+        // 词典还在预热：doExecute可能在网络线程上，转到jieba_segment线程池上等待
+        executor.execute(new AbstractRunnable() {
+            @Override
+            protected void doRun() {
+                JiebaDict.awaitReady();
+                dispatch(executor, request, listener, start);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * 用同一个词典快照分组切分，全部完成后返回
+     */
+    private void dispatch(ExecutorService executor, JiebaSegmentRequest request,
+                          ActionListener<JiebaSegmentResponse> listener, long start) {
+        final int size = request.getTexts().size();
+        final boolean offsets = request.getFormat() == JiebaSegmentRequest.Format.OFFSETS;
+        final String[][] tokens = offsets ? null : new String[size][];
+        final int[][] positions = offsets ? new int[size][] : null;
+
+        final int chunk = chunkSize(size, threadPool.info(AnalysisJiebaPlugin.SEGMENT_THREAD_POOL_NAME).getMax());
+        final int chunks = (size + chunk - 1) / chunk;
+        final AtomicInteger pending = new AtomicInteger(chunks);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final DictionarySnapshot dict = segmenter.snapshot();
+        for (int c = 0; c < chunks; c++) {
+            final int from = c * chunk;
+            final int to = Math.min(from + chunk, size);
+            executor.execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() {
+                    segment(segmenter, dict, request, from, to, failed, tokens, positions);
+                    if (pending.decrementAndGet() == 0 && !failed.get()) {
+                        long took = (System.nanoTime() - start) / 1000000L;
+                        listener.onResponse(new JiebaSegmentResponse(took, tokens, positions));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    // 线程池拒绝或者分词出错，只通知一次，其余分组尽快结束
+                    if (failed.compareAndSet(false, true)) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+    static void checkBatchSize(int size, int maxBatchSize) {
+        if (size > maxBatchSize) {
+            throw new IllegalArgumentException("batch of [" + size + "] texts exceeds ["
+                    + AnalysisJiebaPlugin.SEGMENT_MAX_BATCH_SIZE_SETTING.getKey() + "] of [" + maxBatchSize + "]");
+        }
+    }
+
+    /**
+     * 每组的文本数，分成不超过threads组
+     */
+    static int chunkSize(int size, int threads) {
+        return Math.max(1, (size + threads - 1) / threads);
+    }
+
+    /**
+     * 切分第[from, to)个文本，结果按文本的序号写入tokens或positions（取决于请求的格式）
+     */
+    static void segment(JiebaSegmenter segmenter, DictionarySnapshot dict, JiebaSegmentRequest request, int from,
+                        int to, AtomicBoolean failed, String[][] tokens, int[][] positions) {
+        List<String> texts = request.getTexts();
+        for (int i = from; i < to && !failed.get(); i++) {
+            List<SegToken> segTokens = segmenter.process(dict, texts.get(i), request.getMode(), request.getKBest());
+            if (positions != null) {
+                int[] result = new int[segTokens.size() * 2];
+                for (int j = 0; j < segTokens.size(); j++) {
+                    result[2 * j] = segTokens.get(j).startOffset;
+                    result[2 * j + 1] = segTokens.get(j).endOffset;
+                }
+                positions[i] = result;
+            } else {
+                String[] result = new String[segTokens.size()];
+                for (int j = 0; j < segTokens.size(); j++) {
+                    result[j] = segTokens.get(j).word;
+                }
+                tokens[i] = result;
+            }
+        }
+    }
+}
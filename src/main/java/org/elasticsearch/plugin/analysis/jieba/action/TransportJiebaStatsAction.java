@@ -0,0 +1,61 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.SegmentationStats;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.analysis.JiebaDict;
+import org.elasticsearch.index.analysis.JiebaIndexDictionaries;
+import org.elasticsearch.index.analysis.JiebaQueryCache;
+import org.elasticsearch.index.analysis.RemoteDictFetcher;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.plugin.analysis.jieba.AnalysisJiebaPlugin;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TransportJiebaStatsAction extends TransportNodesAction<JiebaStatsNodesRequest, JiebaStatsNodesResponse,
+        JiebaStatsNodeRequest, JiebaStatsNodeResponse> {
+    private final CircuitBreakerService circuitBreakerService;
+
+    @Inject
+    public TransportJiebaStatsAction(ThreadPool threadPool, ClusterService clusterService,
+                                     TransportService transportService, ActionFilters actionFilters,
+                                     CircuitBreakerService circuitBreakerService) {
+        super(JiebaStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                JiebaStatsNodesRequest::new, JiebaStatsNodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                JiebaStatsNodeResponse.class);
+        this.circuitBreakerService = circuitBreakerService;
+    }
+
+    @Override
+    protected JiebaStatsNodesResponse newResponse(JiebaStatsNodesRequest request, List<JiebaStatsNodeResponse> nodes,
+                                                  List<FailedNodeException> failures) {
+        return new JiebaStatsNodesResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected JiebaStatsNodeRequest newNodeRequest(JiebaStatsNodesRequest request) {
+        return new JiebaStatsNodeRequest(request);
+    }
+
+    @Override
+    protected JiebaStatsNodeResponse newNodeResponse(StreamInput in) throws IOException {
+        return new JiebaStatsNodeResponse(in);
+    }
+
+    @Override
+    protected JiebaStatsNodeResponse nodeOperation(JiebaStatsNodeRequest nodeRequest) {
+        CircuitBreaker breaker = circuitBreakerService.getBreaker(AnalysisJiebaPlugin.BREAKER_NAME);
+        return new JiebaStatsNodeResponse(clusterService.localNode(), JiebaDict.stats(), JiebaDict.isReady(),
+                JiebaDict.warmupMillis(), JiebaIndexDictionaries.size(),
+                JiebaIndexDictionaries.ramBytesUsed(), breaker, JiebaQueryCache.stats(), SegmentationStats.current(),
+                RemoteDictFetcher.stats());
+    }
+}
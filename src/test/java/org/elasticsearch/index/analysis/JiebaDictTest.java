@@ -0,0 +1,102 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.WordDictionary;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.elasticsearch.Version;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.env.Environment;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class JiebaDictTest extends TestCase {
+    private HttpServer server;
+    private Path home;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger pushes = new AtomicInteger();
+
+
+    @Override
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/remote.dict", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = "黄河之水 100\n".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        });
+        server.start();
+
+        home = Files.createTempDirectory("jieba-dict-test");
+        Path plugin = Files.createDirectories(home.resolve("plugins/jieba/dic"));
+        String config = "remote.ext.dic=http://127.0.0.1:" + server.getAddress().getPort() + "/remote.dict\n"
+                + "remote.task.delay=0\nremote.task.jitter=0\n";
+        Files.write(plugin.getParent().resolve("jieba.cfg.properties"), config.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    @Override
+    protected void tearDown() throws Exception {
+        JiebaDict.close();
+        server.stop(0);
+        WordDictionary.reload(new File("src/main/dic"));
+    }
+
+
+    @Test
+    public void testMasterFetchesWhenBoundBeforeInit() throws Exception {
+        Environment environment = new Environment(Settings.builder().put("path.home", home.toString()).build(), null);
+        DiscoveryNode node = new DiscoveryNode("node", new TransportAddress(InetAddress.getLoopbackAddress(), 9300),
+                Version.CURRENT);
+        ClusterState state = ClusterState.builder(ClusterName.DEFAULT)
+                .nodes(DiscoveryNodes.builder().add(node).localNodeId("node").masterNodeId("node")).build();
+        ClusterService clusterService = new ClusterService(Settings.EMPTY,
+                new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS), null) {
+            @Override
+            public ClusterState state() {
+                return state;
+            }
+        };
+        // 只记录推送，不真正发送
+        Client client = (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{Client.class},
+                (proxy, method, args) -> {
+                    if ("execute".equals(method.getName())) {
+                        pushes.incrementAndGet();
+                    }
+                    return null;
+                });
+
+        // 和createComponents的顺序一致：先绑定集群，再初始化
+        JiebaDict.bindCluster(environment, clusterService, client);
+        JiebaDict.init(environment);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pushes.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, requests.get());
+        assertEquals(1, pushes.get());
+    }
+}
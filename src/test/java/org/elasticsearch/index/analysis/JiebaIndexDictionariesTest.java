@@ -0,0 +1,88 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.WordDictionary;
+import junit.framework.TestCase;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+public class JiebaIndexDictionariesTest extends TestCase {
+    private Environment environment;
+    private IndexSettings indexSettings;
+    private final Settings settings = Settings.builder().putList(JiebaIndexDictionaries.USER_DICTIONARY_PATHS, "shop.txt").build();
+
+
+    @Override
+    protected void setUp() throws Exception {
+        Path home = Files.createTempDirectory("jieba-index-dict-test");
+        Path dic = Files.createDirectories(home.resolve("plugins/jieba/dic"));
+        Files.write(dic.resolve("shop.txt"), "奔流到海 100\n".getBytes(StandardCharsets.UTF_8));
+        // 测试期间不在后台重新加载全局词典，内存记账只随叠加层变化
+        Files.write(dic.getParent().resolve("jieba.cfg.properties"),
+                "remote.task.delay=600000\n".getBytes(StandardCharsets.UTF_8));
+        environment = new Environment(Settings.builder().put("path.home", home.toString()).build(), null);
+        IndexMetadata metadata = IndexMetadata.builder("shop").settings(Settings.builder()
+                .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetadata.SETTING_INDEX_UUID, "shop")
+                .put(IndexMetadata.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetadata.SETTING_NUMBER_OF_REPLICAS, 0)).build();
+        indexSettings = new IndexSettings(metadata, Settings.EMPTY);
+    }
+
+
+    @Override
+    protected void tearDown() throws Exception {
+        JiebaIndexDictionaries.release(indexSettings.getIndex());
+        JiebaDict.close();
+        WordDictionary.reload(new File("src/main/dic"));
+    }
+
+
+    @Test
+    public void testReleasedWhenTemporaryIndexServiceCloses() throws Exception {
+        long accounted = WordDictionary.getInstance().stats().accountedBytes;
+        // 主节点创建索引时的临时IndexService：构建分析组件，关闭，不会触发afterIndexRemoved
+        JiebaAnalyzerProvider provider = new JiebaAnalyzerProvider(indexSettings, environment, "shop", settings,
+                JiebaSegmenter.SegMode.SEARCH);
+        JiebaTokenizerFactory factory = new JiebaTokenizerFactory(indexSettings, environment, settings);
+        assertEquals(1, JiebaIndexDictionaries.size());
+        assertTrue(WordDictionary.getInstance().stats().accountedBytes > accounted);
+
+        // 同一个索引的两次acquire分别计数，关闭分析器只释放它自己的
+        provider.get().close();
+        assertEquals(1, JiebaIndexDictionaries.size());
+
+        // 分词器工厂随IndexService一起被丢弃
+        factory = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (JiebaIndexDictionaries.size() > 0 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, JiebaIndexDictionaries.size());
+        assertEquals(accounted, WordDictionary.getInstance().stats().accountedBytes);
+    }
+
+
+    @Test
+    public void testIndexRemovalReleasesAllAcquires() throws Exception {
+        JiebaTokenizerFactory first = new JiebaTokenizerFactory(indexSettings, environment, settings);
+        JiebaTokenizerFactory second = new JiebaTokenizerFactory(indexSettings, environment, settings);
+        assertEquals(1, JiebaIndexDictionaries.size());
+        JiebaIndexDictionaries.release(indexSettings.getIndex());
+        assertEquals(0, JiebaIndexDictionaries.size());
+        assertNotNull(first.create());
+        assertNotNull(second.create());
+    }
+}
@@ -0,0 +1,81 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.WordDictionary;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.CharsRef;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+
+public class JiebaSubwordsTokenFilterTest extends TestCase {
+
+
+    @Override
+    protected void setUp() throws Exception {
+        applyDelta("version 1\n+ 骉鱻 100\n+ 鱻羴猋 100\n+ 羴猋 100\n+ 骉鱻羴猋 100\n+ abc 100\n");
+    }
+
+
+    @Override
+    protected void tearDown() throws Exception {
+        applyDelta("version 0\nreset\n");
+    }
+
+
+    private static void applyDelta(String delta) throws IOException {
+        WordDictionary.getInstance().applyDelta(new ByteArrayInputStream(delta.getBytes("UTF-8")));
+    }
+
+
+    private static String filter(JiebaSubwords subwords, String text) throws IOException {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        TokenStream stream = new JiebaSubwordsTokenFilter(tokenizer, subwords);
+        CharTermAttribute term = stream.getAttribute(CharTermAttribute.class);
+        OffsetAttribute offset = stream.getAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute posIncr = stream.getAttribute(PositionIncrementAttribute.class);
+        StringBuilder sb = new StringBuilder();
+        stream.reset();
+        while (stream.incrementToken()) {
+            sb.append(term).append('/').append(offset.startOffset()).append('-').append(offset.endOffset())
+                    .append('+').append(posIncr.getPositionIncrement()).append(' ');
+        }
+        stream.end();
+        stream.close();
+        return sb.toString().trim();
+    }
+
+
+    @Test
+    public void testSubwords() throws IOException {
+        JiebaSubwords subwords = new JiebaSubwords(() -> WordDictionary.getInstance().snapshot(), 2, 3, 100);
+        assertEquals("骉鱻羴猋/0-4+1 骉鱻/0-2+0 鱻羴猋/1-4+0 羴猋/2-4+0 麤/5-6+1 XaBcx/7-12+1 abc/8-11+0",
+                filter(subwords, "骉鱻羴猋 麤 XaBcx"));
+        assertEquals("骉鱻羴猋/0-4+1 骉鱻/0-2+0 羴猋/2-4+0", filter(new JiebaSubwords(
+                () -> WordDictionary.getInstance().snapshot(), 2, 2, 0), "骉鱻羴猋"));
+        // 命中时返回缓存的结果；缓存中的key是复制的，调用方之后改动自己的缓冲区不影响缓存
+        CharsRef key = new CharsRef();
+        char[] term = "骉鱻羴猋".toCharArray();
+        long[] cached = subwords.decompose(term, term.length, key);
+        term[0] = 'x';
+        assertSame(cached, subwords.decompose("骉鱻羴猋".toCharArray(), 4, key));
+    }
+
+
+    @Test
+    public void testCacheFollowsDictionaryVersion() throws IOException {
+        JiebaSubwords subwords = new JiebaSubwords(() -> WordDictionary.getInstance().snapshot(), 2, 3, 100);
+        assertEquals("骉鱻羴猋/0-4+1 骉鱻/0-2+0 鱻羴猋/1-4+0 羴猋/2-4+0", filter(subwords, "骉鱻羴猋"));
+        applyDelta("version 2\n- 鱻羴猋\n");
+        assertEquals("骉鱻羴猋/0-4+1 骉鱻/0-2+0 羴猋/2-4+0", filter(subwords, "骉鱻羴猋"));
+    }
+}
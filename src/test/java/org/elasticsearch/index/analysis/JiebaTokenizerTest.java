@@ -0,0 +1,184 @@
+package org.elasticsearch.index.analysis;
+
+import com.huaban.analysis.jieba.WordDictionary;
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+
+public class JiebaTokenizerTest extends TestCase {
+
+
+    @Override
+    protected void setUp() throws Exception {
+        WordDictionary.reload(new File("src/main/dic"));
+    }
+
+
+    private static String tokenize(JiebaTokenizer tokenizer, String text) throws IOException {
+        CharTermAttribute term = tokenizer.getAttribute(CharTermAttribute.class);
+        OffsetAttribute offset = tokenizer.getAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute posIncr = tokenizer.getAttribute(PositionIncrementAttribute.class);
+        PositionLengthAttribute posLength = tokenizer.getAttribute(PositionLengthAttribute.class);
+        StringBuilder sb = new StringBuilder();
+        tokenizer.setReader(new StringReader(text));
+        tokenizer.reset();
+        while (tokenizer.incrementToken()) {
+            sb.append(term).append('/').append(offset.startOffset()).append('-').append(offset.endOffset())
+                    .append('+').append(posIncr.getPositionIncrement());
+            if (posLength.getPositionLength() != 1) {
+                sb.append('*').append(posLength.getPositionLength());
+            }
+            sb.append(' ');
+        }
+        tokenizer.end();
+        sb.append(offset.endOffset());
+        tokenizer.close();
+        return sb.toString();
+    }
+
+
+    @Test
+    public void testRepeatedWordsAreNewPositions() throws IOException {
+        JiebaTokenizer tokenizer = new JiebaTokenizer("SEARCH");
+        assertEquals("！/0-1+1 ！/1-2+1 ！/2-3+1 3", tokenize(tokenizer, "！！！"));
+    }
+
+
+    @Test
+    public void testIndexModeSubwordsShareThePosition() throws IOException {
+        JiebaTokenizer tokenizer = new JiebaTokenizer("INDEX");
+        assertEquals("我/0-1+1 购买了/1-4+1 买了/2-4+0 道具/4-6+1 6", tokenize(tokenizer, "我购买了道具"));
+    }
+
+
+    @Test
+    public void testReuseAcrossDocuments() throws IOException {
+        JiebaTokenizer tokenizer = new JiebaTokenizer("SEARCH");
+        String first = tokenize(tokenizer, "  ＡＢＣ和C++是什么关系？  ");
+        assertEquals("abc/2-5+1 和/5-6+1 c/6-7+1 ++/7-9+1 是什么/9-12+1 关系/12-14+1 ？/14-15+1 17", first);
+        assertEquals("0", tokenize(tokenizer, ""));
+        assertEquals(first, tokenize(tokenizer, "  ＡＢＣ和C++是什么关系？  "));
+    }
+
+
+    @Test
+    public void testWithoutT2s() throws IOException {
+        // 按简体切分，输出的词保留繁体，全角的大写只转成半角，与早期版本一致
+        String text = "我買了電話ＡＢＣ";
+        assertEquals("我买了/0-3+1 电话/3-5+1 abc/5-8+1 8", tokenize(new JiebaTokenizer("SEARCH"), text));
+        JiebaTokenizer tokenizer = new JiebaTokenizer("SEARCH", null, 3, false, JiebaTokenizer.Stopwords.KEEP, false);
+        assertEquals("我買了/0-3+1 電話/3-5+1 ABC/5-8+1 8", tokenize(tokenizer, text));
+        // 停用词按简体匹配
+        JiebaTokenizer stopwords = new JiebaTokenizer("SEARCH", null, 3, false, JiebaTokenizer.Stopwords.REMOVE, false);
+        assertEquals("abc/0-3+1 C/4-5+2 7", tokenize(stopwords, "abc與Ｃ？的"));
+    }
+
+
+    @Test
+    public void testRemoveStopwords() throws IOException {
+        // src/main/dic/stopwords.txt中有"和"和"？"
+        String text = "  ＡＢＣ和C++是什么关系？  ";
+        JiebaTokenizer gaps = new JiebaTokenizer("SEARCH", null, 3, false, JiebaTokenizer.Stopwords.REMOVE);
+        assertEquals("abc/2-5+1 c/6-7+2 ++/7-9+1 是什么/9-12+1 关系/12-14+1 17", tokenize(gaps, text));
+        JiebaTokenizer noGaps = new JiebaTokenizer("SEARCH", null, 3, false,
+                JiebaTokenizer.Stopwords.REMOVE_WITHOUT_GAPS);
+        assertEquals("abc/2-5+1 c/6-7+1 ++/7-9+1 是什么/9-12+1 关系/12-14+1 17", tokenize(noGaps, text));
+    }
+
+
+    @Test
+    public void testGraph() throws IOException {
+        WordDictionary dictionary = WordDictionary.getInstance();
+        dictionary.applyDelta(new ByteArrayInputStream(
+                "version 1\n+ 南京 100\n+ 南京市 80\n+ 市长 60\n+ 长江 100\n+ 长江大桥 40\n+ 大桥 100\n+ 江大桥 1\n"
+                        .getBytes("UTF-8")));
+        try {
+            // 三条路径：南京市/长江大桥，南京市/长江/大桥，南京/市长/江大桥；切分点0,2,3,4,5,7依次是节点0到5
+            assertEquals("南京/0-2+1 南京市/0-3+0*2 市长/2-4+1*2 长江/3-5+1*2 长江大桥/3-7+0*3 江大桥/4-7+1*2 大桥/5-7+1 7",
+                    tokenize(new JiebaTokenizer("GRAPH", null, 3), "南京市长江大桥"));
+            assertEquals(tokenize(new JiebaTokenizer("SEARCH"), "南京市长江大桥"),
+                    tokenize(new JiebaTokenizer("GRAPH", null, 1), "南京市长江大桥"));
+        } finally {
+            dictionary.applyDelta(new ByteArrayInputStream("version 0\nreset\n".getBytes("UTF-8")));
+        }
+    }
+
+
+    @Test
+    public void testQueryCache() throws IOException {
+        JiebaQueryCache.configure(1024 * 1024, 64);
+        try {
+            JiebaTokenizer cached = new JiebaTokenizer("SEARCH", null, 1, true);
+            String expected = tokenize(new JiebaTokenizer("SEARCH"), "我购买了道具");
+            assertEquals(expected, tokenize(cached, "我购买了道具"));
+            // 同样的文本前面有空白时命中缓存，偏移量按空白平移
+            assertEquals(tokenize(new JiebaTokenizer("SEARCH"), " 我购买了道具"), tokenize(cached, " 我购买了道具"));
+            assertEquals(expected, tokenize(new JiebaTokenizer("SEARCH", null, 1, true), "我购买了道具"));
+            long[] stats = JiebaQueryCache.stats();
+            assertEquals(1, stats[0]);
+            assertEquals(2, stats[2]);
+            assertEquals(1, stats[3]);
+
+            // 词典更新后不再命中旧的结果
+            WordDictionary.getInstance().applyDelta(new ByteArrayInputStream("version 1\n+ 我购 100\n".getBytes("UTF-8")));
+            try {
+                assertEquals(tokenize(new JiebaTokenizer("SEARCH"), "我购买了道具"), tokenize(cached, "我购买了道具"));
+                assertEquals(2, JiebaQueryCache.stats()[3]);
+            } finally {
+                WordDictionary.getInstance().applyDelta(new ByteArrayInputStream("version 0\nreset\n".getBytes("UTF-8")));
+            }
+            // 超过长度的文本不缓存
+            StringBuilder longText = new StringBuilder();
+            for (int i = 0; i < 11; i++) {
+                longText.append("我购买了道具");
+            }
+            tokenize(cached, longText.toString());
+            assertEquals(2, JiebaQueryCache.stats()[0]);
+        } finally {
+            JiebaQueryCache.close();
+        }
+    }
+
+
+    @Test
+    public void testReadFailureIsNotSegmented() throws IOException {
+        JiebaTokenizer tokenizer = new JiebaTokenizer("SEARCH");
+        // 读了一部分后出错
+        tokenizer.setReader(new Reader() {
+            private boolean first = true;
+
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                if (!first) {
+                    throw new IOException("broken");
+                }
+                first = false;
+                "我购买了".getChars(0, 4, buf, off);
+                return 4;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        try {
+            tokenizer.reset();
+            fail();
+        } catch (IOException expected) {
+            assertEquals("broken", expected.getMessage());
+        }
+        tokenizer.close();
+        // 之后的文档照常分词
+        assertEquals(tokenize(new JiebaTokenizer("SEARCH"), "我购买了"), tokenize(tokenizer, "我购买了"));
+    }
+}
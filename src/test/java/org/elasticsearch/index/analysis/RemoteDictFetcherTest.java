@@ -0,0 +1,78 @@
+package org.elasticsearch.index.analysis;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+
+public class RemoteDictFetcherTest extends TestCase {
+    private static final String ETAG = "\"v1\"";
+    private HttpServer server;
+    private final List<Integer> responses = new ArrayList<Integer>();
+
+
+    @Override
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/remote.dict", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                responses.add(304);
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(bos);
+            gzip.write("黄河之水 100\n天上来 100\n".getBytes("UTF-8"));
+            gzip.close();
+            responses.add(200);
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, bos.size());
+            OutputStream os = exchange.getResponseBody();
+            os.write(bos.toByteArray());
+            os.close();
+        });
+        server.start();
+    }
+
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+
+    @Test
+    public void testConditionalGzipFetch() throws IOException {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/remote.dict";
+        RemoteDictFetcher fetcher = new RemoteDictFetcher(url, 2000, 5000);
+        final StringBuilder received = new StringBuilder();
+        RemoteDictFetcher.BodyConsumer consumer = body -> {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int n;
+            while ((n = body.read(buf)) != -1)
+                bos.write(buf, 0, n);
+            received.append(new String(bos.toByteArray(), "UTF-8"));
+        };
+
+        assertTrue(fetcher.fetch(consumer));
+        assertEquals("黄河之水 100\n天上来 100\n", received.toString());
+
+        received.setLength(0);
+        assertFalse(fetcher.fetch(consumer));
+        assertEquals("", received.toString());
+        assertEquals(2, responses.size());
+        assertEquals(Integer.valueOf(304), responses.get(1));
+    }
+}
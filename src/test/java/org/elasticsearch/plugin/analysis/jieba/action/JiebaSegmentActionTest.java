@@ -0,0 +1,149 @@
+package org.elasticsearch.plugin.analysis.jieba.action;
+
+import com.huaban.analysis.jieba.DictionarySnapshot;
+import com.huaban.analysis.jieba.JiebaSegmenter;
+import com.huaban.analysis.jieba.JiebaSegmenter.SegMode;
+import com.huaban.analysis.jieba.WordDictionary;
+import junit.framework.TestCase;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class JiebaSegmentActionTest extends TestCase {
+
+
+    @Override
+    protected void setUp() throws Exception {
+        WordDictionary.reload(new File("src/main/dic"));
+    }
+
+
+    private static JiebaSegmentRequest parse(String json) throws IOException {
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            return RestJiebaSegmentAction.parseRequest(parser, "search", "tokens", JiebaSegmenter.DEFAULT_K_BEST);
+        }
+    }
+
+
+    @Test
+    public void testParseRequest() throws IOException {
+        JiebaSegmentRequest request = parse("{\"texts\": [\"我购买了道具\", \"\"], \"mode\": \"graph\", \"k_best\": 2, "
+                + "\"format\": \"offsets\"}");
+        assertEquals(Arrays.asList("我购买了道具", ""), request.getTexts());
+        assertEquals(SegMode.GRAPH, request.getMode());
+        assertEquals(2, request.getKBest());
+        assertEquals(JiebaSegmentRequest.Format.OFFSETS, request.getFormat());
+        assertNull(request.validate());
+
+        // URL参数作为默认值
+        request = parse("{\"texts\": [\"道具\"]}");
+        assertEquals(SegMode.SEARCH, request.getMode());
+        assertEquals(JiebaSegmentRequest.Format.TOKENS, request.getFormat());
+
+        for (String json : new String[]{"{\"texts\": [1]}", "{\"text\": [\"道具\"]}", "{\"texts\": [\"道具\"], \"mode\": \"all\"}",
+                "{\"texts\": [\"道具\"], \"format\": \"json\"}"}) {
+            try {
+                parse(json);
+                fail(json);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+
+    @Test
+    public void testValidate() throws IOException {
+        assertNotNull(parse("{}").validate());
+        assertNotNull(parse("{\"texts\": [\"道具\"], \"k_best\": 0}").validate());
+        assertNotNull(new JiebaSegmentRequest(Arrays.asList("道具", null)).validate());
+    }
+
+
+    @Test
+    public void testRequestRoundTrip() throws IOException {
+        JiebaSegmentRequest request = new JiebaSegmentRequest(Arrays.asList("我购买了道具", "南京市长江大桥"), SegMode.GRAPH, 3,
+                JiebaSegmentRequest.Format.OFFSETS);
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+        JiebaSegmentRequest read = new JiebaSegmentRequest(out.bytes().streamInput());
+        assertEquals(request.getTexts(), read.getTexts());
+        assertEquals(SegMode.GRAPH, read.getMode());
+        assertEquals(3, read.getKBest());
+        assertEquals(JiebaSegmentRequest.Format.OFFSETS, read.getFormat());
+    }
+
+
+    @Test
+    public void testResponseRoundTrip() throws IOException {
+        String[][] tokens = {{"我", "购买", "了"}, {}};
+        BytesStreamOutput out = new BytesStreamOutput();
+        new JiebaSegmentResponse(12, tokens, null).writeTo(out);
+        JiebaSegmentResponse read = new JiebaSegmentResponse(out.bytes().streamInput());
+        assertEquals(12, read.getTookMillis());
+        assertTrue(Arrays.deepEquals(tokens, read.getTokens()));
+        assertNull(read.getOffsets());
+
+        int[][] offsets = {{0, 1, 1, 3}, {}};
+        out = new BytesStreamOutput();
+        new JiebaSegmentResponse(0, null, offsets).writeTo(out);
+        StreamInput in = out.bytes().streamInput();
+        read = new JiebaSegmentResponse(in);
+        assertTrue(Arrays.deepEquals(offsets, read.getOffsets()));
+        assertNull(read.getTokens());
+    }
+
+
+    @Test
+    public void testChunksKeepTheOrderOfTexts() {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            texts.add(i % 2 == 0 ? "我购买了道具" + i : "南京市长江大桥" + i);
+        }
+        JiebaSegmentRequest request = new JiebaSegmentRequest(texts);
+        JiebaSegmenter segmenter = new JiebaSegmenter();
+        DictionarySnapshot dict = segmenter.snapshot();
+        int chunk = TransportJiebaSegmentAction.chunkSize(texts.size(), 4);
+        assertEquals(3, chunk);
+        // 各组完成的顺序不确定，倒序切分，结果仍然按文本的序号排列
+        String[][] tokens = new String[texts.size()][];
+        for (int from = (texts.size() - 1) / chunk * chunk; from >= 0; from -= chunk) {
+            TransportJiebaSegmentAction.segment(segmenter, dict, request, from, Math.min(from + chunk, texts.size()),
+                    new AtomicBoolean(), tokens, null);
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            List<String> expected = new ArrayList<>();
+            segmenter.process(dict, texts.get(i), SegMode.SEARCH, JiebaSegmenter.DEFAULT_K_BEST)
+                    .forEach(token -> expected.add(token.word));
+            assertEquals(expected, Arrays.asList(tokens[i]));
+        }
+        assertEquals(1, TransportJiebaSegmentAction.chunkSize(1, 4));
+        assertEquals(1, TransportJiebaSegmentAction.chunkSize(0, 4));
+    }
+
+
+    @Test
+    public void testBatchSizeLimit() {
+        TransportJiebaSegmentAction.checkBatchSize(100, 100);
+        try {
+            TransportJiebaSegmentAction.checkBatchSize(101, 100);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("[101]"));
+        }
+        assertNotNull(new JiebaSegmentRequest(Collections.emptyList()).validate());
+    }
+}